@@ -6,5 +6,5 @@ uniform vec3 input_color;
 void main()
 {
     // Output whatever was input
-    outputColor = vec4(input_color, 0);
+    outputColor = vec4(input_color, 1);
 }
@@ -0,0 +1,10 @@
+
+out vec4 outputColor;
+
+in vec4 colorFrag;
+
+void main()
+{
+    // Output the color interpolated from the vertices
+    outputColor = vec4(colorFrag.rgb, 1);
+}
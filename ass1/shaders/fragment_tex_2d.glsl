@@ -0,0 +1,12 @@
+
+out vec4 outputColor;
+
+in vec2 texCoordFrag;
+
+uniform sampler2D tex;
+
+void main()
+{
+    // Output the color of the texture at this point
+    outputColor = texture(tex, texCoordFrag);
+}
@@ -4,7 +4,15 @@ in vec2 position;
 
 uniform mat3 model_matrix;
 
-uniform mat3 view_matrix;
+// The depth to draw at, when depth testing is used to layer objects
+uniform float depth;
+
+// The per-frame camera data, shared by every shader
+layout(std140) uniform Camera {
+    mat3 view_matrix;
+    float aspect_ratio;
+    float time;
+};
 
 void main() {
 	// The global position is in homogenous coordinates
@@ -15,5 +23,5 @@ void main() {
 
     // We must convert from a homogenous coordinate in 2D to a homogenous
     // coordinate in 3D.
-    gl_Position = vec4(viewPosition.xy, 0, 1);
+    gl_Position = vec4(viewPosition.xy, depth, 1);
 }
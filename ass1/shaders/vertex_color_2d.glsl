@@ -0,0 +1,32 @@
+
+// Incoming vertex position
+in vec2 position;
+
+// Incoming vertex color
+in vec4 color;
+
+uniform mat3 model_matrix;
+
+// The depth to draw at, when depth testing is used to layer objects
+uniform float depth;
+
+// The per-frame camera data, shared by every shader
+layout(std140) uniform Camera {
+    mat3 view_matrix;
+    float aspect_ratio;
+    float time;
+};
+
+// Passed on to the fragment shader
+out vec4 colorFrag;
+
+void main() {
+	// The global position is in homogenous coordinates
+    vec3 globalPosition = model_matrix * vec3(position, 1);
+
+    // The position in camera coordinates
+    vec3 viewPosition = view_matrix * globalPosition;
+
+    gl_Position = vec4(viewPosition.xy, depth, 1);
+    colorFrag = color;
+}
@@ -0,0 +1,39 @@
+
+// Incoming vertex position
+in vec2 position;
+
+// Incoming vertex color
+in vec4 color;
+
+// Which object in the batch this vertex belongs to
+in float object_index;
+
+// The model matrices of every object in the batch. In the std140 layout each mat3 takes up 3
+// vec4s, so the buffer must be laid out that way.
+layout(std140) uniform Objects {
+    mat3 model_matrices[256];
+};
+
+// The depth to draw at, when depth testing is used to layer objects
+uniform float depth;
+
+// The per-frame camera data, shared by every shader
+layout(std140) uniform Camera {
+    mat3 view_matrix;
+    float aspect_ratio;
+    float time;
+};
+
+// Passed on to the fragment shader
+out vec4 colorFrag;
+
+void main() {
+	// The global position is in homogenous coordinates
+    vec3 globalPosition = model_matrices[int(object_index)] * vec3(position, 1);
+
+    // The position in camera coordinates
+    vec3 viewPosition = view_matrix * globalPosition;
+
+    gl_Position = vec4(viewPosition.xy, depth, 1);
+    colorFrag = color;
+}
@@ -29,6 +29,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -73,6 +74,12 @@ import java.util.Map;
  * if they are not the reserved words <code>true</code>, <code>false</code>, or
  * <code>null</code>.</li>
  * </ul>
+ * <p>
+ * While every value is a number, the values are kept unboxed in a double
+ * array rather than in a list, so a large array of coordinates takes a few
+ * bytes per value, and <code>getDouble</code> doesn't allocate. The first
+ * value that is not a number moves them all into the list. Either way, the
+ * same values and types are returned.
  *
  * @author JSON.org
  * @version 2013-04-18
@@ -80,15 +87,32 @@ import java.util.Map;
 public class JSONArray {
 
     /**
-     * The arrayList where the JSONArray's properties are kept.
+     * Integers beyond this can't all be kept exactly in a double.
+     */
+    private static final long MAX_EXACT = 1L << 53;
+
+    /**
+     * The arrayList where the JSONArray's properties are kept, or null while
+     * they are all kept unboxed.
      */
-    private final ArrayList myArrayList;
+    private ArrayList myArrayList;
+
+    /**
+     * The unboxed values, of which the first myLength are in use. A bit is
+     * set in myIntegers for each value that is an Integer or Long rather than
+     * a Double. Only a Long that is too big to have been an Integer, but is
+     * exact as a double, can be kept this way.
+     */
+    private double[] myDoubles;
+    private long[] myIntegers;
+    private int myLength;
 
     /**
      * Construct an empty JSONArray.
      */
     public JSONArray() {
-        this.myArrayList = new ArrayList();
+        this.myDoubles = new double[8];
+        this.myIntegers = new long[1];
     }
 
     /**
@@ -107,12 +131,17 @@ public class JSONArray {
         if (x.nextClean() != ']') {
             x.back();
             for (;;) {
-                if (x.nextClean() == ',') {
+                char c = x.nextClean();
+                if (c == ',') {
                     x.back();
-                    this.myArrayList.add(JSONObject.NULL);
+                    this.add(JSONObject.NULL);
                 } else {
                     x.back();
-                    this.myArrayList.add(x.nextValue());
+                    if (this.myArrayList != null
+                            || !((c >= '0' && c <= '9') || c == '-')
+                            || !this.addScanned(x)) {
+                        this.add(x.nextValue());
+                    }
                 }
                 switch (x.nextClean()) {
                 case ',':
@@ -151,11 +180,11 @@ public class JSONArray {
      *            A Collection.
      */
     public JSONArray(Collection collection) {
-        this.myArrayList = new ArrayList();
+        this();
         if (collection != null) {
             Iterator iter = collection.iterator();
             while (iter.hasNext()) {
-                this.myArrayList.add(JSONObject.wrap(iter.next()));
+                this.add(JSONObject.wrap(iter.next()));
             }
         }
     }
@@ -232,6 +261,9 @@ public class JSONArray {
      *             to a number.
      */
     public double getDouble(int index) throws JSONException {
+        if (this.myArrayList == null && index >= 0 && index < this.myLength) {
+            return this.myDoubles[index];
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).doubleValue()
@@ -251,6 +283,10 @@ public class JSONArray {
      *             If the key is not found or if the value is not a number.
      */
     public int getInt(int index) throws JSONException {
+        if (this.myArrayList == null && index >= 0 && index < this.myLength) {
+            return this.isInteger(index) ? (int) (long) this.myDoubles[index]
+                    : (int) this.myDoubles[index];
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).intValue()
@@ -307,6 +343,9 @@ public class JSONArray {
      *             to a number.
      */
     public long getLong(int index) throws JSONException {
+        if (this.myArrayList == null && index >= 0 && index < this.myLength) {
+            return (long) this.myDoubles[index];
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).longValue()
@@ -363,7 +402,7 @@ public class JSONArray {
             if (i > 0) {
                 sb.append(separator);
             }
-            sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+            sb.append(JSONObject.valueToString(this.opt(i)));
         }
         return sb.toString();
     }
@@ -374,7 +413,8 @@ public class JSONArray {
      * @return The length (or size).
      */
     public int length() {
-        return this.myArrayList.size();
+        return this.myArrayList == null ? this.myLength
+                : this.myArrayList.size();
     }
 
     /**
@@ -385,7 +425,10 @@ public class JSONArray {
      * @return An object value, or null if there is no object at that index.
      */
     public Object opt(int index) {
-        return (index < 0 || index >= this.length()) ? null : this.myArrayList
+        if (index < 0 || index >= this.length()) {
+            return null;
+        }
+        return this.myArrayList == null ? this.boxed(index) : this.myArrayList
                 .get(index);
     }
 
@@ -661,7 +704,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(Object value) {
-        this.myArrayList.add(value);
+        this.add(value);
         return this;
     }
 
@@ -794,7 +837,12 @@ public class JSONArray {
             throw new JSONException("JSONArray[" + index + "] not found.");
         }
         if (index < this.length()) {
-            this.myArrayList.set(index, value);
+            if (this.myArrayList == null && !this.setNumber(index, value)) {
+                this.box();
+            }
+            if (this.myArrayList != null) {
+                this.myArrayList.set(index, value);
+            }
         } else {
             while (index != this.length()) {
                 this.put(JSONObject.NULL);
@@ -814,10 +862,56 @@ public class JSONArray {
      */
     public Object remove(int index) {
         Object o = this.opt(index);
-        this.myArrayList.remove(index);
+        if (this.myArrayList != null) {
+            this.myArrayList.remove(index);
+            return o;
+        }
+        if (o == null) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + this.myLength);
+        }
+        for (int i = index + 1; i < this.myLength; i += 1) {
+            this.setBits(i - 1, this.myDoubles[i], this.isInteger(i));
+        }
+        this.myLength -= 1;
         return o;
     }
 
+    /**
+     * Produce a double array of the numbers in this JSONArray, without boxing
+     * them again.
+     *
+     * @return A double array.
+     * @throws JSONException
+     *             If any of the values cannot be converted to a number.
+     */
+    public double[] toDoubleArray() throws JSONException {
+        if (this.myArrayList == null) {
+            return Arrays.copyOf(this.myDoubles, this.myLength);
+        }
+        double[] values = new double[this.length()];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = this.getDouble(i);
+        }
+        return values;
+    }
+
+    /**
+     * Produce a float array of the numbers in this JSONArray, without boxing
+     * them again.
+     *
+     * @return A float array.
+     * @throws JSONException
+     *             If any of the values cannot be converted to a number.
+     */
+    public float[] toFloatArray() throws JSONException {
+        float[] values = new float[this.length()];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = (float) this.getDouble(i);
+        }
+        return values;
+    }
+
     /**
      * Produce a JSONObject by combining a JSONArray of names with the values of
      * this JSONArray.
@@ -913,7 +1007,7 @@ public class JSONArray {
             writer.write('[');
 
             if (length == 1) {
-                JSONObject.writeValue(writer, this.myArrayList.get(0),
+                JSONObject.writeValue(writer, this.opt(0),
                         indentFactor, indent);
             } else if (length != 0) {
                 final int newindent = indent + indentFactor;
@@ -926,7 +1020,7 @@ public class JSONArray {
                         writer.write('\n');
                     }
                     JSONObject.indent(writer, newindent);
-                    JSONObject.writeValue(writer, this.myArrayList.get(i),
+                    JSONObject.writeValue(writer, this.opt(i),
                             indentFactor, newindent);
                     commanate = true;
                 }
@@ -941,4 +1035,116 @@ public class JSONArray {
             throw new JSONException(e);
         }
     }
+
+    /**
+     * Append a value, unboxed if it and every value before it can be.
+     */
+    private void add(Object value) {
+        if (this.myArrayList == null) {
+            if (this.setNumber(this.myLength, value)) {
+                return;
+            }
+            this.box();
+        }
+        this.myArrayList.add(value);
+    }
+
+    /**
+     * Append the number the tokener is at, without boxing it, as nextValue()
+     * would have read it.
+     *
+     * @return false if the number has to be read by nextValue() instead.
+     */
+    private boolean addScanned(JSONTokener x) throws JSONException {
+        if (!x.scanNumber(true)) {
+            return false;
+        }
+        if (!x.numberIntegral) {
+            this.setBits(this.myLength, x.numberValue(), false);
+            return true;
+        }
+        long value = x.numberNegative ? -x.numberMantissa : x.numberMantissa;
+        if (value == (int) value) {
+            this.setBits(this.myLength, value, true);
+        } else {
+            this.add(Long.valueOf(value));
+        }
+        return true;
+    }
+
+    /**
+     * Put a value at an index up to myLength unboxed, if it can be.
+     *
+     * @return false if the value has to be boxed.
+     */
+    private boolean setNumber(int index, Object value) {
+        if (value instanceof Double) {
+            this.setBits(index, ((Double) value).doubleValue(), false);
+            return true;
+        }
+        if (value instanceof Integer) {
+            this.setBits(index, ((Integer) value).intValue(), true);
+            return true;
+        }
+        if (value instanceof Long) {
+            long l = ((Long) value).longValue();
+            if (l != (int) l && l >= -MAX_EXACT && l <= MAX_EXACT) {
+                this.setBits(index, l, true);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Put an unboxed value at an index up to myLength, growing the arrays if
+     * it is appended.
+     */
+    private void setBits(int index, double value, boolean integer) {
+        if (index == this.myLength) {
+            if (index == this.myDoubles.length) {
+                this.myDoubles = Arrays.copyOf(this.myDoubles, index * 2);
+                this.myIntegers = Arrays.copyOf(this.myIntegers,
+                        (index * 2 + 63) >> 6);
+            }
+            this.myLength += 1;
+        }
+        this.myDoubles[index] = value;
+        if (integer) {
+            this.myIntegers[index >> 6] |= 1L << index;
+        } else {
+            this.myIntegers[index >> 6] &= ~(1L << index);
+        }
+    }
+
+    private boolean isInteger(int index) {
+        return (this.myIntegers[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Box an unboxed value, as the type it was put as.
+     */
+    private Object boxed(int index) {
+        double value = this.myDoubles[index];
+        if (!this.isInteger(index)) {
+            return Double.valueOf(value);
+        }
+        long l = (long) value;
+        return l == (int) l ? (Object) Integer.valueOf((int) l) : Long.valueOf(l);
+    }
+
+    /**
+     * Move the unboxed values into myArrayList, before a value that can't be
+     * kept unboxed is put.
+     */
+    private void box() {
+        ArrayList list = new ArrayList(Math.max(10, this.myLength * 3 / 2));
+        for (int i = 0; i < this.myLength; i += 1) {
+            list.add(this.boxed(i));
+        }
+        this.myArrayList = list;
+        this.myDoubles = null;
+        this.myIntegers = null;
+        this.myLength = 0;
+    }
 }
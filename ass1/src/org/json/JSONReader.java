@@ -0,0 +1,600 @@
+package org.json;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * JSONReader reads a JSON text one token at a time, without building a
+ * JSONObject or JSONArray. Only the current token and the stack of open
+ * arrays and objects are held in memory, so very large texts can be read in
+ * constant memory.
+ * <p>
+ * It is the reading counterpart of JSONWriter. Arrays are bounded by
+ * <code>beginArray</code> and <code>endArray</code>, and objects by
+ * <code>beginObject</code> and <code>endObject</code>. Inside an object,
+ * <code>nextName</code> reads each key before its value. For example,
+ * <pre>
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if (name.equals("x")) {
+ *         x = reader.nextDouble();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();</pre>
+ * <p>
+ * The same text is accepted as by the JSONObject and JSONArray constructors,
+ * including unquoted and single quoted strings, pairs separated by
+ * <code>;</code> and extra commas before a closing bracket.
+ */
+public class JSONReader {
+
+    /** The next token is a <code>[</code>. */
+    public static final int BEGIN_ARRAY = 1;
+
+    /** The next token is a <code>]</code>. */
+    public static final int END_ARRAY = 2;
+
+    /** The next token is a <code>{</code>. */
+    public static final int BEGIN_OBJECT = 3;
+
+    /** The next token is a <code>}</code>. */
+    public static final int END_OBJECT = 4;
+
+    /** The next token is a key in an object. */
+    public static final int NAME = 5;
+
+    /** The next token is a string value. */
+    public static final int STRING = 6;
+
+    /** The next token is a number value. */
+    public static final int NUMBER = 7;
+
+    /** The next token is <code>true</code> or <code>false</code>. */
+    public static final int BOOLEAN = 8;
+
+    /** The next token is <code>null</code>, or a missing array element. */
+    public static final int NULL = 9;
+
+    /** There is nothing more to read. */
+    public static final int END_DOCUMENT = 10;
+
+    /**
+     * The characters that end an unquoted value.
+     */
+    private static final String DELIMITERS = ",:]}/\\\"[{;=#";
+
+    /**
+     * The source of characters.
+     */
+    private final JSONTokener x;
+
+    /**
+     * The stack of open values. Values:
+     * 'a' (array, before the first element),
+     * 'A' (array, after an element),
+     * 'o' (object, before the first key),
+     * 'O' (object, after a value),
+     * 'k' (object, after a key),
+     * 'd' (document, before the value),
+     * 'D' (document, after the value).
+     */
+    private char stack[];
+
+    /**
+     * The stack top index.
+     */
+    private int top;
+
+    /**
+     * The next token, or 0 if it hasn't been read yet.
+     */
+    private int peeked;
+
+    /**
+     * The quote character of a peeked string, or 0 if it is unquoted.
+     */
+    private char quote;
+
+    /**
+     * The text of a peeked unquoted value. A peeked number is not read into
+     * it, but left in the source for the tokener to parse.
+     */
+    private final StringBuilder text;
+
+    /**
+     * Make a JSONReader that reads from a JSONTokener.
+     *
+     * @param x A JSONTokener.
+     */
+    public JSONReader(JSONTokener x) {
+        this.x = x;
+        this.stack = new char[32];
+        this.stack[0] = 'd';
+        this.top = 1;
+        this.text = new StringBuilder();
+    }
+
+    /**
+     * Make a JSONReader that reads from a Reader.
+     *
+     * @param reader A reader.
+     */
+    public JSONReader(Reader reader) {
+        this(new JSONTokener(reader));
+    }
+
+    /**
+     * Make a JSONReader that reads from an InputStream.
+     *
+     * @param inputStream An input stream.
+     */
+    public JSONReader(InputStream inputStream) {
+        this(new JSONTokener(inputStream));
+    }
+
+    /**
+     * Make a JSONReader that reads from a string.
+     *
+     * @param s A source string.
+     */
+    public JSONReader(String s) {
+        this(new JSONTokener(s));
+    }
+
+    /**
+     * Consume the <code>[</code> that begins an array.
+     * @throws JSONException If the next token is not the start of an array.
+     */
+    public void beginArray() throws JSONException {
+        this.expect(BEGIN_ARRAY, "Expected '['");
+        this.push('a');
+    }
+
+    /**
+     * Consume the <code>]</code> that ends the current array.
+     * @throws JSONException If there are more elements in the array.
+     */
+    public void endArray() throws JSONException {
+        this.expect(END_ARRAY, "Expected ']'");
+        this.top -= 1;
+    }
+
+    /**
+     * Consume the <code>{</code> that begins an object.
+     * @throws JSONException If the next token is not the start of an object.
+     */
+    public void beginObject() throws JSONException {
+        this.expect(BEGIN_OBJECT, "Expected '{'");
+        this.push('o');
+    }
+
+    /**
+     * Consume the <code>}</code> that ends the current object.
+     * @throws JSONException If there are more pairs in the object.
+     */
+    public void endObject() throws JSONException {
+        this.expect(END_OBJECT, "Expected '}'");
+        this.top -= 1;
+    }
+
+    /**
+     * Determine if the current array or object has more elements.
+     * @return true if the next token is not the end of an array, an object or
+     * the text.
+     * @throws JSONException If there is a syntax error.
+     */
+    public boolean hasNext() throws JSONException {
+        int token = this.peek();
+        return token != END_ARRAY && token != END_OBJECT
+                && token != END_DOCUMENT;
+    }
+
+    /**
+     * Get the kind of the next token, without consuming it.
+     * @return One of the token constants, e.g. BEGIN_OBJECT.
+     * @throws JSONException If there is a syntax error.
+     */
+    public int peek() throws JSONException {
+        if (this.peeked == 0) {
+            this.peeked = this.read();
+        }
+        return this.peeked;
+    }
+
+    /**
+     * Get the next key in the current object.
+     * @return The key.
+     * @throws JSONException If the next token is not a key.
+     */
+    public String nextName() throws JSONException {
+        this.expect(NAME, "Expected a key");
+        this.stack[this.top - 1] = 'k';
+        char c = this.x.nextClean();
+        if (c == '"' || c == '\'') {
+            return this.x.nextString(c);
+        }
+        this.x.back();
+        this.readText();
+        if (this.text.length() == 0) {
+            throw this.x.syntaxError("Missing value");
+        }
+        return this.text.toString();
+    }
+
+    /**
+     * Get the next value as a string. Numbers and booleans are returned as
+     * they appear in the text.
+     * @return The string.
+     * @throws JSONException If the next token is not a string, number or
+     * boolean.
+     */
+    public String nextString() throws JSONException {
+        int token = this.peek();
+        if (token == STRING && this.quote != 0) {
+            this.peeked = 0;
+            return this.x.nextString(this.quote);
+        }
+        if (token == NUMBER) {
+            this.peeked = 0;
+            this.readText();
+            return this.text.toString();
+        }
+        if (token != STRING && token != NUMBER && token != BOOLEAN) {
+            throw this.x.syntaxError("Expected a string");
+        }
+        this.peeked = 0;
+        return this.text.toString();
+    }
+
+    /**
+     * Get the next value as a double. Strings are converted if they hold a
+     * number.
+     * @return The double.
+     * @throws JSONException If the next token is not a number.
+     */
+    public double nextDouble() throws JSONException {
+        if (this.peek() == NUMBER) {
+            this.peeked = 0;
+            return this.x.nextDouble();
+        }
+        String string = this.numberText();
+        try {
+            return Double.parseDouble(string);
+        } catch (NumberFormatException e) {
+            throw this.x.syntaxError("Expected a number and instead saw " +
+                    JSONObject.quote(string));
+        }
+    }
+
+    /**
+     * Get the next value as a long. Numbers with a fraction or exponent are
+     * truncated.
+     * @return The long.
+     * @throws JSONException If the next token is not a number.
+     */
+    public long nextLong() throws JSONException {
+        if (this.peek() == NUMBER) {
+            this.peeked = 0;
+            return this.x.nextLong();
+        }
+        String string = this.numberText();
+        try {
+            if (string.indexOf('.') < 0 && string.indexOf('e') < 0
+                    && string.indexOf('E') < 0) {
+                return Long.parseLong(string);
+            }
+            return (long) Double.parseDouble(string);
+        } catch (NumberFormatException e) {
+            throw this.x.syntaxError("Expected a number and instead saw " +
+                    JSONObject.quote(string));
+        }
+    }
+
+    /**
+     * Get the next value as an int. Numbers with a fraction or exponent are
+     * truncated.
+     * @return The int.
+     * @throws JSONException If the next token is not a number.
+     */
+    public int nextInt() throws JSONException {
+        return (int) this.nextLong();
+    }
+
+    /**
+     * Get the next value, an array of numbers, as a double array. Each
+     * number is parsed straight into the array, so none are boxed.
+     * @return The double array.
+     * @throws JSONException If the next token is not an array of numbers.
+     */
+    public double[] nextDoubleArray() throws JSONException {
+        double[] values = new double[16];
+        int length = 0;
+        this.beginArray();
+        while (this.hasNext()) {
+            if (length == values.length) {
+                values = Arrays.copyOf(values, length * 2);
+            }
+            values[length] = this.nextDouble();
+            length += 1;
+        }
+        this.endArray();
+        return Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Get the next value, an array of numbers, as a float array. Each
+     * number is parsed straight into the array, so none are boxed.
+     * @return The float array.
+     * @throws JSONException If the next token is not an array of numbers.
+     */
+    public float[] nextFloatArray() throws JSONException {
+        float[] values = new float[16];
+        int length = 0;
+        this.beginArray();
+        while (this.hasNext()) {
+            if (length == values.length) {
+                values = Arrays.copyOf(values, length * 2);
+            }
+            values[length] = (float) this.nextDouble();
+            length += 1;
+        }
+        this.endArray();
+        return Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Get the next value as a boolean.
+     * @return The boolean.
+     * @throws JSONException If the next token is not true or false.
+     */
+    public boolean nextBoolean() throws JSONException {
+        this.expect(BOOLEAN, "Expected a boolean");
+        return this.text.toString().equalsIgnoreCase("true");
+    }
+
+    /**
+     * Consume a null value.
+     * @throws JSONException If the next token is not null.
+     */
+    public void nextNull() throws JSONException {
+        this.expect(NULL, "Expected null");
+    }
+
+    /**
+     * Skip the next value, including everything inside it if it is an array
+     * or object. If the next token is a key, the key and its value are
+     * skipped.
+     * @throws JSONException If there is no value to skip.
+     */
+    public void skipValue() throws JSONException {
+        int depth = 0;
+        int token;
+        do {
+            token = this.peek();
+            switch (token) {
+            case BEGIN_ARRAY:
+                this.beginArray();
+                depth += 1;
+                break;
+            case BEGIN_OBJECT:
+                this.beginObject();
+                depth += 1;
+                break;
+            case END_ARRAY:
+            case END_OBJECT:
+                if (depth == 0) {
+                    throw this.x.syntaxError("Expected a value");
+                }
+                this.peeked = 0;
+                this.top -= 1;
+                depth -= 1;
+                break;
+            case NAME:
+                this.nextName();
+                break;
+            case STRING:
+            case NUMBER:
+                this.nextString();
+                break;
+            case END_DOCUMENT:
+                throw this.x.syntaxError("Expected a value");
+            default:
+                this.peeked = 0;
+            }
+        } while (depth > 0 || token == NAME);
+    }
+
+    /**
+     * Make a JSONException to signal a syntax error at the current position.
+     *
+     * @param message The error message.
+     * @return  A JSONException object, suitable for throwing
+     */
+    public JSONException syntaxError(String message) {
+        return this.x.syntaxError(message);
+    }
+
+    /**
+     * Make a printable string of this JSONReader.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        return this.x.toString();
+    }
+
+    /**
+     * Consume the next token, checking its kind.
+     */
+    private void expect(int token, String message) throws JSONException {
+        if (this.peek() != token) {
+            throw this.x.syntaxError(message);
+        }
+        this.peeked = 0;
+    }
+
+    private void push(char mode) {
+        if (this.top == this.stack.length) {
+            char[] bigger = new char[this.top * 2];
+            System.arraycopy(this.stack, 0, bigger, 0, this.top);
+            this.stack = bigger;
+        }
+        this.stack[this.top] = mode;
+        this.top += 1;
+    }
+
+    /**
+     * Get the text of the next value, which should be a string holding a
+     * number.
+     */
+    private String numberText() throws JSONException {
+        if (this.peek() != STRING) {
+            throw this.x.syntaxError("Expected a number");
+        }
+        return this.nextString().trim();
+    }
+
+    /**
+     * Read up to the start of the next token, and work out its kind.
+     */
+    private int read() throws JSONException {
+        char c;
+        switch (this.stack[this.top - 1]) {
+        case 'a':
+            if (this.x.nextClean() == ']') {
+                return END_ARRAY;
+            }
+            this.x.back();
+            this.stack[this.top - 1] = 'A';
+            return this.readValue(true);
+        case 'A':
+            switch (this.x.nextClean()) {
+            case ',':
+                if (this.x.nextClean() == ']') {
+                    return END_ARRAY;
+                }
+                this.x.back();
+                return this.readValue(true);
+            case ']':
+                return END_ARRAY;
+            default:
+                throw this.x.syntaxError("Expected a ',' or ']'");
+            }
+        case 'o':
+            c = this.x.nextClean();
+            if (c == '}') {
+                return END_OBJECT;
+            }
+            if (c == 0) {
+                throw this.x.syntaxError("A JSONObject text must end with '}'");
+            }
+            this.x.back();
+            return NAME;
+        case 'O':
+            switch (this.x.nextClean()) {
+            case ';':
+            case ',':
+                if (this.x.nextClean() == '}') {
+                    return END_OBJECT;
+                }
+                this.x.back();
+                return NAME;
+            case '}':
+                return END_OBJECT;
+            default:
+                throw this.x.syntaxError("Expected a ',' or '}'");
+            }
+        case 'k':
+            if (this.x.nextClean() != ':') {
+                throw this.x.syntaxError("Expected a ':' after a key");
+            }
+            this.stack[this.top - 1] = 'O';
+            return this.readValue(false);
+        case 'd':
+            this.stack[this.top - 1] = 'D';
+            return this.readValue(false);
+        default:
+            if (this.x.nextClean() != 0) {
+                throw this.x.syntaxError("Expected the end of the text");
+            }
+            return END_DOCUMENT;
+        }
+    }
+
+    /**
+     * Read the start of a value, and work out its kind.
+     *
+     * @param inArray Whether the value is an array element, which may be
+     * missing.
+     */
+    private int readValue(boolean inArray) throws JSONException {
+        char c = this.x.nextClean();
+        this.quote = 0;
+        switch (c) {
+        case '"':
+        case '\'':
+            this.quote = c;
+            return STRING;
+        case '{':
+            return BEGIN_OBJECT;
+        case '[':
+            return BEGIN_ARRAY;
+        case ',':
+            if (inArray) {
+                // A missing element, which is null, like in JSONArray
+                this.x.back();
+                return NULL;
+            }
+            break;
+        }
+        this.x.back();
+        if ((c >= '0' && c <= '9') || c == '-') {
+            return NUMBER;
+        }
+        this.readText();
+
+        int length = this.text.length();
+        if (length == 0) {
+            throw this.x.syntaxError("Missing value");
+        }
+        if (length == 4 || length == 5) {
+            String string = this.text.toString();
+            if (string.equalsIgnoreCase("true")
+                    || string.equalsIgnoreCase("false")) {
+                return BOOLEAN;
+            }
+            if (string.equalsIgnoreCase("null")) {
+                return NULL;
+            }
+        }
+        return STRING;
+    }
+
+    /**
+     * Read an unquoted value or key into text, trimmed.
+     */
+    private void readText() throws JSONException {
+        this.text.setLength(0);
+        char c = this.x.next();
+        while (c >= ' ' && DELIMITERS.indexOf(c) < 0) {
+            this.text.append(c);
+            c = this.x.next();
+        }
+        this.x.back();
+
+        int end = this.text.length();
+        while (end > 0 && this.text.charAt(end - 1) <= ' ') {
+            end -= 1;
+        }
+        this.text.setLength(end);
+        int start = 0;
+        while (start < end && this.text.charAt(start) <= ' ') {
+            start += 1;
+        }
+        this.text.delete(0, start);
+    }
+}
@@ -1,11 +1,9 @@
 package org.json;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -35,18 +33,75 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * Characters are read from the source in large blocks into a window, rather
+ * than one at a time. Strings without escapes are sliced straight out of the
+ * window. Lines are only counted when the window moves on, or when a position
+ * is reported.
  * @author JSON.org
  * @version 2012-02-16
  */
 public class JSONTokener {
 
-    private long    character;
+    /**
+     * The number of characters read from the source at a time.
+     */
+    private static final int BLOCK_SIZE = 16384;
+
+    /**
+     * The powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The window of characters. The current position is pos, and the
+     * characters from pos to limit have been read but not consumed.
+     */
+    private char[]  buffer;
+    private int     pos;
+    private int     limit;
+
+    /**
+     * The index in the source of buffer[0].
+     */
+    private long    offset;
+
+    /**
+     * Whether the source has been read to the end.
+     */
     private boolean eof;
-    private long    index;
+
+    /**
+     * Whether the last call was back(), which can't be repeated.
+     */
+    private boolean usePrevious;
+
+    /**
+     * The position skipTo() must be able to go back to, or -1.
+     */
+    private int     mark;
+
+    /**
+     * The lines counted before the window: the line number, and the index of
+     * the start of the line.
+     */
     private long    line;
-    private char    previous;
+    private long    lineStart;
+
     private Reader  reader;
-    private boolean usePrevious;
+
+    /**
+     * The last number found by scanNumber(): its sign, its significant
+     * digits, and the power of ten they are multiplied by. It is integral if
+     * it has no fraction or exponent.
+     */
+    boolean numberNegative;
+    long    numberMantissa;
+    int     numberExponent;
+    boolean numberIntegral;
 
 
     /**
@@ -55,15 +110,7 @@ public class JSONTokener {
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported()
-            ? reader
-            : new BufferedReader(reader);
-        this.eof = false;
-        this.usePrevious = false;
-        this.previous = 0;
-        this.index = 0;
-        this.character = 1;
-        this.line = 1;
+        this(reader, new char[BLOCK_SIZE], 0);
     }
 
 
@@ -81,7 +128,22 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this(null, s.toCharArray(), s.length());
+        this.eof = true;
+    }
+
+
+    private JSONTokener(Reader reader, char[] buffer, int limit) {
+        this.reader = reader;
+        this.buffer = buffer;
+        this.pos = 0;
+        this.limit = limit;
+        this.offset = 0;
+        this.eof = false;
+        this.usePrevious = false;
+        this.mark = -1;
+        this.line = 1;
+        this.lineStart = -1;
     }
 
 
@@ -91,13 +153,11 @@ public class JSONTokener {
      * the next number or identifier.
      */
     public void back() throws JSONException {
-        if (this.usePrevious || this.index <= 0) {
+        if (this.usePrevious || this.offset + this.pos <= 0) {
             throw new JSONException("Stepping back two steps is not supported");
         }
-        this.index -= 1;
-        this.character -= 1;
+        this.pos -= 1;
         this.usePrevious = true;
-        this.eof = false;
     }
 
 
@@ -121,7 +181,7 @@ public class JSONTokener {
     }
 
     public boolean end() {
-        return this.eof && !this.usePrevious;
+        return this.eof && this.pos > this.limit;
     }
 
 
@@ -146,34 +206,14 @@ public class JSONTokener {
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() throws JSONException {
-        int c;
-        if (this.usePrevious) {
-            this.usePrevious = false;
-            c = this.previous;
-        } else {
-            try {
-                c = this.reader.read();
-            } catch (IOException exception) {
-                throw new JSONException(exception);
-            }
-
-            if (c <= 0) { // End of stream
-                this.eof = true;
-                c = 0;
-            }
-        }
-        this.index += 1;
-        if (this.previous == '\r') {
-            this.line += 1;
-            this.character = c == '\n' ? 0 : 1;
-        } else if (c == '\n') {
-            this.line += 1;
-            this.character = 0;
-        } else {
-            this.character += 1;
+        this.usePrevious = false;
+        if (this.pos < this.limit || this.fill()) {
+            return this.buffer[this.pos++];
         }
-        this.previous = (char) c;
-        return this.previous;
+
+        // Step past the end, so that back() works the same there
+        this.pos = this.limit + 1;
+        return 0;
     }
 
 
@@ -250,8 +290,37 @@ public class JSONTokener {
      */
     public String nextString(char quote) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = null;
         for (;;) {
+
+// Take as many plain characters as possible straight from the window.
+
+            int start = this.pos;
+            int end = start;
+            while (end < this.limit) {
+                c = this.buffer[end];
+                if (c == quote || c == '\\' || c == '\n' || c == '\r' ||
+                        c == 0) {
+                    break;
+                }
+                end += 1;
+            }
+            this.pos = end;
+            if (end < this.limit && this.buffer[end] == quote) {
+                this.pos += 1;
+                this.usePrevious = false;
+                if (sb == null) {
+                    return new String(this.buffer, start, end - start);
+                }
+                return sb.append(this.buffer, start, end - start).toString();
+            }
+            if (sb == null) {
+                sb = new StringBuilder(Math.max(16, 2 * (end - start)));
+            }
+            sb.append(this.buffer, start, end - start);
+
+// Then handle the character that stopped it, refilling the window if needed.
+
             c = this.next();
             switch (c) {
             case 0:
@@ -306,7 +375,7 @@ public class JSONTokener {
      * @return   A string.
      */
     public String nextTo(char delimiter) throws JSONException {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
             char c = this.next();
             if (c == delimiter || c == 0 || c == '\n' || c == '\r') {
@@ -328,7 +397,7 @@ public class JSONTokener {
      */
     public String nextTo(String delimiters) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
             c = this.next();
             if (delimiters.indexOf(c) >= 0 || c == 0 ||
@@ -366,6 +435,28 @@ public class JSONTokener {
                 return new JSONArray(this);
         }
 
+        /*
+         * Most numbers can be converted straight from the source, without
+         * making a string first. Those that can't, and anything that only
+         * starts like a number, are left to stringToValue.
+         */
+
+        if ((c >= '0' && c <= '9') || c == '-') {
+            this.back();
+            if (this.scanNumber(true)) {
+                if (this.numberIntegral) {
+                    long value = this.numberNegative
+                            ? -this.numberMantissa : this.numberMantissa;
+                    if (value == (int) value) {
+                        return Integer.valueOf((int) value);
+                    }
+                    return Long.valueOf(value);
+                }
+                return Double.valueOf(this.numberValue());
+            }
+            c = this.next();
+        }
+
         /*
          * Handle unquoted text. This could be the values true, false, or
          * null, or it can be a number. An implementation (such as this one)
@@ -375,7 +466,7 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
             sb.append(c);
             c = this.next();
@@ -390,6 +481,206 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Get the next number. It is read up to the next formatting character,
+     * in the same way as unquoted text in nextValue().
+     * @return The number.
+     * @throws JSONException If the text is not a number.
+     */
+    public double nextDouble() throws JSONException {
+        if (this.scanNumber(false)) {
+            return this.numberValue();
+        }
+        String string = this.nextUnquoted();
+        try {
+            return Double.parseDouble(string);
+        } catch (NumberFormatException e) {
+            throw this.syntaxError("Expected a number and instead saw " +
+                    JSONObject.quote(string));
+        }
+    }
+
+
+    /**
+     * Get the next number as a long. Numbers with a fraction or exponent are
+     * truncated.
+     * @return The number.
+     * @throws JSONException If the text is not a number.
+     */
+    public long nextLong() throws JSONException {
+        if (this.scanNumber(false)) {
+            if (this.numberExponent == 0) {
+                return this.numberNegative
+                        ? -this.numberMantissa : this.numberMantissa;
+            }
+            return (long) this.numberValue();
+        }
+        String string = this.nextUnquoted();
+        try {
+            if (string.indexOf('.') < 0 && string.indexOf('e') < 0
+                    && string.indexOf('E') < 0) {
+                return Long.parseLong(string);
+            }
+            return (long) Double.parseDouble(string);
+        } catch (NumberFormatException e) {
+            throw this.syntaxError("Expected a number and instead saw " +
+                    JSONObject.quote(string));
+        }
+    }
+
+
+    /**
+     * Scan a number at the current position straight from the window into
+     * the number fields. Nothing is consumed unless it succeeds, which needs
+     * the number to be followed by a formatting character, and to be
+     * exactly convertible: at most 18 significant digits, and a power of
+     * ten that is exact as a double unless the digits are integral.
+     *
+     * @param strict Whether an integer must also be written the way
+     * Long.toString() would write it, as stringToValue() requires.
+     * @return true if a number was scanned.
+     */
+    boolean scanNumber(boolean strict) throws JSONException {
+        if (this.limit - this.pos < 64 && !this.eof) {
+            this.fill();
+        }
+        char[] buffer = this.buffer;
+        int limit = this.limit;
+        int i = this.pos;
+        char c = 0;
+
+        boolean negative = i < limit && buffer[i] == '-';
+        if (negative) {
+            i += 1;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int first = i;
+        while (i < limit && (c = buffer[i]) >= '0' && c <= '9') {
+            mantissa = mantissa * 10 + (c - '0');
+            if (digits > 0 || c != '0') {
+                digits += 1;
+            }
+            i += 1;
+        }
+        int integerDigits = i - first;
+        boolean canonical = integerDigits == 1 ||
+                (integerDigits > 1 && buffer[first] != '0');
+        boolean integral = true;
+        boolean valid = integerDigits > 0;
+        if (i < limit && c == '.') {
+            integral = false;
+            i += 1;
+            first = i;
+            while (i < limit && (c = buffer[i]) >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                exponent -= 1;
+                if (digits > 0 || c != '0') {
+                    digits += 1;
+                }
+                i += 1;
+            }
+            valid |= i > first;
+        }
+        if (valid && i < limit && (c == 'e' || c == 'E')) {
+            integral = false;
+            i += 1;
+            boolean negativeExponent = false;
+            if (i < limit && ((c = buffer[i]) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i += 1;
+            }
+            first = i;
+            int e = 0;
+            while (i < limit && (c = buffer[i]) >= '0' && c <= '9') {
+                if (e < 10000) {
+                    e = e * 10 + (c - '0');
+                }
+                i += 1;
+            }
+            valid = i > first;
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!valid || digits > 18 || !isExact(mantissa, exponent)) {
+            return false;
+        }
+        if (strict && integral && (!canonical || (negative && mantissa == 0))) {
+            return false;
+        }
+
+// Check that the number is all of the unquoted text.
+
+        int end = i;
+        while (i < limit && buffer[i] == ' ') {
+            i += 1;
+        }
+        if (i < limit ? buffer[i] >= ' ' && ",:]}/\\\"[{;=#".indexOf(buffer[i]) < 0
+                : !this.eof) {
+            return false;
+        }
+
+        this.setNumber(negative, mantissa, exponent, integral);
+        this.pos = end;
+        this.usePrevious = false;
+        return true;
+    }
+
+
+    /**
+     * Check whether digits times a power of ten can be converted to the
+     * nearest double exactly: the digits and the power must both be exact
+     * as doubles, so that there is only one rounding.
+     */
+    static boolean isExact(long mantissa, int exponent) {
+        return mantissa == 0 || exponent == 0 || (mantissa < (1L << 53) &&
+                exponent >= -22 && exponent <= 22);
+    }
+
+
+    /**
+     * Set the number fields, for scanNumber().
+     */
+    void setNumber(boolean negative, long mantissa, int exponent,
+            boolean integral) {
+        this.numberNegative = negative;
+        this.numberMantissa = mantissa;
+        this.numberExponent = exponent;
+        this.numberIntegral = integral;
+    }
+
+
+    /**
+     * Get the value of the last number scanned, correctly rounded.
+     */
+    double numberValue() {
+        double value;
+        if (this.numberMantissa == 0) {
+            value = 0;
+        } else if (this.numberExponent < 0) {
+            value = this.numberMantissa / POWERS_OF_TEN[-this.numberExponent];
+        } else {
+            value = this.numberMantissa * POWERS_OF_TEN[this.numberExponent];
+        }
+        return this.numberNegative ? -value : value;
+    }
+
+
+    /**
+     * Get unquoted text, up to the next formatting character, trimmed.
+     */
+    String nextUnquoted() throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        char c = this.next();
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            sb.append(c);
+            c = this.next();
+        }
+        this.back();
+        return sb.toString().trim();
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
@@ -399,24 +690,20 @@ public class JSONTokener {
      */
     public char skipTo(char to) throws JSONException {
         char c;
-        try {
-            long startIndex = this.index;
-            long startCharacter = this.character;
-            long startLine = this.line;
-            this.reader.mark(1000000);
-            do {
-                c = this.next();
-                if (c == 0) {
-                    this.reader.reset();
-                    this.index = startIndex;
-                    this.character = startCharacter;
-                    this.line = startLine;
-                    return c;
-                }
-            } while (c != to);
-        } catch (IOException exc) {
-            throw new JSONException(exc);
-        }
+        boolean usedPrevious = this.usePrevious;
+
+        // Keep the window from moving past here, in case we need to come back
+        this.mark = this.pos;
+        do {
+            c = this.next();
+            if (c == 0) {
+                this.pos = this.mark;
+                this.mark = -1;
+                this.usePrevious = usedPrevious;
+                return c;
+            }
+        } while (c != to);
+        this.mark = -1;
 
         this.back();
         return c;
@@ -440,7 +727,85 @@ public class JSONTokener {
      * @return " at {index} [character {character} line {line}]"
      */
     public String toString() {
-        return " at " + this.index + " [character " + this.character + " line " +
-            this.line + "]";
+        long index = this.offset + Math.min(this.pos, this.limit);
+        long line = this.line;
+        long lineStart = this.lineStart;
+        int end = Math.min(this.pos, this.limit);
+        for (int i = 0; i < end; i++) {
+            if (this.isLineEnd(i)) {
+                line += 1;
+                lineStart = this.offset + i + 1;
+            }
+        }
+        return " at " + index + " [character " + (index - lineStart) +
+            " line " + line + "]";
+    }
+
+
+    /**
+     * Check whether the character at a position in the window ends a line.
+     * A '\r' followed by '\n' doesn't, as the '\n' does.
+     */
+    private boolean isLineEnd(int i) {
+        char c = this.buffer[i];
+        return c == '\n' ||
+            (c == '\r' && (i + 1 >= this.limit || this.buffer[i + 1] != '\n'));
+    }
+
+
+    /**
+     * Move the window on and read the next block of characters into it.
+     * The character before the current position is kept, so that back()
+     * still works, as is everything from the mark.
+     *
+     * @return false if there are no more characters.
+     */
+    private boolean fill() throws JSONException {
+        if (this.eof) {
+            return false;
+        }
+
+        int keep = Math.max(0, this.pos - 1);
+        if (this.mark >= 0) {
+            keep = Math.min(keep, this.mark);
+        }
+
+// Count the lines in the characters that are about to be dropped.
+
+        for (int i = 0; i < keep; i++) {
+            if (this.isLineEnd(i)) {
+                this.line += 1;
+                this.lineStart = this.offset + i + 1;
+            }
+        }
+
+        System.arraycopy(this.buffer, keep, this.buffer, 0, this.limit - keep);
+        this.offset += keep;
+        this.pos -= keep;
+        this.limit -= keep;
+        if (this.mark >= 0) {
+            this.mark -= keep;
+        }
+        if (this.limit == this.buffer.length) {
+            char[] bigger = new char[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, bigger, 0, this.limit);
+            this.buffer = bigger;
+        }
+
+        try {
+            int n;
+            do {
+                n = this.reader.read(this.buffer, this.limit,
+                        this.buffer.length - this.limit);
+            } while (n == 0);
+            if (n < 0) {
+                this.eof = true;
+                return false;
+            }
+            this.limit += n;
+            return true;
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
     }
 }
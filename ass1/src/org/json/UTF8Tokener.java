@@ -0,0 +1,516 @@
+package org.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * The UTF8Tokener extends the JSONTokener to read UTF-8 bytes directly, from
+ * a byte array, a ByteBuffer or a memory-mapped file, rather than from
+ * characters. It can be given to the JSONObject and JSONArray constructors
+ * and to JSONReader in place of a JSONTokener.
+ * <p>
+ * The structure of a JSON text is all ASCII, so only the contents of strings
+ * are decoded, and then a whole string at a time. Numbers are parsed straight
+ * from the bytes. Malformed UTF-8 is read as U+FFFD, as InputStreamReader
+ * does, and a leading byte order mark is skipped.
+ * <p>
+ * Positions in syntax errors count bytes rather than characters.
+ */
+public class UTF8Tokener extends JSONTokener {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * The source. It is read by absolute index, so its own position is not
+     * used.
+     */
+    private final ByteBuffer bytes;
+    private final int        start;
+    private final int        limit;
+
+    /**
+     * The index of the next byte. If a character outside the Basic
+     * Multilingual Plane has been half read, low is its low surrogate,
+     * which is the next character; otherwise low is 0.
+     */
+    private int     pos;
+    private char    low;
+
+    /**
+     * Whether next() has been called at the end of the source.
+     */
+    private boolean eof;
+
+    /**
+     * The state before the last call to next(), for back(), which can't be
+     * repeated.
+     */
+    private int     previousPos;
+    private char    previousLow;
+    private boolean previousEof;
+    private boolean usePrevious;
+
+    /**
+     * Room to copy the bytes of a string out of a direct buffer.
+     */
+    private byte[]  scratch;
+
+
+    /**
+     * Construct a UTF8Tokener from a byte array.
+     *
+     * @param bytes     The UTF-8 source.
+     */
+    public UTF8Tokener(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+
+    /**
+     * Construct a UTF8Tokener from the bytes between a ByteBuffer's position
+     * and limit. The buffer's position is not changed.
+     *
+     * @param bytes     The UTF-8 source.
+     */
+    public UTF8Tokener(ByteBuffer bytes) {
+        super("");
+        this.bytes = bytes;
+        this.start = bytes.position();
+        this.limit = bytes.limit();
+        this.pos = this.start;
+        if (this.limit - this.start >= 3 && (bytes.get(this.start) & 0xFF) == 0xEF
+                && (bytes.get(this.start + 1) & 0xFF) == 0xBB
+                && (bytes.get(this.start + 2) & 0xFF) == 0xBF) {
+            this.pos += 3;
+        }
+        this.previousPos = -1;
+    }
+
+
+    /**
+     * Construct a UTF8Tokener that reads a file through memory-mapping, so
+     * that the file is not copied onto the heap.
+     *
+     * @param file      A UTF-8 file of less than 2GB.
+     * @throws JSONException If the file can't be mapped.
+     */
+    public UTF8Tokener(File file) throws JSONException {
+        this(map(file));
+    }
+
+
+    private static ByteBuffer map(File file) throws JSONException {
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+            } finally {
+                in.close();
+            }
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Back up one character.
+     */
+    public void back() throws JSONException {
+        if (this.usePrevious || this.previousPos < 0) {
+            throw new JSONException("Stepping back two steps is not supported");
+        }
+        this.pos = this.previousPos;
+        this.low = this.previousLow;
+        this.eof = this.previousEof;
+        this.usePrevious = true;
+    }
+
+
+    public boolean end() {
+        return this.eof;
+    }
+
+
+    /**
+     * Get the next character in the source, decoding it from UTF-8.
+     *
+     * @return The next character, or 0 if past the end of the source.
+     */
+    public char next() throws JSONException {
+        this.previousPos = this.pos;
+        this.previousLow = this.low;
+        this.previousEof = this.eof;
+        this.usePrevious = false;
+        if (this.low != 0) {
+            char c = this.low;
+            this.low = 0;
+            return c;
+        }
+        if (this.pos >= this.limit) {
+            this.eof = true;
+            return 0;
+        }
+        byte b = this.bytes.get(this.pos);
+        if (b >= 0) {
+            this.pos += 1;
+            return (char) b;
+        }
+        return this.decode();
+    }
+
+
+    /**
+     * Decode a character of two or more bytes at pos.
+     */
+    private char decode() {
+        int b = this.bytes.get(this.pos) & 0xFF;
+        int n;
+        int c;
+        if (b >= 0xF0 && b <= 0xF4) {
+            n = 4;
+            c = b & 0x07;
+        } else if (b >= 0xE0 && b < 0xF0) {
+            n = 3;
+            c = b & 0x0F;
+        } else if (b >= 0xC2 && b < 0xE0) {
+            n = 2;
+            c = b & 0x1F;
+        } else {
+            this.pos += 1;
+            return '\uFFFD';
+        }
+        if (this.pos + n > this.limit) {
+            this.pos += 1;
+            return '\uFFFD';
+        }
+        for (int i = 1; i < n; i++) {
+            b = this.bytes.get(this.pos + i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                this.pos += 1;
+                return '\uFFFD';
+            }
+            c = (c << 6) | (b & 0x3F);
+        }
+        if ((n == 3 && (c < 0x800 || (c >= 0xD800 && c <= 0xDFFF))) ||
+                (n == 4 && (c < 0x10000 || c > 0x10FFFF))) {
+            this.pos += 1;
+            return '\uFFFD';
+        }
+        this.pos += n;
+        if (n == 4) {
+            this.low = Character.lowSurrogate(c);
+            return Character.highSurrogate(c);
+        }
+        return (char) c;
+    }
+
+
+    /**
+     * Get the next char in the string, skipping whitespace.
+     * @throws JSONException
+     * @return  A character, or 0 if there are no more characters.
+     */
+    public char nextClean() throws JSONException {
+        for (;;) {
+            char c = this.next();
+            if (c == 0 || c > ' ') {
+                return c;
+            }
+        }
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character.
+     * Backslash processing is done. Only the bytes of the string are decoded.
+     * @param quote The quoting character, either
+     *      <code>"</code>&nbsp;<small>(double quote)</small> or
+     *      <code>'</code>&nbsp;<small>(single quote)</small>.
+     * @return      A String.
+     * @throws JSONException Unterminated string.
+     */
+    public String nextString(char quote) throws JSONException {
+        char c;
+        StringBuilder sb = null;
+        for (;;) {
+
+// Take as many plain bytes as possible, noting whether they are all ASCII.
+
+            int begin = this.pos;
+            int end = begin;
+            boolean ascii = true;
+            if (this.low == 0) {
+                while (end < this.limit) {
+                    byte b = this.bytes.get(end);
+                    if (b == quote || b == '\\' || b == '\n' || b == '\r' ||
+                            b == 0) {
+                        break;
+                    }
+                    if (b < 0) {
+                        ascii = false;
+                    }
+                    end += 1;
+                }
+            }
+            if (this.low == 0 && end < this.limit &&
+                    this.bytes.get(end) == quote) {
+                String s = this.decode(begin, end, ascii);
+                this.previousPos = end;
+                this.previousLow = 0;
+                this.previousEof = false;
+                this.usePrevious = false;
+                this.pos = end + 1;
+                return sb == null ? s : sb.append(s).toString();
+            }
+            if (sb == null) {
+                sb = new StringBuilder(Math.max(16, 2 * (end - begin)));
+            }
+            if (end > begin) {
+                sb.append(this.decode(begin, end, ascii));
+                this.pos = end;
+            }
+
+// Then handle the character that stopped it.
+
+            c = this.next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw this.syntaxError("Unterminated string");
+            case '\\':
+                c = this.next();
+                switch (c) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'u':
+                    sb.append((char)Integer.parseInt(this.next(4), 16));
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    sb.append(c);
+                    break;
+                default:
+                    throw this.syntaxError("Illegal escape.");
+                }
+                break;
+            default:
+                if (c == quote) {
+                    return sb.toString();
+                }
+                sb.append(c);
+            }
+        }
+    }
+
+
+    /**
+     * Decode the bytes from begin to end.
+     */
+    private String decode(int begin, int end, boolean ascii) {
+        Charset charset = ascii ? ISO_8859_1 : UTF_8;
+        int length = end - begin;
+        if (this.bytes.hasArray()) {
+            return new String(this.bytes.array(),
+                    this.bytes.arrayOffset() + begin, length, charset);
+        }
+        if (this.scratch == null || this.scratch.length < length) {
+            this.scratch = new byte[Math.max(256, length + (length >> 1))];
+        }
+        for (int i = 0; i < length; i++) {
+            this.scratch[i] = this.bytes.get(begin + i);
+        }
+        return new String(this.scratch, 0, length, charset);
+    }
+
+
+    /**
+     * Scan a number straight from the bytes, as JSONTokener does from its
+     * window.
+     */
+    boolean scanNumber(boolean strict) throws JSONException {
+        if (this.low != 0) {
+            return false;
+        }
+        ByteBuffer bytes = this.bytes;
+        int limit = this.limit;
+        int i = this.pos;
+        byte b = 0;
+
+        boolean negative = i < limit && bytes.get(i) == '-';
+        if (negative) {
+            i += 1;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int first = i;
+        while (i < limit && (b = bytes.get(i)) >= '0' && b <= '9') {
+            mantissa = mantissa * 10 + (b - '0');
+            if (digits > 0 || b != '0') {
+                digits += 1;
+            }
+            i += 1;
+        }
+        int integerDigits = i - first;
+        boolean canonical = integerDigits == 1 ||
+                (integerDigits > 1 && bytes.get(first) != '0');
+        boolean integral = true;
+        boolean valid = integerDigits > 0;
+        if (i < limit && b == '.') {
+            integral = false;
+            i += 1;
+            first = i;
+            while (i < limit && (b = bytes.get(i)) >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                exponent -= 1;
+                if (digits > 0 || b != '0') {
+                    digits += 1;
+                }
+                i += 1;
+            }
+            valid |= i > first;
+        }
+        if (valid && i < limit && (b == 'e' || b == 'E')) {
+            integral = false;
+            i += 1;
+            boolean negativeExponent = false;
+            if (i < limit && ((b = bytes.get(i)) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                i += 1;
+            }
+            first = i;
+            int e = 0;
+            while (i < limit && (b = bytes.get(i)) >= '0' && b <= '9') {
+                if (e < 10000) {
+                    e = e * 10 + (b - '0');
+                }
+                i += 1;
+            }
+            valid = i > first;
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!valid || digits > 18 || !isExact(mantissa, exponent)) {
+            return false;
+        }
+        if (strict && integral && (!canonical || (negative && mantissa == 0))) {
+            return false;
+        }
+
+// Check that the number is all of the unquoted text.
+
+        int end = i;
+        while (i < limit && bytes.get(i) == ' ') {
+            i += 1;
+        }
+        if (i < limit) {
+            b = bytes.get(i);
+            if (b < 0 || (b >= ' ' && ",:]}/\\\"[{;=#".indexOf(b) < 0)) {
+                return false;
+            }
+        }
+
+        this.setNumber(negative, mantissa, exponent, integral);
+        this.previousPos = end - 1;
+        this.previousLow = 0;
+        this.previousEof = false;
+        this.usePrevious = false;
+        this.pos = end;
+        return true;
+    }
+
+    /**
+     * Skip characters until the next character is the requested character.
+     * If the requested character is not found, no characters are skipped.
+     * @param to A character to skip to.
+     * @return The requested character, or zero if the requested character
+     * is not found.
+     */
+    public char skipTo(char to) throws JSONException {
+        int startPos = this.pos;
+        char startLow = this.low;
+        boolean startEof = this.eof;
+        char c;
+        do {
+            c = this.next();
+            if (c == 0) {
+                this.pos = startPos;
+                this.low = startLow;
+                this.eof = startEof;
+                this.previousPos = -1;
+                return c;
+            }
+        } while (c != to);
+        this.back();
+        return c;
+    }
+
+
+    /**
+     * Make a printable string of this UTF8Tokener.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        int end = Math.min(this.pos, this.limit);
+        long line = 1;
+        long lineStart = this.start - 1;
+        for (int i = this.start; i < end; i++) {
+            byte b = this.bytes.get(i);
+            if (b == '\n' || (b == '\r' &&
+                    (i + 1 >= this.limit || this.bytes.get(i + 1) != '\n'))) {
+                line += 1;
+                lineStart = i + 1;
+            }
+        }
+        return " at " + (end - this.start) + " [character " +
+            (end - lineStart) + " line " + line + "]";
+    }
+}
@@ -4,18 +4,24 @@
 package unsw.graphics;
 
 import java.awt.Color;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import com.jogamp.nativewindow.NativeSurface;
 import com.jogamp.newt.event.WindowAdapter;
 import com.jogamp.newt.event.WindowEvent;
+import com.jogamp.newt.event.WindowUpdateEvent;
 import com.jogamp.newt.opengl.GLWindow;
 import com.jogamp.opengl.GL3;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLCapabilities;
 import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.GLDrawableFactory;
 import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
 import com.jogamp.opengl.GLProfile;
-import com.jogamp.opengl.util.FPSAnimator;
+import com.jogamp.opengl.util.Animator;
 
 /**
  * The basis for all UNSWgraph applications.
@@ -38,6 +44,41 @@ public abstract class Application implements GLEventListener {
 
     private int height;
 
+    // Whether to only draw frames when something has changed
+    private volatile boolean amOnDemand;
+
+    // Set when the next frame must be drawn, even in on-demand mode
+    private final AtomicBoolean amDirty;
+
+    private final AtomicLong skippedFrames;
+
+    // The frame rates adaptive pacing steps between, fastest first
+    private static final int[] ADAPTIVE_RATES = { 240, 144, 120, 90, 75, 60, 50, 40, 30, 20,
+            15, 10 };
+
+    // How many frames adaptive pacing waits between changes to the frame rate
+    private static final int ADAPTIVE_FRAMES = 60;
+
+    private volatile FramePacing pacing;
+
+    // The frame rate asked for, and the one currently used (lower if adaptive pacing has dropped
+    // it)
+    private volatile int targetFrameRate;
+    private volatile int frameRate;
+
+    // When the next frame is due (from System.nanoTime())
+    private long nextFrameTime;
+
+    // Whether the swap interval needs setting to match the pacing
+    private volatile boolean amSwapIntervalChanged;
+
+    private volatile FrameTimes frameTimes;
+
+    // The frames since adaptive pacing last changed the frame rate
+    private final FrameTimes adaptiveFrameTimes;
+
+    private final Input input;
+
     /**
      * Construct an Application. The window for the application will have the
      * given title, width, and height.
@@ -55,29 +96,46 @@ public abstract class Application implements GLEventListener {
         this.width = width;
         this.height = height;
         this.background = new Color(1f, 1f, 1f);
+        this.amOnDemand = false;
+        this.amDirty = new AtomicBoolean(true);
+        this.skippedFrames = new AtomicLong();
+        this.pacing = FramePacing.FIXED;
+        this.targetFrameRate = 60;
+        this.frameRate = 60;
+        this.amSwapIntervalChanged = true;
+        this.frameTimes = new FrameTimes(240);
+        this.adaptiveFrameTimes = new FrameTimes(ADAPTIVE_FRAMES);
+        this.input = new Input();
     }
 
     /**
      * Start the application.
      * 
-     * This displays the window and starts an animation timer that causes the
-     * window to refresh at 60 frames a second.
+     * This displays the window and starts an animation loop that causes the
+     * window to refresh. By default this is 60 frames a second, but see
+     * setFramePacing().
      * 
      */
     public void start() {
-        // Get an OpenGL 3 profile.
-        GLProfile glProfile = GLProfile.get(GLProfile.GL3);
+        // Get an OpenGL 3 profile (or 4, see getProfile()).
+        GLProfile glProfile = getProfile();
 
         // The capabilities are what OpenGL features the hardware is capable of
         // using
         GLCapabilities glCapabilities = new GLCapabilities(glProfile);
 
+        // Ask for a depth buffer, so objects can be layered with depth testing
+        glCapabilities.setDepthBits(24);
+
         // Use newt to create a window with an OpenGL canvas
         window = GLWindow.create(glCapabilities);
         window.setTitle(title);
         window.setSize(width, height);
         window.setResizable(false);
 
+        // Buffers are swapped in display(), so that skipped frames leave the last one showing
+        window.setAutoSwapBufferMode(false);
+
         // Turn on debug mode (REALLY USEFUL)
         window.setContextCreationFlags(GLContext.CTX_OPTION_DEBUG);
 
@@ -88,9 +146,14 @@ public abstract class Application implements GLEventListener {
         // frame that is drawn.
         window.addGLEventListener(this);
 
+        // Input is queued here and read once a frame in display()
+        window.addMouseListener(input);
+        window.addKeyListener(input);
+
         // Create an animator. The animator will tell the window to redraw
-        // itself 60 times a second.
-        FPSAnimator animator = new FPSAnimator(window, 60);
+        // itself over and over. How often is decided by the pacing in display().
+        Animator animator = new Animator(window);
+        animator.setRunAsFastAsPossible(true);
 
         // THis is just to make sure everything shuts down properly when the
         // window is closed.
@@ -100,16 +163,169 @@ public abstract class Application implements GLEventListener {
                 animator.stop();
                 System.exit(0);
             }
+
+            @Override
+            public void windowRepaint(WindowUpdateEvent e) {
+                requestRedraw();
+            }
         });
 
         // Start the actual animator.
         animator.start();
     }
 
+    /**
+     * Run the application without a window, drawing the given number of frames into an
+     * offscreen buffer as fast as possible, then return.
+     * 
+     * There is no window in this mode, so getWindow() returns null and the only input is what is
+     * posted to getInput() (e.g. by an InputReplay). It is meant for benchmarks: afterwards,
+     * getFrameTimes() has the times of all the frames, not just the recent ones.
+     * 
+     * @param frames
+     */
+    public void startHeadless(int frames) {
+        GLProfile glProfile = getProfile();
+        GLCapabilities glCapabilities = new GLCapabilities(glProfile);
+        glCapabilities.setDepthBits(24);
+        glCapabilities.setOnscreen(false);
+        glCapabilities.setFBO(true);
+
+        GLOffscreenAutoDrawable drawable = GLDrawableFactory.getFactory(glProfile)
+                .createOffscreenAutoDrawable(null, glCapabilities, null, width, height);
+        drawable.setAutoSwapBufferMode(false);
+        drawable.addGLEventListener(this);
+
+        // Nothing is shown, so there is no point waiting between frames
+        setFramePacing(FramePacing.UNCAPPED);
+        frameTimes = new FrameTimes(Math.max(1, frames));
+        for (int i = 0; i < frames; i++) {
+            requestRedraw();
+            drawable.display();
+        }
+        drawable.destroy();
+    }
+
+    /**
+     * Get the OpenGL 4 profile if it is available, otherwise the OpenGL 3 profile. Everything in
+     * OpenGL 3 is still there in OpenGL 4, so getGL3() works either way, but some things (e.g.
+     * the persistently mapped StreamingBuffer) are only used in OpenGL 4.
+     * 
+     * @return
+     */
+    private static GLProfile getProfile() {
+        if (GLProfile.isAvailable(GLProfile.GL4))
+            return GLProfile.get(GLProfile.GL4);
+        return GLProfile.get(GLProfile.GL3);
+    }
+
     @Override
     public void display(GLAutoDrawable drawable) {
         GL3 gl = drawable.getGL().getGL3();
-        display(gl);
+        if (amSwapIntervalChanged) {
+            amSwapIntervalChanged = false;
+            gl.setSwapInterval(pacing == FramePacing.VSYNC ? 1 : 0);
+        }
+
+        long start = System.nanoTime();
+        Profiler.beginFrame();
+
+        // Any input may change what is drawn
+        boolean dirty = input.update() > 0;
+
+        // Check both, so changes are noticed even when a redraw was already requested
+        dirty |= amDirty.getAndSet(false);
+        boolean changed = hasChanged();
+        boolean skipped = amOnDemand && !dirty && !changed;
+        if (skipped) {
+            skippedFrames.incrementAndGet();
+        } else {
+            GpuTimer timer = GpuTimer.get(gl);
+            timer.beginFrame(gl);
+            display(gl);
+            timer.endFrame(gl);
+            Profiler.endFrame();
+            if (Profiler.isOverlayShown())
+                drawOverlay(gl);
+            drawable.swapBuffers();
+
+            long frameTime = System.nanoTime() - start;
+            frameTimes.record(frameTime);
+            if (pacing == FramePacing.ADAPTIVE)
+                adapt(frameTime);
+        }
+
+        pace(skipped);
+    }
+
+    /**
+     * Wait until the next frame is due.
+     * 
+     * @param skipped Whether nothing was drawn this frame
+     */
+    private void pace(boolean skipped) {
+        FramePacing current = pacing;
+        if (!skipped && (current == FramePacing.VSYNC || current == FramePacing.UNCAPPED))
+            return;
+
+        // Skipped frames are paced too, otherwise on-demand mode would spin when uncapped
+        long period = 1000000000L / frameRate;
+        long now = System.nanoTime();
+        nextFrameTime += period;
+        if (nextFrameTime < now - period) {
+            // We have fallen too far behind to catch up, so start again from now
+            nextFrameTime = now;
+        }
+        while (now < nextFrameTime) {
+            LockSupport.parkNanos(nextFrameTime - now);
+            now = System.nanoTime();
+        }
+    }
+
+    /**
+     * Lower the frame rate if recent frames have taken longer than it allows, or raise it
+     * (towards the target) if they have been much quicker.
+     */
+    private void adapt(long frameTime) {
+        adaptiveFrameTimes.record(frameTime);
+        if (adaptiveFrameTimes.getCount() < ADAPTIVE_FRAMES)
+            return;
+
+        double p95 = adaptiveFrameTimes.getP95();
+        int rate = frameRate;
+        int slower = rate;
+        int faster = rate;
+        for (int r : ADAPTIVE_RATES) {
+            if (r > rate && r <= targetFrameRate)
+                faster = r;
+            if (r < rate && slower == rate)
+                slower = r;
+        }
+        if (faster == rate && rate < targetFrameRate) {
+            // The target isn't one of the usual rates, and the next one up is
+            faster = targetFrameRate;
+        }
+
+        if (p95 > 1000.0 / rate) {
+            frameRate = slower;
+        } else if (p95 < 0.75 * 1000.0 / faster) {
+            frameRate = faster;
+        }
+        adaptiveFrameTimes.clear();
+    }
+
+    /**
+     * Called before each frame, to check whether anything has changed since the last frame was
+     * drawn. In on-demand mode (see setOnDemand()), the frame is only drawn if this returns true
+     * or a redraw has been requested.
+     * 
+     * This is also where anything that changes over time should be updated, as display() isn't
+     * called for skipped frames. By default it returns false.
+     * 
+     * @return
+     */
+    protected boolean hasChanged() {
+        return false;
     }
 
     /**
@@ -119,6 +335,16 @@ public abstract class Application implements GLEventListener {
      */
     public abstract void display(GL3 gl);
 
+    /**
+     * This is called after display() to draw the profiler's overlay, if it is shown (see
+     * {@link Profiler#setOverlayShown(boolean)}). The overlay isn't counted by the profiler.
+     * By default it does nothing.
+     * 
+     * @param gl
+     */
+    protected void drawOverlay(GL3 gl) {
+    }
+
     @Override
     public void dispose(GLAutoDrawable drawable) {
         GL3 gl = drawable.getGL().getGL3();
@@ -152,6 +378,7 @@ public abstract class Application implements GLEventListener {
             int height) {
         GL3 gl = drawable.getGL().getGL3();
         reshape(gl, width, height);
+        requestRedraw();
     }
 
     /**
@@ -181,6 +408,95 @@ public abstract class Application implements GLEventListener {
         this.background = background;
     }
 
+    /**
+     * Choose whether to only draw frames when something has changed.
+     * 
+     * By default every frame is drawn, 60 times a second. In on-demand mode a frame is only drawn
+     * after input, a reshape, a call to requestRedraw(), or when hasChanged() returns true.
+     * Otherwise the frame is skipped, and the last one stays on screen.
+     * 
+     * @param onDemand
+     */
+    public void setOnDemand(boolean onDemand) {
+        amOnDemand = onDemand;
+        requestRedraw();
+    }
+
+    public boolean isOnDemand() {
+        return amOnDemand;
+    }
+
+    /**
+     * Make sure the next frame is drawn, even in on-demand mode. This can be called from any
+     * thread.
+     */
+    public void requestRedraw() {
+        amDirty.set(true);
+    }
+
+    /**
+     * Get the number of frames that were skipped in on-demand mode because nothing had changed.
+     * 
+     * @return
+     */
+    public long getSkippedFrames() {
+        return skippedFrames.get();
+    }
+
+    /**
+     * Choose how the application decides when to draw the next frame. The default is
+     * {@link FramePacing#FIXED}.
+     * 
+     * @param pacing
+     */
+    public void setFramePacing(FramePacing pacing) {
+        this.pacing = pacing;
+        this.frameRate = targetFrameRate;
+        this.amSwapIntervalChanged = true;
+        adaptiveFrameTimes.clear();
+    }
+
+    public FramePacing getFramePacing() {
+        return pacing;
+    }
+
+    /**
+     * Set the frame rate to aim for with fixed or adaptive pacing. The default is 60.
+     * 
+     * @param fps Frames per second
+     */
+    public void setTargetFrameRate(int fps) {
+        if (fps < 1)
+            throw new IllegalArgumentException("Frame rate must be positive");
+        targetFrameRate = fps;
+        frameRate = fps;
+        adaptiveFrameTimes.clear();
+    }
+
+    public int getTargetFrameRate() {
+        return targetFrameRate;
+    }
+
+    /**
+     * Get the frame rate currently being aimed for. With adaptive pacing this may be lower than
+     * the target.
+     * 
+     * @return
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Get the histogram of how long recent frames took to draw (including swapping buffers,
+     * but not waiting for the next frame to be due). Skipped frames are not counted.
+     * 
+     * @return
+     */
+    public FrameTimes getFrameTimes() {
+        return frameTimes;
+    }
+
     /**
      * Get the GLWindow that corresponds to this application.
      * 
@@ -190,4 +506,14 @@ public abstract class Application implements GLEventListener {
         return window;
     }
 
+    /**
+     * Get the mouse and keyboard input. It is updated at the start of each frame, before
+     * hasChanged() is called, and should only be read on the OpenGL thread.
+     * 
+     * @return
+     */
+    public Input getInput() {
+        return input;
+    }
+
 }
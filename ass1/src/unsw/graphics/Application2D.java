@@ -23,6 +23,16 @@ public abstract class Application2D extends Application {
      */
     private Shader shader;
 
+    /**
+     * When the application was initialised (in milliseconds).
+     */
+    private long startTime;
+
+    /**
+     * The graph of frame times drawn over the window when profiling.
+     */
+    private ProfilerOverlay overlay;
+
     /**
      * Construct a new 2D application.
      * 
@@ -49,9 +59,22 @@ public abstract class Application2D extends Application {
         gl.glClearColor(getBackground().getRed()/255f, getBackground().getGreen()/255f,
                 getBackground().getBlue()/255f, getBackground().getAlpha()/255f);
 
-        // Clear the screen with the defined clear color
-        gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+        // Clear the screen with the defined clear color, and the depth buffer in case depth
+        // testing is used
+        gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
         
+        // The camera data is shared by all shaders through one uniform buffer, which is bound
+        // once per frame.
+        CameraBlock camera = CameraBlock.get(gl);
+        camera.bind(gl);
+        camera.setTime((System.currentTimeMillis() - startTime) / 1000f);
+
+        // Free any meshes and caches that were released last frame, and count what is left
+        MeshRegistry meshes = MeshRegistry.get(gl);
+        meshes.flush(gl);
+        meshes.count();
+        ReleaseQueue.get(gl).flush(gl);
+
         // The default model transform is the identity transform
         Shader.setModelMatrix(gl, Matrix3.identity());
         
@@ -59,11 +82,20 @@ public abstract class Application2D extends Application {
         Shader.setViewMatrix(gl, Matrix3.identity());
     }
 
+    @Override
+    protected void drawOverlay(GL3 gl) {
+        if (overlay == null)
+            overlay = new ProfilerOverlay();
+        shader.use(gl);
+        overlay.draw(gl);
+    }
+
     @Override
     public void init(GL3 gl) {
         shader = new Shader(gl, "shaders/vertex_2d.glsl",
                 "shaders/fragment_2d.glsl");
         shader.use(gl);
+        startTime = System.currentTimeMillis();
 
         // Make points big (10 pixels wide) so we can see them clearly
         gl.glPointSize(10);
@@ -72,6 +104,11 @@ public abstract class Application2D extends Application {
     @Override
     public void destroy(GL3 gl) {
         shader.destroy(gl);
+        CameraBlock.get(gl).destroy(gl);
+        StreamingBuffer.get(gl).destroy(gl);
+        ReleaseQueue.get(gl).flush(gl);
+        MeshRegistry.get(gl).destroy(gl);
+        GpuTimer.get(gl).destroy(gl);
     }
 
     @Override
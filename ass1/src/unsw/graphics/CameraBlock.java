@@ -0,0 +1,171 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.nio.FloatBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+/**
+ * The per-frame camera data shared by every shader, stored in a uniform buffer.
+ *
+ * Shaders read it through a uniform block declared as:
+ *
+ * <pre>
+ * layout(std140) uniform Camera {
+ *     mat3 view_matrix;
+ *     float aspect_ratio;
+ *     float time;
+ * };
+ * </pre>
+ *
+ * Because the buffer is bound to a fixed binding point (see {@link Shader#CAMERA_BINDING}), the
+ * data only has to be uploaded once per frame, no matter how many different shaders are used to
+ * draw it.
+ *
+ * The setters only change a copy of the data and mark it dirty. It is uploaded with a single
+ * glBufferSubData() call by flush(), which Shader.use() and Shader.setModelMatrix() call before
+ * anything is drawn. So however many of the values change between draws (e.g. the time and view
+ * at the start of a frame, then the camera's view and aspect ratio), the block is only uploaded
+ * once. It is uploaded again only if the view changes partway through the frame (e.g. to render
+ * to a texture).
+ *
+ * There is one CameraBlock per OpenGL context. Use get() to find it.
+ */
+public class CameraBlock {
+
+    private static final String KEY = CameraBlock.class.getName();
+
+    // In the std140 layout each column of the mat3 is padded to a vec4, followed by the aspect
+    // ratio and the time. The block is padded out to a multiple of a vec4.
+    private static final int ASPECT_RATIO_OFFSET = 12;
+    private static final int TIME_OFFSET = 13;
+    private static final int SIZE = 16;
+
+    private FloatBuffer data;
+
+    private int buffer;
+
+    // Whether the data has changed since it was last uploaded
+    private boolean amDirty;
+
+    private CameraBlock(GL3 gl) {
+        data = GLBuffers.newDirectFloatBuffer(SIZE);
+        setMatrix(Matrix3.identity());
+        data.put(ASPECT_RATIO_OFFSET, 1);
+
+        // The storage is only allocated once. After this it is updated in place.
+        int[] names = new int[1];
+        gl.glGenBuffers(1, names, 0);
+        buffer = names[0];
+        gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, buffer);
+        gl.glBufferData(GL3.GL_UNIFORM_BUFFER, SIZE * Float.BYTES, data, GL.GL_DYNAMIC_DRAW);
+        amDirty = false;
+    }
+
+    /**
+     * Get the camera block for the given context, creating it if necessary.
+     *
+     * @param gl
+     * @return
+     */
+    public static CameraBlock get(GL3 gl) {
+        CameraBlock block = (CameraBlock) gl.getContext().getAttachedObject(KEY);
+        if (block == null) {
+            block = new CameraBlock(gl);
+            gl.getContext().attachObject(KEY, block);
+        }
+        return block;
+    }
+
+    /**
+     * Bind the buffer to the camera binding point. This only needs to be done once per frame,
+     * unless something else is bound there.
+     *
+     * @param gl
+     */
+    public void bind(GL3 gl) {
+        gl.glBindBufferBase(GL3.GL_UNIFORM_BUFFER, Shader.CAMERA_BINDING, buffer);
+    }
+
+    /**
+     * Set the view matrix. It is uploaded by the next flush().
+     *
+     * @param mat
+     */
+    public void setViewMatrix(Matrix3 mat) {
+        setMatrix(mat);
+    }
+
+    /**
+     * Set the aspect ratio (the ratio of the width of the window to the height). It is uploaded
+     * by the next flush().
+     *
+     * @param aspectRatio
+     */
+    public void setAspectRatio(float aspectRatio) {
+        set(ASPECT_RATIO_OFFSET, aspectRatio);
+    }
+
+    /**
+     * Set the time (in seconds) since the application started. It is uploaded by the next
+     * flush().
+     *
+     * @param time
+     */
+    public void setTime(float time) {
+        set(TIME_OFFSET, time);
+    }
+
+    /**
+     * Upload the data if it has changed since it was last uploaded.
+     *
+     * @param gl
+     */
+    public void flush(GL3 gl) {
+        if (!amDirty)
+            return;
+        gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, buffer);
+        gl.glBufferSubData(GL3.GL_UNIFORM_BUFFER, 0, SIZE * Float.BYTES, data);
+        Profiler.count(Profiler.Counter.UPLOADED_BYTES, SIZE * Float.BYTES);
+        amDirty = false;
+    }
+
+    /**
+     * Check whether the data has changed since it was last uploaded.
+     *
+     * @return
+     */
+    public boolean isDirty() {
+        return amDirty;
+    }
+
+    /**
+     * Free the buffer.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        gl.glDeleteBuffers(1, new int[] { buffer }, 0);
+        gl.getContext().detachObject(KEY);
+    }
+
+    private void setMatrix(Matrix3 mat) {
+        float[] values = mat.getValues();
+        for (int column = 0; column < 3; column++) {
+            set(column * 4, values[column * 3]);
+            set(column * 4 + 1, values[column * 3 + 1]);
+            set(column * 4 + 2, values[column * 3 + 2]);
+        }
+    }
+
+    private void set(int index, float value) {
+        if (data.get(index) != value) {
+            data.put(index, value);
+            amDirty = true;
+        }
+    }
+}
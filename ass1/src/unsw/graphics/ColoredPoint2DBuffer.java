@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.awt.Color;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.geometry.Point2D;
+
+/**
+ * A buffer of points, each with its own color. Can be passed to OpenGL commands that expect
+ * buffers by using the getBuffer() method.
+ *
+ * Each vertex is stored as two floats for the position followed by the color packed into four
+ * bytes (red, green, blue, alpha). Use setAttribPointers() to describe this layout to OpenGL.
+ *
+ * Because the color is part of each vertex, points of any color can be drawn with the same call.
+ */
+public class ColoredPoint2DBuffer {
+
+    /**
+     * The number of bytes each vertex takes up.
+     */
+    public static final int STRIDE = 2 * Float.BYTES + 4;
+
+    private ByteBuffer byteBuffer;
+
+    private int capacity;
+
+    /**
+     * Construct a new buffer with the given capacity.
+     *
+     * @param capacity
+     */
+    public ColoredPoint2DBuffer(int capacity) {
+        this.capacity = capacity;
+        byteBuffer = GLBuffers.newDirectByteBuffer(capacity * STRIDE);
+        Profiler.count(Profiler.Counter.ALLOCATIONS, 1);
+    }
+
+    /**
+     * Add a {@link Point2D} with the given color to the buffer at the given index.
+     *
+     * @param index
+     * @param p
+     * @param color
+     */
+    public void put(int index, Point2D p, Color color) {
+        put(index, p.getX(), p.getY(), pack(color));
+    }
+
+    /**
+     * Add a point (given as an x-y coordinate) with the given packed color (see pack()) to the
+     * buffer at the given index.
+     *
+     * @param index
+     * @param x
+     * @param y
+     * @param rgba
+     */
+    public void put(int index, float x, float y, int rgba) {
+        if (index >= 0 && index < capacity) {
+            int offset = index * STRIDE;
+            byteBuffer.putFloat(offset, x);
+            byteBuffer.putFloat(offset + Float.BYTES, y);
+            byteBuffer.put(offset + 2 * Float.BYTES, (byte) (rgba >>> 24));
+            byteBuffer.put(offset + 2 * Float.BYTES + 1, (byte) (rgba >>> 16));
+            byteBuffer.put(offset + 2 * Float.BYTES + 2, (byte) (rgba >>> 8));
+            byteBuffer.put(offset + 2 * Float.BYTES + 3, (byte) rgba);
+        } else {
+            throw new IndexOutOfBoundsException(
+                    "index: " + index + ", capacity: " + capacity);
+        }
+    }
+
+    public Buffer getBuffer() {
+        return byteBuffer;
+    }
+
+    /**
+     * Get the size of the buffer in bytes.
+     *
+     * @return
+     */
+    public int getSize() {
+        return capacity * STRIDE;
+    }
+
+    /**
+     * Pack a color into an int as 0xRRGGBBAA.
+     *
+     * @param color
+     * @return
+     */
+    public static int pack(Color color) {
+        return color.getRed() << 24 | color.getGreen() << 16 | color.getBlue() << 8
+                | color.getAlpha();
+    }
+
+    /**
+     * Point the position and color attributes at a buffer with this layout, which must be bound
+     * to GL_ARRAY_BUFFER. This also enables the color attribute, which should be disabled again
+     * after drawing.
+     *
+     * @param gl
+     */
+    public static void setAttribPointers(GL3 gl) {
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, STRIDE, 0);
+        gl.glVertexAttribPointer(Shader.COLOR, 4, GL.GL_UNSIGNED_BYTE, true, STRIDE,
+                2 * Float.BYTES);
+        gl.glEnableVertexAttribArray(Shader.COLOR);
+    }
+}
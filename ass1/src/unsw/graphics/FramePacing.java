@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+/**
+ * How an {@link Application} decides when to draw the next frame.
+ */
+public enum FramePacing {
+
+    /**
+     * Draw at the target frame rate.
+     */
+    FIXED,
+
+    /**
+     * Draw once per refresh of the display, by waiting for vertical sync when swapping buffers.
+     */
+    VSYNC,
+
+    /**
+     * Draw as fast as possible. Useful for measuring throughput.
+     */
+    UNCAPPED,
+
+    /**
+     * Draw at the target frame rate, but lower it while frames take longer than it allows, and
+     * raise it again (up to the target) once they speed up.
+     */
+    ADAPTIVE
+}
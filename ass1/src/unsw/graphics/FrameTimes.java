@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.util.Arrays;
+
+/**
+ * A rolling histogram of how long the most recent frames took.
+ *
+ * Frame times are counted in bins 0.1ms wide, up to 100ms. Only the most recent frames (the
+ * window) are kept, so percentiles reflect current performance rather than the whole run.
+ *
+ * This class is thread safe, so it can be queried from outside the OpenGL thread.
+ */
+public class FrameTimes {
+
+    // The width of each bin in nanoseconds
+    private static final long BIN_WIDTH = 100000;
+
+    // The last bin holds every frame that took longer than the others can
+    private static final int BINS = 1000;
+
+    private final long[] samples;
+    private final int[] bins;
+    private int count;
+    private int next;
+
+    /**
+     * Construct a histogram of the given number of most recent frames.
+     *
+     * @param window
+     */
+    public FrameTimes(int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("Window must hold at least one frame");
+        samples = new long[window];
+        bins = new int[BINS];
+        count = 0;
+        next = 0;
+    }
+
+    /**
+     * Record how long a frame took.
+     *
+     * @param nanos The frame time in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            bins[bin(samples[next])]--;
+        } else {
+            count++;
+        }
+        samples[next] = nanos;
+        bins[bin(nanos)]++;
+        next = (next + 1) % samples.length;
+    }
+
+    /**
+     * Get the frame time that the given fraction of recent frames took no longer than, to the
+     * nearest bin above.
+     *
+     * @param p The fraction, from 0 to 1 (e.g. 0.95 for the 95th percentile)
+     * @return The frame time in milliseconds, or 0 if no frames have been recorded
+     */
+    public synchronized double getPercentile(double p) {
+        if (count == 0)
+            return 0;
+
+        int rank = (int) Math.ceil(p * count);
+        rank = Math.max(1, Math.min(count, rank));
+        int seen = 0;
+        for (int b = 0; b < BINS - 1; b++) {
+            seen += bins[b];
+            if (seen >= rank)
+                return (b + 1) * BIN_WIDTH / 1e6;
+        }
+
+        // It is in the overflow bin, so find the actual time
+        long[] recent = Arrays.copyOf(samples, count);
+        Arrays.sort(recent);
+        return recent[rank - 1] / 1e6;
+    }
+
+    /**
+     * Get the median frame time in milliseconds.
+     *
+     * @return
+     */
+    public double getP50() {
+        return getPercentile(0.5);
+    }
+
+    /**
+     * Get the 95th percentile frame time in milliseconds.
+     *
+     * @return
+     */
+    public double getP95() {
+        return getPercentile(0.95);
+    }
+
+    /**
+     * Get the 99th percentile frame time in milliseconds.
+     *
+     * @return
+     */
+    public double getP99() {
+        return getPercentile(0.99);
+    }
+
+    /**
+     * Get the number of frames in the histogram.
+     *
+     * @return
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Remove every frame from the histogram.
+     */
+    public synchronized void clear() {
+        Arrays.fill(bins, 0);
+        count = 0;
+        next = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50 %.1fms, p95 %.1fms, p99 %.1fms", getP50(), getP95(), getP99());
+    }
+
+    private static int bin(long nanos) {
+        return (int) Math.min(BINS - 1, Math.max(0, nanos / BIN_WIDTH));
+    }
+}
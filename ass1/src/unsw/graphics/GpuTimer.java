@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jogamp.opengl.GL2ES2;
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.Profiler.Counter;
+
+/**
+ * Measures how long the GPU spends on each frame, and on marked parts of it, with timer queries.
+ *
+ * A timestamp is recorded on the GPU at the start and end of each frame and of each timed part
+ * (see SceneObject.setGpuTimerLabel()). Timestamps are used rather than GL_TIME_ELAPSED queries
+ * because only one of those can be active at a time, so they can't be nested.
+ *
+ * Reading a query's result before the GPU has got to it would make the CPU wait, so results are
+ * only read once the last query of a frame is available, normally a few frames later. They are
+ * then given to the {@link Profiler}: the frame time is filled in to that frame's
+ * GPU_FRAME_TIME, and the time of each timed part is recorded under its label. If the GPU falls
+ * so far behind that MAX_PENDING frames are waiting, frames aren't timed until it catches up.
+ *
+ * Query objects are reused through a pool, so none are created once it is big enough.
+ *
+ * Timing is only done when enabled with Profiler.setGpuTimed(). There is one GpuTimer per OpenGL
+ * context. Use get() to find it.
+ */
+public class GpuTimer {
+
+    private static final String KEY = GpuTimer.class.getName();
+
+    // The most frames that can be waiting for their results
+    private static final int MAX_PENDING = 4;
+
+    // How many query objects to create when the pool runs out
+    private static final int POOL_GROWTH = 32;
+
+    // Every query object created, and the ones not in use
+    private int[] names;
+    private int nameCount;
+    private int[] free;
+    private int freeCount;
+
+    /**
+     * The queries for one frame.
+     */
+    private static class Frame {
+        long number;
+        int start;
+        int end;
+
+        // The start and end queries of each timed part, and its label
+        int[] queries = new int[16];
+        String[] labels = new String[8];
+        int count;
+    }
+
+    // The frames waiting for results, oldest first, from head
+    private final Frame[] pending;
+    private int head;
+    private int pendingCount;
+
+    // The frame being timed, or null
+    private Frame current;
+
+    // Reused to add up the time for each label
+    private final Map<String, Long> totals;
+    private final int[] available;
+    private final long[] result;
+
+    private GpuTimer() {
+        names = new int[0];
+        free = new int[0];
+        pending = new Frame[MAX_PENDING];
+        for (int i = 0; i < MAX_PENDING; i++) {
+            pending[i] = new Frame();
+        }
+        totals = new HashMap<String, Long>();
+        available = new int[1];
+        result = new long[1];
+    }
+
+    /**
+     * Get the timer for the given context, creating it if necessary.
+     *
+     * @param gl
+     * @return
+     */
+    public static GpuTimer get(GL3 gl) {
+        GpuTimer timer = (GpuTimer) gl.getContext().getAttachedObject(KEY);
+        if (timer == null) {
+            timer = new GpuTimer();
+            gl.getContext().attachObject(KEY, timer);
+        }
+        return timer;
+    }
+
+    /**
+     * Collect the results of earlier frames, and start timing a new one. Called by Application.
+     *
+     * @param gl
+     */
+    public void beginFrame(GL3 gl) {
+        collect(gl);
+        current = null;
+        if (!Profiler.isRecordingGpu() || pendingCount == MAX_PENDING)
+            return;
+
+        current = pending[(head + pendingCount) % MAX_PENDING];
+        current.number = Profiler.getFrames();
+        current.count = 0;
+        current.start = timestamp(gl);
+    }
+
+    /**
+     * Finish timing the frame. Called by Application.
+     *
+     * @param gl
+     */
+    public void endFrame(GL3 gl) {
+        if (current == null)
+            return;
+        current.end = timestamp(gl);
+        pendingCount++;
+        current = null;
+    }
+
+    /**
+     * Start timing part of the frame.
+     *
+     * @param gl
+     * @param label The name the time is recorded under. Parts with the same label are added up.
+     * @return The handle to pass to end(), or -1 if the frame isn't being timed
+     */
+    public int begin(GL3 gl, String label) {
+        if (current == null)
+            return -1;
+        Frame frame = current;
+        int handle = frame.count++;
+        if (handle == frame.labels.length) {
+            frame.labels = Arrays.copyOf(frame.labels, 2 * handle);
+            frame.queries = Arrays.copyOf(frame.queries, 4 * handle);
+        }
+        frame.labels[handle] = label;
+        frame.queries[2 * handle] = timestamp(gl);
+        frame.queries[2 * handle + 1] = 0;
+        return handle;
+    }
+
+    /**
+     * Stop timing part of the frame.
+     *
+     * @param gl
+     * @param handle The value returned by begin()
+     */
+    public void end(GL3 gl, int handle) {
+        if (current == null || handle < 0)
+            return;
+        current.queries[2 * handle + 1] = timestamp(gl);
+    }
+
+    /**
+     * Delete every query object.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        gl.glDeleteQueries(nameCount, names, 0);
+        names = new int[0];
+        nameCount = 0;
+        freeCount = 0;
+        pendingCount = 0;
+        current = null;
+        gl.getContext().detachObject(KEY);
+    }
+
+    /**
+     * Read the results of every waiting frame that the GPU has finished.
+     */
+    private void collect(GL3 gl) {
+        while (pendingCount > 0) {
+            Frame frame = pending[head];
+
+            // The GPU runs commands in order, so if the last query is done, they all are
+            gl.glGetQueryObjectiv(frame.end, GL2ES2.GL_QUERY_RESULT_AVAILABLE, available, 0);
+            if (available[0] == 0)
+                break;
+
+            Profiler.set(Counter.GPU_FRAME_TIME, frame.number,
+                    read(gl, frame.end) - read(gl, frame.start));
+
+            totals.clear();
+            for (int i = 0; i < frame.count; i++) {
+                int start = frame.queries[2 * i];
+                int end = frame.queries[2 * i + 1];
+                if (end != 0) {
+                    long time = read(gl, end) - read(gl, start);
+                    Long total = totals.get(frame.labels[i]);
+                    totals.put(frame.labels[i], total == null ? time : total + time);
+                }
+                release(start);
+                release(end);
+                frame.labels[i] = null;
+            }
+            for (Map.Entry<String, Long> entry : totals.entrySet()) {
+                Profiler.recordGpuTime(entry.getKey(), entry.getValue());
+            }
+
+            release(frame.start);
+            release(frame.end);
+            head = (head + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+    }
+
+    private long read(GL3 gl, int query) {
+        gl.glGetQueryObjectui64v(query, GL2ES2.GL_QUERY_RESULT, result, 0);
+        return result[0];
+    }
+
+    /**
+     * Record the GPU time into a query from the pool.
+     *
+     * @return The query
+     */
+    private int timestamp(GL3 gl) {
+        if (freeCount == 0) {
+            int[] created = new int[POOL_GROWTH];
+            gl.glGenQueries(POOL_GROWTH, created, 0);
+            names = Arrays.copyOf(names, nameCount + POOL_GROWTH);
+            System.arraycopy(created, 0, names, nameCount, POOL_GROWTH);
+            nameCount += POOL_GROWTH;
+            if (free.length < nameCount)
+                free = Arrays.copyOf(free, nameCount);
+            System.arraycopy(created, 0, free, 0, POOL_GROWTH);
+            freeCount = POOL_GROWTH;
+        }
+        int query = free[--freeCount];
+        gl.glQueryCounter(query, GL2ES2.GL_TIMESTAMP);
+        return query;
+    }
+
+    private void release(int query) {
+        if (query != 0)
+            free[freeCount++] = query;
+    }
+}
@@ -0,0 +1,479 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jogamp.newt.event.InputEvent;
+import com.jogamp.newt.event.KeyEvent;
+import com.jogamp.newt.event.KeyListener;
+import com.jogamp.newt.event.MouseEvent;
+import com.jogamp.newt.event.MouseListener;
+
+/**
+ * The mouse and keyboard input for an application.
+ *
+ * NEWT delivers input on its own event thread, but the application reads it on the OpenGL
+ * thread. Rather than sharing state between the two, each event is copied (as a few ints, without
+ * keeping the event object) into a single-producer, single-consumer ring buffer. Once a frame,
+ * Application calls update() on the OpenGL thread, which drains the ring and works out what
+ * happened since the last frame: which buttons and keys are held down, which were pressed or
+ * released, and where the mouse is. None of this allocates.
+ *
+ * The events themselves are also kept until the next update(), for code that needs to react to
+ * every one (e.g. keys held down and auto-repeating).
+ *
+ * If the OpenGL thread falls so far behind that the ring fills up, further events are dropped
+ * (see getDroppedEvents()).
+ */
+public class Input implements MouseListener, KeyListener {
+
+    /** The mouse moved, with or without buttons down. */
+    public static final int MOUSE_MOVED = 0;
+    /** A mouse button was pressed. The code is the button. */
+    public static final int MOUSE_PRESSED = 1;
+    /** A mouse button was released. The code is the button. */
+    public static final int MOUSE_RELEASED = 2;
+    /** The mouse wheel was turned. The code is how far, in notches. */
+    public static final int MOUSE_WHEEL = 3;
+    /** The mouse entered the window. */
+    public static final int MOUSE_ENTERED = 4;
+    /** The mouse left the window. */
+    public static final int MOUSE_EXITED = 5;
+    /** A key was pressed (or auto-repeated). The code is the key code, e.g. KeyEvent.VK_A. */
+    public static final int KEY_PRESSED = 6;
+    /** A key was released (or auto-repeated). The code is the key code. */
+    public static final int KEY_RELEASED = 7;
+
+    /**
+     * The number of events the ring can hold. A power of two.
+     */
+    public static final int CAPACITY = 1024;
+
+    private static final int MASK = CAPACITY - 1;
+
+    // Mouse buttons are numbered from 1
+    private static final int BUTTONS = MouseEvent.BUTTON_COUNT + 1;
+
+    // Key codes are 16 bits, so every key gets a bit in these
+    private static final int KEY_WORDS = (1 << 16) / Long.SIZE;
+
+    // The ring. Only the NEWT thread writes tail and the slots after it, and only the OpenGL
+    // thread writes head.
+    private final int[] types;
+    private final int[] codes;
+    private final int[] modifiers;
+    private final int[] xs;
+    private final int[] ys;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final AtomicLong dropped;
+
+    // The events drained by the last update()
+    private final int[] frameTypes;
+    private final int[] frameCodes;
+    private final int[] frameModifiers;
+    private final int[] frameXs;
+    private final int[] frameYs;
+    private int frameCount;
+
+    // The state after the last update()
+    private boolean hasMouse;
+    private int mouseX;
+    private int mouseY;
+    private int wheel;
+    private final boolean[] buttonsDown;
+    private final boolean[] buttonsPressed;
+    private final boolean[] buttonsReleased;
+    private final long[] keysDown;
+    private final long[] keysPressed;
+    private final long[] keysReleased;
+
+    // The keys pressed and released last update(), so only they need clearing
+    private final int[] changedKeys;
+    private int changedKeyCount;
+
+    public Input() {
+        types = new int[CAPACITY];
+        codes = new int[CAPACITY];
+        modifiers = new int[CAPACITY];
+        xs = new int[CAPACITY];
+        ys = new int[CAPACITY];
+        head = new AtomicLong();
+        tail = new AtomicLong();
+        dropped = new AtomicLong();
+
+        frameTypes = new int[CAPACITY];
+        frameCodes = new int[CAPACITY];
+        frameModifiers = new int[CAPACITY];
+        frameXs = new int[CAPACITY];
+        frameYs = new int[CAPACITY];
+
+        buttonsDown = new boolean[BUTTONS];
+        buttonsPressed = new boolean[BUTTONS];
+        buttonsReleased = new boolean[BUTTONS];
+        keysDown = new long[KEY_WORDS];
+        keysPressed = new long[KEY_WORDS];
+        keysReleased = new long[KEY_WORDS];
+        changedKeys = new int[CAPACITY];
+    }
+
+    /**
+     * Add an event to the ring. This is called by the listener methods on the NEWT thread, but
+     * can also be used to inject events, e.g. to replay them. Only one thread may post events.
+     *
+     * @param type One of the event types in this class
+     * @param code The button, key code or wheel movement, depending on the type
+     * @param modifiers The modifier keys and buttons held down (see InputEvent.getModifiers())
+     * @param x The x coordinate of the mouse, in window pixels
+     * @param y The y coordinate of the mouse, in window pixels (from the top)
+     * @return Whether there was room for the event
+     */
+    public boolean post(int type, int code, int modifiers, int x, int y) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int i = (int) t & MASK;
+        types[i] = type;
+        codes[i] = code;
+        this.modifiers[i] = modifiers;
+        xs[i] = x;
+        ys[i] = y;
+
+        // Publish the slot to the reader
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Take every event out of the ring and update the state. Call this once a frame, on the
+     * thread that reads the state.
+     *
+     * @return The number of events since the last update
+     */
+    public int update() {
+        // Forget what happened last frame
+        for (int b = 0; b < BUTTONS; b++) {
+            buttonsPressed[b] = false;
+            buttonsReleased[b] = false;
+        }
+        for (int i = 0; i < changedKeyCount; i++) {
+            int word = changedKeys[i] >>> 6;
+            keysPressed[word] = 0;
+            keysReleased[word] = 0;
+        }
+        changedKeyCount = 0;
+        wheel = 0;
+
+        long h = head.get();
+        long t = tail.get();
+        frameCount = (int) (t - h);
+        for (int n = 0; n < frameCount; n++) {
+            int i = (int) (h + n) & MASK;
+            frameTypes[n] = types[i];
+            frameCodes[n] = codes[i];
+            frameModifiers[n] = modifiers[i];
+            frameXs[n] = xs[i];
+            frameYs[n] = ys[i];
+        }
+
+        // Let the writer reuse the slots
+        head.lazySet(t);
+
+        for (int n = 0; n < frameCount; n++) {
+            apply(frameTypes[n], frameCodes[n], frameModifiers[n], frameXs[n], frameYs[n]);
+        }
+        return frameCount;
+    }
+
+    private void apply(int type, int code, int mods, int x, int y) {
+        boolean autoRepeat = (mods & InputEvent.AUTOREPEAT_MASK) != 0;
+        switch (type) {
+        case MOUSE_PRESSED:
+            if (code > 0 && code < BUTTONS) {
+                buttonsDown[code] = true;
+                buttonsPressed[code] = true;
+            }
+            break;
+        case MOUSE_RELEASED:
+            if (code > 0 && code < BUTTONS) {
+                buttonsDown[code] = false;
+                buttonsReleased[code] = true;
+            }
+            break;
+        case MOUSE_WHEEL:
+            wheel += code;
+            break;
+        case KEY_PRESSED:
+            if (!autoRepeat) {
+                setBit(keysDown, code, true);
+                setBit(keysPressed, code, true);
+                changedKeys[changedKeyCount++] = code & 0xFFFF;
+            }
+            return;
+        case KEY_RELEASED:
+            if (!autoRepeat) {
+                setBit(keysDown, code, false);
+                setBit(keysReleased, code, true);
+                changedKeys[changedKeyCount++] = code & 0xFFFF;
+            }
+            return;
+        default:
+            break;
+        }
+        hasMouse = true;
+        mouseX = x;
+        mouseY = y;
+    }
+
+    /**
+     * Check whether the mouse position is known, i.e. whether there has been a mouse event yet.
+     *
+     * @return
+     */
+    public boolean hasMouse() {
+        return hasMouse;
+    }
+
+    /**
+     * Get the x coordinate of the mouse, in window pixels.
+     *
+     * @return
+     */
+    public int getMouseX() {
+        return mouseX;
+    }
+
+    /**
+     * Get the y coordinate of the mouse, in window pixels from the top of the window.
+     *
+     * @return
+     */
+    public int getMouseY() {
+        return mouseY;
+    }
+
+    /**
+     * Get how far the mouse wheel was turned since the last frame, in notches.
+     *
+     * @return
+     */
+    public int getWheel() {
+        return wheel;
+    }
+
+    /**
+     * Check whether a mouse button is held down.
+     *
+     * @param button e.g. 1 for the left button
+     * @return
+     */
+    public boolean isButtonDown(int button) {
+        return button > 0 && button < BUTTONS && buttonsDown[button];
+    }
+
+    /**
+     * Check whether a mouse button was pressed since the last frame.
+     *
+     * @param button e.g. 1 for the left button
+     * @return
+     */
+    public boolean wasButtonPressed(int button) {
+        return button > 0 && button < BUTTONS && buttonsPressed[button];
+    }
+
+    /**
+     * Check whether a mouse button was released since the last frame.
+     *
+     * @param button e.g. 1 for the left button
+     * @return
+     */
+    public boolean wasButtonReleased(int button) {
+        return button > 0 && button < BUTTONS && buttonsReleased[button];
+    }
+
+    /**
+     * Check whether a key is held down.
+     *
+     * @param keyCode e.g. KeyEvent.VK_A
+     * @return
+     */
+    public boolean isKeyDown(int keyCode) {
+        return getBit(keysDown, keyCode);
+    }
+
+    /**
+     * Check whether a key was pressed since the last frame. Auto-repeats don't count.
+     *
+     * @param keyCode e.g. KeyEvent.VK_A
+     * @return
+     */
+    public boolean wasKeyPressed(int keyCode) {
+        return getBit(keysPressed, keyCode);
+    }
+
+    /**
+     * Check whether a key was released since the last frame. Auto-repeats don't count.
+     *
+     * @param keyCode e.g. KeyEvent.VK_A
+     * @return
+     */
+    public boolean wasKeyReleased(int keyCode) {
+        return getBit(keysReleased, keyCode);
+    }
+
+    /**
+     * Get the number of events since the last frame.
+     *
+     * @return
+     */
+    public int getEventCount() {
+        return frameCount;
+    }
+
+    /**
+     * Get the type of the i-th event since the last frame.
+     *
+     * @param i
+     * @return One of the event types in this class
+     */
+    public int getEventType(int i) {
+        checkEvent(i);
+        return frameTypes[i];
+    }
+
+    /**
+     * Get the button, key code or wheel movement of the i-th event since the last frame.
+     *
+     * @param i
+     * @return
+     */
+    public int getEventCode(int i) {
+        checkEvent(i);
+        return frameCodes[i];
+    }
+
+    /**
+     * Get the modifiers of the i-th event since the last frame.
+     *
+     * @param i
+     * @return The modifier mask (see InputEvent.getModifiers())
+     */
+    public int getEventModifiers(int i) {
+        checkEvent(i);
+        return frameModifiers[i];
+    }
+
+    /**
+     * Get the x coordinate of the mouse at the i-th event since the last frame. This is 0 for
+     * key events.
+     *
+     * @param i
+     * @return
+     */
+    public int getEventX(int i) {
+        checkEvent(i);
+        return frameXs[i];
+    }
+
+    /**
+     * Get the y coordinate of the mouse at the i-th event since the last frame. This is 0 for
+     * key events.
+     *
+     * @param i
+     * @return
+     */
+    public int getEventY(int i) {
+        checkEvent(i);
+        return frameYs[i];
+    }
+
+    /**
+     * Get the number of events dropped because the ring was full.
+     *
+     * @return
+     */
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    private void checkEvent(int i) {
+        if (i < 0 || i >= frameCount)
+            throw new IndexOutOfBoundsException("index: " + i + ", events: " + frameCount);
+    }
+
+    private static void setBit(long[] bits, int code, boolean value) {
+        int key = code & 0xFFFF;
+        if (value) {
+            bits[key >>> 6] |= 1L << key;
+        } else {
+            bits[key >>> 6] &= ~(1L << key);
+        }
+    }
+
+    private static boolean getBit(long[] bits, int code) {
+        int key = code & 0xFFFF;
+        return (bits[key >>> 6] & 1L << key) != 0;
+    }
+
+    private void post(int type, MouseEvent e, int code) {
+        post(type, code, e.getModifiers(), e.getX(), e.getY());
+    }
+
+    private void post(int type, KeyEvent e) {
+        post(type, e.getKeyCode(), e.getModifiers(), 0, 0);
+    }
+
+    @Override
+    public void mouseClicked(MouseEvent e) {
+        // Clicks are already seen as a press and a release
+    }
+
+    @Override
+    public void mouseEntered(MouseEvent e) {
+        post(MOUSE_ENTERED, e, 0);
+    }
+
+    @Override
+    public void mouseExited(MouseEvent e) {
+        post(MOUSE_EXITED, e, 0);
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e) {
+        post(MOUSE_PRESSED, e, e.getButton());
+    }
+
+    @Override
+    public void mouseReleased(MouseEvent e) {
+        post(MOUSE_RELEASED, e, e.getButton());
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        post(MOUSE_MOVED, e, 0);
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        post(MOUSE_MOVED, e, 0);
+    }
+
+    @Override
+    public void mouseWheelMoved(MouseEvent e) {
+        post(MOUSE_WHEEL, e, Math.round(e.getRotation()[1]));
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        post(KEY_PRESSED, e);
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        post(KEY_RELEASED, e);
+    }
+}
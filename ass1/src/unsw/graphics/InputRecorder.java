@@ -0,0 +1,99 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records input to a compact binary log, so it can be played back later with an
+ * {@link InputReplay}.
+ *
+ * Call record() once a frame, after the input has been updated, with the time of the simulation
+ * (e.g. Scene.getTime()). Frames without any input aren't written. Each frame that is written
+ * takes 10 bytes, plus 11 bytes for each event:
+ *
+ * <pre>
+ * frame: double time, short event count
+ * event: byte type, short code, int modifiers, short x, short y
+ * </pre>
+ *
+ * after a header of MAGIC.
+ */
+public class InputRecorder implements Closeable {
+
+    /**
+     * The first four bytes of every recording.
+     */
+    public static final int MAGIC = 0x554E5331;
+
+    private final DataOutputStream out;
+
+    private int frames;
+    private long events;
+    private boolean closed;
+
+    /**
+     * Start a recording.
+     *
+     * @param out Where to write it. This is closed by close().
+     * @throws IOException
+     */
+    public InputRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+    }
+
+    /**
+     * Record the events since the last frame. Nothing is recorded once the recorder is closed.
+     *
+     * @param time The simulation time of this frame, in seconds
+     * @param input
+     * @throws IOException
+     */
+    public synchronized void record(double time, Input input) throws IOException {
+        int count = input.getEventCount();
+        if (count == 0 || closed)
+            return;
+
+        out.writeDouble(time);
+        out.writeShort(count);
+        for (int i = 0; i < count; i++) {
+            out.writeByte(input.getEventType(i));
+            out.writeShort(input.getEventCode(i));
+            out.writeInt(input.getEventModifiers(i));
+            out.writeShort(input.getEventX(i));
+            out.writeShort(input.getEventY(i));
+        }
+        frames++;
+        events += count;
+    }
+
+    /**
+     * Get the number of frames written, i.e. the ones with any input.
+     *
+     * @return
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Finish the recording. This can be called from any thread, e.g. a shutdown hook.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        out.close();
+    }
+}
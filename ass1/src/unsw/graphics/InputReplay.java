@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Plays back input recorded by an {@link InputRecorder}.
+ *
+ * The whole recording is read up front. Each frame, call play() with the simulation time, and the
+ * events recorded up to that time are posted to the Input, to be seen when it is next updated.
+ * The recorded events should be the only ones posted, so the Input shouldn't also be listening
+ * to a window (see Application.startHeadless()).
+ *
+ * If the simulation moves forward by the same step every frame (see Scene.setFixedStep()), the
+ * events reach it in the same frames on every run.
+ */
+public class InputReplay {
+
+    private double[] times;
+    private int[] starts;
+    private int frameCount;
+
+    private byte[] types;
+    private short[] codes;
+    private int[] modifiers;
+    private short[] xs;
+    private short[] ys;
+    private int eventCount;
+
+    // The next frame to play
+    private int next;
+
+    /**
+     * Read a recording.
+     *
+     * @param in Where to read it from. It is read to the end, but not closed.
+     * @throws IOException If it can't be read, or isn't a recording
+     */
+    public InputReplay(InputStream in) throws IOException {
+        times = new double[64];
+        starts = new int[65];
+        types = new byte[256];
+        codes = new short[256];
+        modifiers = new int[256];
+        xs = new short[256];
+        ys = new short[256];
+
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != InputRecorder.MAGIC)
+            throw new IOException("Not an input recording");
+
+        while (true) {
+            double time;
+            try {
+                time = data.readDouble();
+            } catch (EOFException e) {
+                break;
+            }
+            int count = data.readUnsignedShort();
+            if (frameCount == times.length) {
+                times = Arrays.copyOf(times, 2 * frameCount);
+                starts = Arrays.copyOf(starts, 2 * frameCount + 1);
+            }
+            if (eventCount + count > types.length) {
+                int capacity = Math.max(2 * types.length, eventCount + count);
+                types = Arrays.copyOf(types, capacity);
+                codes = Arrays.copyOf(codes, capacity);
+                modifiers = Arrays.copyOf(modifiers, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+            }
+            for (int i = eventCount; i < eventCount + count; i++) {
+                types[i] = data.readByte();
+                codes[i] = data.readShort();
+                modifiers[i] = data.readInt();
+                xs[i] = data.readShort();
+                ys[i] = data.readShort();
+            }
+            times[frameCount] = time;
+            eventCount += count;
+            starts[++frameCount] = eventCount;
+        }
+    }
+
+    /**
+     * Post the events recorded up to the given time that haven't been posted yet.
+     *
+     * @param time The simulation time, in seconds
+     * @param input
+     * @return The number of events posted
+     */
+    public int play(double time, Input input) {
+        int first = starts[next];
+        while (next < frameCount && times[next] <= time) {
+            for (int i = starts[next]; i < starts[next + 1]; i++) {
+                input.post(types[i], codes[i], modifiers[i], xs[i], ys[i]);
+            }
+            next++;
+        }
+        return starts[next] - first;
+    }
+
+    /**
+     * Check whether every event has been posted.
+     *
+     * @return
+     */
+    public boolean isFinished() {
+        return next == frameCount;
+    }
+
+    /**
+     * Get the time of the last recorded event.
+     *
+     * @return The time in seconds, or 0 if nothing was recorded
+     */
+    public double getEndTime() {
+        return frameCount == 0 ? 0 : times[frameCount - 1];
+    }
+
+    public int getFrames() {
+        return frameCount;
+    }
+
+    public int getEvents() {
+        return eventCount;
+    }
+
+    /**
+     * Go back to the start of the recording.
+     */
+    public void rewind() {
+        next = 0;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.nio.IntBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * The geometry of a polygon, uploaded to the GPU once and shared by everything that draws an
+ * equal polygon.
+ *
+ * The vertices are kept in one vertex buffer, and the triangle indices followed by the outline
+ * indices in one element buffer.
+ *
+ * Meshes are created by a {@link MeshRegistry}. Each call to MeshRegistry.acquire() must be
+ * matched by a call to release() once the mesh is no longer needed.
+ */
+public class Mesh {
+
+    private final MeshRegistry registry;
+
+    // The vertex data, which the mesh is looked up by
+    private final float[] key;
+
+    private int vertexBuffer;
+    private int indexBuffer;
+    private int triangleIndexCount;
+    private int outlineIndexCount;
+
+    private int references;
+
+    Mesh(GL3 gl, MeshRegistry registry, float[] key, Polygon2D polygon) {
+        this.registry = registry;
+        this.key = key;
+        references = 0;
+
+        Point2DBuffer vertices = new Point2DBuffer(polygon.getPoints());
+        int[] triangles = polygon.getTriangleIndices();
+        int[] outline = polygon.getOutlineIndices();
+        triangleIndexCount = triangles.length;
+        outlineIndexCount = outline.length;
+        IntBuffer indices = GLBuffers.newDirectIntBuffer(triangleIndexCount + outlineIndexCount);
+        indices.put(triangles);
+        indices.put(outline);
+        indices.rewind();
+
+        int[] names = new int[2];
+        gl.glGenBuffers(2, names, 0);
+        vertexBuffer = names[0];
+        indexBuffer = names[1];
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBuffer);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, key.length * Float.BYTES, vertices.getBuffer(),
+                GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, indices.capacity() * Integer.BYTES, indices,
+                GL.GL_STATIC_DRAW);
+        Profiler.count(Profiler.Counter.UPLOADED_BYTES,
+                (long) key.length * Float.BYTES + indices.capacity() * Integer.BYTES);
+    }
+
+    /**
+     * Draw the polygon filled, in the given coordinate frame.
+     *
+     * @param gl
+     * @param frame
+     */
+    public void draw(GL3 gl, CoordFrame2D frame) {
+        drawElements(gl, frame, GL.GL_TRIANGLES, triangleIndexCount, 0);
+    }
+
+    /**
+     * Draw the outline of the polygon in the given coordinate frame.
+     *
+     * @param gl
+     * @param frame
+     */
+    public void drawOutline(GL3 gl, CoordFrame2D frame) {
+        drawElements(gl, frame, GL.GL_LINES, outlineIndexCount, triangleIndexCount);
+    }
+
+    /**
+     * Give up a reference to the mesh. Once every reference has been released the buffers are
+     * freed, the next time the registry is flushed.
+     */
+    public void release() {
+        if (references <= 0)
+            throw new IllegalStateException("Mesh released more times than it was acquired");
+        references--;
+        if (references == 0)
+            registry.unused(this);
+    }
+
+    /**
+     * Get the number of bytes the mesh takes up on the GPU.
+     *
+     * @return
+     */
+    public int getSize() {
+        return key.length * Float.BYTES + (triangleIndexCount + outlineIndexCount) * Integer.BYTES;
+    }
+
+    /**
+     * Get the number of references to the mesh that haven't been released.
+     *
+     * @return
+     */
+    public int getReferenceCount() {
+        return references;
+    }
+
+    float[] getKey() {
+        return key;
+    }
+
+    void retain() {
+        references++;
+    }
+
+    void destroy(GL3 gl) {
+        gl.glDeleteBuffers(2, new int[] { vertexBuffer, indexBuffer }, 0);
+        vertexBuffer = 0;
+        indexBuffer = 0;
+    }
+
+    private void drawElements(GL3 gl, CoordFrame2D frame, int mode, int count, int first) {
+        if (count == 0)
+            return;
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBuffer);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        Shader.setModelMatrix(gl, frame.getMatrix());
+        gl.glDrawElements(mode, count, GL.GL_UNSIGNED_INT, (long) first * Integer.BYTES);
+        Profiler.countDraw(count);
+    }
+}
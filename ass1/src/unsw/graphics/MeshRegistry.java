@@ -0,0 +1,214 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Interns polygon geometry, so that equal polygons share one {@link Mesh} on the GPU.
+ *
+ * Meshes are looked up by the contents of their vertex data, not by the identity of the
+ * Polygon2D, so two polygons built separately from the same points (e.g. circles of the same
+ * radius) still share a mesh. Each mesh counts its references, and is freed once they have all
+ * been released.
+ *
+ * There is one MeshRegistry per OpenGL context. Use get() to find it.
+ */
+public class MeshRegistry {
+
+    private static final String KEY = MeshRegistry.class.getName();
+
+    private Map<Key, Mesh> meshes;
+
+    // Meshes whose references have all been released, waiting to be freed
+    private List<Mesh> unused;
+
+    private MeshRegistry() {
+        meshes = new HashMap<Key, Mesh>();
+        unused = new ArrayList<Mesh>();
+    }
+
+    /**
+     * Get the mesh registry for the given context, creating it if necessary.
+     *
+     * @param gl
+     * @return
+     */
+    public static MeshRegistry get(GL3 gl) {
+        MeshRegistry registry = (MeshRegistry) gl.getContext().getAttachedObject(KEY);
+        if (registry == null) {
+            registry = new MeshRegistry();
+            gl.getContext().attachObject(KEY, registry);
+        }
+        return registry;
+    }
+
+    /**
+     * Get a reference to the mesh for the given polygon, uploading it if no equal polygon has
+     * been uploaded already. The reference must be released when it is no longer needed.
+     *
+     * @param gl
+     * @param polygon
+     * @return
+     */
+    public Mesh acquire(GL3 gl, Polygon2D polygon) {
+        Key key = new Key(polygon);
+        Mesh mesh = meshes.get(key);
+        if (mesh == null) {
+            flush(gl);
+            mesh = new Mesh(gl, this, key.values, polygon);
+            meshes.put(key, mesh);
+        }
+        mesh.retain();
+        return mesh;
+    }
+
+    /**
+     * Free the meshes that are no longer referenced.
+     *
+     * @param gl
+     */
+    public void flush(GL3 gl) {
+        for (Mesh mesh : unused) {
+            // It may have been acquired again since it was released
+            if (mesh.getReferenceCount() == 0) {
+                meshes.remove(new Key(mesh.getKey()));
+                mesh.destroy(gl);
+            }
+        }
+        unused.clear();
+    }
+
+    /**
+     * Record the number of meshes, and the bytes saved by sharing them, in the profiler's
+     * counters for this frame.
+     */
+    public void count() {
+        if (!Profiler.isEnabled())
+            return;
+        Profiler.count(Profiler.Counter.MESHES, getMeshCount());
+        Profiler.count(Profiler.Counter.MESH_BYTES_SAVED, getBytesSaved());
+    }
+
+    /**
+     * Get the number of distinct meshes that have been uploaded.
+     *
+     * @return
+     */
+    public int getMeshCount() {
+        return meshes.size();
+    }
+
+    /**
+     * Get the total number of references to all the meshes.
+     *
+     * @return
+     */
+    public int getReferenceCount() {
+        int count = 0;
+        for (Mesh mesh : meshes.values()) {
+            count += mesh.getReferenceCount();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of bytes taken up by all the meshes on the GPU.
+     *
+     * @return
+     */
+    public long getUploadedBytes() {
+        long bytes = 0;
+        for (Mesh mesh : meshes.values()) {
+            bytes += mesh.getSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the number of bytes that would have been uploaded if every reference had its own copy
+     * of the mesh, less the number actually uploaded.
+     *
+     * @return
+     */
+    public long getBytesSaved() {
+        long bytes = 0;
+        for (Mesh mesh : meshes.values()) {
+            if (mesh.getReferenceCount() > 1)
+                bytes += (long) (mesh.getReferenceCount() - 1) * mesh.getSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Free every mesh, whether or not it is still referenced.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        for (Mesh mesh : meshes.values()) {
+            mesh.destroy(gl);
+        }
+        meshes.clear();
+        unused.clear();
+        gl.getContext().detachObject(KEY);
+    }
+
+    @Override
+    public String toString() {
+        return getMeshCount() + " meshes for " + getReferenceCount() + " references, "
+                + getUploadedBytes() + " bytes uploaded, " + getBytesSaved() + " bytes saved";
+    }
+
+    void unused(Mesh mesh) {
+        unused.add(mesh);
+    }
+
+    /**
+     * The vertex data of a polygon, compared by value.
+     */
+    private static class Key {
+        private final float[] values;
+        private final int hash;
+
+        Key(Polygon2D polygon) {
+            this(toArray(polygon));
+        }
+
+        Key(float[] values) {
+            this.values = values;
+            hash = Arrays.hashCode(values);
+        }
+
+        private static float[] toArray(Polygon2D polygon) {
+            List<Point2D> points = polygon.getPoints();
+            float[] values = new float[points.size() * 2];
+            for (int i = 0; i < points.size(); i++) {
+                values[2*i] = points.get(i).getX();
+                values[2*i + 1] = points.get(i).getY();
+            }
+            return values;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash
+                    && Arrays.equals(((Key) o).values, values);
+        }
+    }
+}
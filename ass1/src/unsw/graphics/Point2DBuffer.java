@@ -33,6 +33,7 @@ public class Point2DBuffer {
         // Buffer stores pairs of floats
         this.capacity = capacity;
         floatBuffer = GLBuffers.newDirectFloatBuffer(capacity * 2);
+        Profiler.count(Profiler.Counter.ALLOCATIONS, 1);
     }
 
     public Point2DBuffer(List<Point2D> points) {
@@ -0,0 +1,430 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times the work done in each frame.
+ *
+ * The scene and geometry classes report to the profiler as they go: how long updating and
+ * traversing the scene took, how many objects, draw calls and vertices were drawn, how many bytes
+ * were uploaded to the GPU and how many buffers were allocated. At the end of each frame the
+ * totals are copied into a ring of the most recent frames, which can be read from any thread, e.g.
+ * through JMX (see {@link ProfilerMXBean}) or by the overlay Application2D can draw.
+ *
+ * The counters are only written on the OpenGL thread, so they are plain fields. Whether the
+ * profiler is enabled is only checked once a frame, in beginFrame(), so when it is disabled each
+ * counter costs one read of a static field and a branch.
+ */
+public final class Profiler {
+
+    /**
+     * The things counted for each frame.
+     */
+    public enum Counter {
+        /** The time spent drawing the whole frame, in nanoseconds. */
+        FRAME_TIME,
+        /** The time spent in Scene.update(), in nanoseconds. */
+        UPDATE_TIME,
+        /** The time spent walking and drawing the scene tree, in nanoseconds. */
+        TRAVERSAL_TIME,
+        /** The number of scene objects drawn. */
+        OBJECTS,
+        /** The number of OpenGL draw calls. */
+        DRAW_CALLS,
+        /** The number of vertices drawn. */
+        VERTICES,
+        /** The number of bytes uploaded to buffers. */
+        UPLOADED_BYTES,
+        /** The number of vertex buffers allocated on the CPU. */
+        ALLOCATIONS,
+        /** The number of distinct meshes in the MeshRegistry. */
+        MESHES,
+        /** The number of bytes the MeshRegistry saved by sharing meshes. */
+        MESH_BYTES_SAVED,
+        /**
+         * The time the GPU spent on the frame, in nanoseconds, if it was timed (see
+         * setGpuTimed()). This is filled in a few frames late, and is 0 until then.
+         */
+        GPU_FRAME_TIME
+    }
+
+    /**
+     * The number of frames kept.
+     */
+    public static final int HISTORY = 128;
+
+    /**
+     * The name the MBean is registered under.
+     */
+    public static final String MBEAN_NAME = "unsw.graphics:type=Profiler";
+
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private static volatile boolean enabled = false;
+    private static volatile boolean overlayShown = false;
+    private static volatile boolean gpuTimed = false;
+
+    // Whether this frame is being recorded, i.e. whether the profiler was enabled when it began
+    private static boolean recording = false;
+    private static boolean recordingGpu = false;
+    private static long frameStart;
+    private static final long[] counts = new long[COUNTERS.length];
+
+    // The ring of frames, one slot of counters after another. Each slot is stamped with the
+    // number of the frame in it, or -1 while it is being written, so readers can tell when a slot
+    // was overwritten under them without taking a lock.
+    private static final AtomicLongArray history = new AtomicLongArray(HISTORY * COUNTERS.length);
+    private static final AtomicLongArray stamps = new AtomicLongArray(HISTORY);
+    private static volatile long frames = 0;
+
+    // The GPU time of each label in the most recent frame it was timed in
+    private static final Map<String, Long> gpuTimes = new ConcurrentHashMap<String, Long>();
+
+    private static boolean registered = false;
+
+    private Profiler() {
+    }
+
+    /**
+     * Turn profiling on or off. It takes effect from the next frame. Turning it on registers the
+     * MBean, if that hasn't been done already.
+     *
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled)
+            registerMBean();
+        Profiler.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Choose whether Application2D draws a graph of recent frame times over the window. Showing
+     * it enables profiling.
+     *
+     * @param shown
+     */
+    public static void setOverlayShown(boolean shown) {
+        if (shown)
+            setEnabled(true);
+        overlayShown = shown;
+    }
+
+    public static boolean isOverlayShown() {
+        return overlayShown;
+    }
+
+    /**
+     * Choose whether to time frames, and the parts of the scene marked with
+     * SceneObject.setGpuTimerLabel(), on the GPU (see {@link GpuTimer}). Turning it on enables
+     * profiling.
+     *
+     * @param timed
+     */
+    public static void setGpuTimed(boolean timed) {
+        if (timed)
+            setEnabled(true);
+        gpuTimed = timed;
+    }
+
+    public static boolean isGpuTimed() {
+        return gpuTimed;
+    }
+
+    /**
+     * Register the MBean with the platform MBean server, so the counters can be read with tools
+     * like JConsole. Does nothing if it is already registered.
+     */
+    public static synchronized void registerMBean() {
+        if (registered)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(new Bean(), name);
+            registered = true;
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register profiler MBean", e);
+        }
+    }
+
+    /**
+     * Start counting a new frame. Called by Application.
+     */
+    public static void beginFrame() {
+        recording = enabled;
+        recordingGpu = recording && gpuTimed;
+        if (!recording)
+            return;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        frameStart = System.nanoTime();
+    }
+
+    /**
+     * Finish counting the frame and add it to the history. Called by Application.
+     */
+    public static void endFrame() {
+        if (!recording)
+            return;
+        counts[Counter.FRAME_TIME.ordinal()] = System.nanoTime() - frameStart;
+        recording = false;
+        recordingGpu = false;
+
+        long frame = frames;
+        int slot = (int) (frame % HISTORY);
+        stamps.set(slot, -1);
+        for (int i = 0; i < counts.length; i++) {
+            history.set(slot * COUNTERS.length + i, counts[i]);
+        }
+        stamps.set(slot, frame);
+        frames = frame + 1;
+    }
+
+    /**
+     * Add to a counter for this frame.
+     *
+     * @param counter
+     * @param amount
+     */
+    public static void count(Counter counter, long amount) {
+        if (recording)
+            counts[counter.ordinal()] += amount;
+    }
+
+    /**
+     * Count one draw call.
+     *
+     * @param vertices The number of vertices it drew
+     */
+    public static void countDraw(int vertices) {
+        if (!recording)
+            return;
+        counts[Counter.DRAW_CALLS.ordinal()]++;
+        counts[Counter.VERTICES.ordinal()] += vertices;
+    }
+
+    /**
+     * Start timing something.
+     *
+     * @return The time to pass to stop(), or 0 if this frame isn't being recorded
+     */
+    public static long start() {
+        return recording ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stop timing something, adding the time since start() to a counter.
+     *
+     * @param counter
+     * @param start The value returned by start()
+     */
+    public static void stop(Counter counter, long start) {
+        if (recording && start != 0)
+            counts[counter.ordinal()] += System.nanoTime() - start;
+    }
+
+    /**
+     * Check whether this frame is being timed on the GPU.
+     *
+     * @return
+     */
+    static boolean isRecordingGpu() {
+        return recordingGpu;
+    }
+
+    /**
+     * Fill in a counter for a frame that has already finished, if it is still in the history.
+     *
+     * @param counter
+     * @param frame The frame's number, i.e. the value of getFrames() while it was being drawn
+     * @param value
+     */
+    static void set(Counter counter, long frame, long value) {
+        int slot = (int) (frame % HISTORY);
+        if (frame < 0 || stamps.get(slot) != frame)
+            return;
+        stamps.set(slot, -1);
+        history.set(slot * COUNTERS.length + counter.ordinal(), value);
+        stamps.set(slot, frame);
+    }
+
+    /**
+     * Record how long the GPU took to draw the parts of a frame with the given label.
+     *
+     * @param label
+     * @param nanos
+     */
+    static void recordGpuTime(String label, long nanos) {
+        gpuTimes.put(label, nanos);
+    }
+
+    /**
+     * Get the GPU time of each label (see SceneObject.setGpuTimerLabel()), in nanoseconds, from
+     * the most recent frame it was timed in.
+     *
+     * @return
+     */
+    public static Map<String, Long> getGpuTimes() {
+        return Collections.unmodifiableMap(gpuTimes);
+    }
+
+    /**
+     * Get the number of frames recorded so far.
+     *
+     * @return
+     */
+    public static long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Get a counter from a recent frame.
+     *
+     * @param counter
+     * @param age How many frames ago, where 0 is the most recent frame
+     * @return The value, or -1 if that frame isn't in the history
+     */
+    public static long get(Counter counter, int age) {
+        long frame = frames - 1 - age;
+        if (age < 0 || age >= HISTORY || frame < 0)
+            return -1;
+        int slot = (int) (frame % HISTORY);
+        if (stamps.get(slot) != frame)
+            return -1;
+        long value = history.get(slot * COUNTERS.length + counter.ordinal());
+        // The slot may have been reused while it was read
+        return stamps.get(slot) == frame ? value : -1;
+    }
+
+    /**
+     * Get the average of a counter over the frames in the history.
+     *
+     * @param counter
+     * @return The average, or 0 if no frames have been recorded
+     */
+    public static double getAverage(Counter counter) {
+        long total = 0;
+        int n = 0;
+        for (int age = 0; age < HISTORY; age++) {
+            long value = get(counter, age);
+            if (value >= 0) {
+                total += value;
+                n++;
+            }
+        }
+        return n == 0 ? 0 : (double) total / n;
+    }
+
+    /**
+     * The MBean, which reads the profiler's static state.
+     */
+    private static class Bean implements ProfilerMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Profiler.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Profiler.setEnabled(enabled);
+        }
+
+        @Override
+        public long getFrames() {
+            return Profiler.getFrames();
+        }
+
+        @Override
+        public double getAverageFrameTime() {
+            return getAverage(Counter.FRAME_TIME) / 1e6;
+        }
+
+        @Override
+        public double getAverageUpdateTime() {
+            return getAverage(Counter.UPDATE_TIME) / 1e6;
+        }
+
+        @Override
+        public double getAverageTraversalTime() {
+            return getAverage(Counter.TRAVERSAL_TIME) / 1e6;
+        }
+
+        @Override
+        public double getAverageGpuFrameTime() {
+            // Skip frames that weren't timed, or whose results haven't come back yet
+            long total = 0;
+            int n = 0;
+            for (int age = 0; age < HISTORY; age++) {
+                long value = get(Counter.GPU_FRAME_TIME, age);
+                if (value > 0) {
+                    total += value;
+                    n++;
+                }
+            }
+            return n == 0 ? 0 : total / 1e6 / n;
+        }
+
+        @Override
+        public Map<String, Double> getGpuTimes() {
+            Map<String, Double> times = new HashMap<String, Double>();
+            for (Map.Entry<String, Long> entry : gpuTimes.entrySet()) {
+                times.put(entry.getKey(), entry.getValue() / 1e6);
+            }
+            return times;
+        }
+
+        @Override
+        public long getObjects() {
+            return get(Counter.OBJECTS, 0);
+        }
+
+        @Override
+        public long getDrawCalls() {
+            return get(Counter.DRAW_CALLS, 0);
+        }
+
+        @Override
+        public long getVertices() {
+            return get(Counter.VERTICES, 0);
+        }
+
+        @Override
+        public long getUploadedBytes() {
+            return get(Counter.UPLOADED_BYTES, 0);
+        }
+
+        @Override
+        public long getAllocations() {
+            return get(Counter.ALLOCATIONS, 0);
+        }
+
+        @Override
+        public long getMeshes() {
+            return get(Counter.MESHES, 0);
+        }
+
+        @Override
+        public long getMeshBytesSaved() {
+            return get(Counter.MESH_BYTES_SAVED, 0);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.util.Map;
+
+/**
+ * The management interface for the {@link Profiler}. Times are averages in milliseconds over
+ * the frames in the history; counts are for the most recent frame (or -1 if there is none).
+ */
+public interface ProfilerMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getFrames();
+
+    double getAverageFrameTime();
+
+    double getAverageUpdateTime();
+
+    double getAverageTraversalTime();
+
+    double getAverageGpuFrameTime();
+
+    /**
+     * Get the GPU time of each timed part of the scene, in milliseconds.
+     *
+     * @return
+     */
+    Map<String, Double> getGpuTimes();
+
+    long getObjects();
+
+    long getDrawCalls();
+
+    long getVertices();
+
+    long getUploadedBytes();
+
+    long getAllocations();
+
+    long getMeshes();
+
+    long getMeshBytesSaved();
+}
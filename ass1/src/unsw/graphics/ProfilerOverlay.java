@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.Profiler.Counter;
+
+/**
+ * A graph of recent frame times, drawn in the bottom left corner of the window.
+ *
+ * Each frame in the profiler's history is a bar, newest on the right. The grey part is the
+ * whole frame, the blue part traversing the scene and the green part updating it. The red line is
+ * the budget for 60 frames a second, and the top of the graph is twice that.
+ */
+class ProfilerOverlay {
+
+    // The corners of the graph, in window coordinates
+    private static final float LEFT = -1;
+    private static final float BOTTOM = -1;
+    private static final float WIDTH = 0.5f;
+    private static final float HEIGHT = 0.5f;
+
+    // The frame time at the top of the graph, in nanoseconds
+    private static final double SCALE = 2 * 1e9 / 60;
+
+    private static final Color FRAME_COLOR = Color.GRAY;
+    private static final Color TRAVERSAL_COLOR = Color.BLUE;
+    private static final Color UPDATE_COLOR = Color.GREEN;
+    private static final Color BUDGET_COLOR = Color.RED;
+
+    // Reused every frame, so drawing the overlay doesn't allocate buffers
+    private final Point2DBuffer bars;
+    private final Point2DBuffer budget;
+
+    ProfilerOverlay() {
+        bars = new Point2DBuffer(2 * Profiler.HISTORY);
+        budget = new Point2DBuffer(2);
+        float y = BOTTOM + HEIGHT / 2;
+        budget.put(0, LEFT, y);
+        budget.put(1, LEFT + WIDTH, y);
+    }
+
+    /**
+     * Draw the graph with the current shader, which must have a pen color.
+     *
+     * @param gl
+     */
+    public void draw(GL3 gl) {
+        Matrix3 view = Shader.getViewMatrix();
+        Shader.setViewMatrix(gl, Matrix3.identity());
+        Shader.setModelMatrix(gl, Matrix3.identity());
+
+        // Longer bars first, so the shorter ones are drawn over them
+        drawBars(gl, FRAME_COLOR, Counter.FRAME_TIME);
+        drawBars(gl, TRAVERSAL_COLOR, Counter.UPDATE_TIME, Counter.TRAVERSAL_TIME);
+        drawBars(gl, UPDATE_COLOR, Counter.UPDATE_TIME);
+        Shader.setPenColor(gl, BUDGET_COLOR);
+        drawLines(gl, budget, 2);
+
+        if (view != null)
+            Shader.setViewMatrix(gl, view);
+    }
+
+    /**
+     * Draw a bar for every frame in the history, as tall as the given counters added up.
+     */
+    private void drawBars(GL3 gl, Color color, Counter... counters) {
+        int n = 0;
+        for (int age = 0; age < Profiler.HISTORY; age++) {
+            long total = 0;
+            for (Counter counter : counters) {
+                long value = Profiler.get(counter, age);
+                if (value < 0) {
+                    total = -1;
+                    break;
+                }
+                total += value;
+            }
+            if (total < 0)
+                continue;
+
+            float x = LEFT + WIDTH * (Profiler.HISTORY - 1 - age) / Profiler.HISTORY;
+            float y = BOTTOM + (float) (HEIGHT * Math.min(1, total / SCALE));
+            bars.put(n++, x, BOTTOM);
+            bars.put(n++, x, y);
+        }
+        if (n == 0)
+            return;
+        Shader.setPenColor(gl, color);
+        drawLines(gl, bars, n);
+    }
+
+    private static void drawLines(GL3 gl, Point2DBuffer points, int count) {
+        int offset = StreamingBuffer.get(gl).write(gl, points.getBuffer(),
+                count * 2 * Float.BYTES);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, offset);
+        gl.glDrawArrays(GL.GL_LINES, 0, count);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.opengl.GL3;
+
+/**
+ * OpenGL resources waiting to be freed.
+ *
+ * Scene objects are usually destroyed without an OpenGL context to hand, so an object that owns
+ * buffers or textures adds itself here instead, and they are freed the next time the queue is
+ * flushed. Application2D flushes it at the start of every frame, like the {@link MeshRegistry}.
+ *
+ * There is one ReleaseQueue per OpenGL context. Use get() to find it.
+ */
+public class ReleaseQueue {
+
+    /**
+     * Something that owns OpenGL resources.
+     */
+    public interface Resource {
+        /**
+         * Free the OpenGL resources.
+         *
+         * @param gl
+         */
+        void release(GL3 gl);
+    }
+
+    private static final String KEY = ReleaseQueue.class.getName();
+
+    private List<Resource> pending;
+
+    private ReleaseQueue() {
+        pending = new ArrayList<Resource>();
+    }
+
+    /**
+     * Get the release queue for the given context, creating it if necessary.
+     *
+     * @param gl
+     * @return
+     */
+    public static ReleaseQueue get(GL3 gl) {
+        ReleaseQueue queue = (ReleaseQueue) gl.getContext().getAttachedObject(KEY);
+        if (queue == null) {
+            queue = new ReleaseQueue();
+            gl.getContext().attachObject(KEY, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Free the resource the next time the queue is flushed.
+     *
+     * @param resource
+     */
+    public void add(Resource resource) {
+        if (!pending.contains(resource))
+            pending.add(resource);
+    }
+
+    /**
+     * Get the number of resources waiting to be freed.
+     *
+     * @return
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Free every resource that has been added since the last flush.
+     *
+     * @param gl
+     */
+    public void flush(GL3 gl) {
+        for (Resource resource : pending) {
+            resource.release(gl);
+        }
+        pending.clear();
+    }
+}
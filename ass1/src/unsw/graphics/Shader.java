@@ -17,6 +17,7 @@ import com.jogamp.opengl.util.glsl.ShaderProgram;
  * shader there must be:
  *   - "in vec2 position"
  *   - "uniform mat3 model_matrix" 
+ *   - the "Camera" uniform block, containing the view matrix (see {@link CameraBlock})
  *
  * 
  * @author Robert Clifton-Everest
@@ -30,6 +31,25 @@ public class Shader {
      * The vertex position attribute for use with glAttribPointer.
      */
     public static final int POSITION = 0;
+
+    /**
+     * The texture coordinate attribute for use with glAttribPointer. Only used by textured
+     * shaders, where it must be declared as "in vec2 tex_coord".
+     */
+    public static final int TEX_COORD = 1;
+
+    /**
+     * The vertex color attribute for use with glAttribPointer. Only used by shaders that take
+     * their color per vertex, where it must be declared as "in vec4 color". See
+     * {@link ColoredPoint2DBuffer} for a buffer with the matching layout.
+     */
+    public static final int COLOR = 2;
+
+    /**
+     * The object index attribute for use with glAttribPointer. Only used by shaders that draw a
+     * batch of objects at once, where it must be declared as "in float object_index".
+     */
+    public static final int OBJECT_INDEX = 3;
     
     //Uniform variables
     
@@ -38,6 +58,38 @@ public class Shader {
      */
     public static final String MODEL_MATRIX = "model_matrix";
 
+    //Uniform blocks
+
+    /**
+     * The name of the uniform block holding the per-frame camera data.
+     */
+    public static final String CAMERA_BLOCK = "Camera";
+
+    /**
+     * The binding point the camera block is attached to, for use with glBindBufferBase.
+     */
+    public static final int CAMERA_BINDING = 0;
+
+    /**
+     * The name of the uniform block holding the model matrices of a batch of objects.
+     */
+    public static final String OBJECTS_BLOCK = "Objects";
+
+    /**
+     * The binding point the objects block is attached to, for use with glBindBufferBase.
+     */
+    public static final int OBJECTS_BINDING = 1;
+
+    /**
+     * The view matrix most recently set with setViewMatrix().
+     */
+    private static Matrix3 viewMatrix = Matrix3.identity();
+
+    /**
+     * The depth most recently set with setDepth().
+     */
+    private static float depth = 0;
+
     private int id;
 
     /**
@@ -67,12 +119,45 @@ public class Shader {
             throw new RuntimeException("Invalid shader program");
 
         id = shaderProgram.program();
+        gl.glBindAttribLocation(id, TEX_COORD, "tex_coord");
+        gl.glBindAttribLocation(id, COLOR, "color");
+        gl.glBindAttribLocation(id, OBJECT_INDEX, "object_index");
         shaderProgram.link(gl, System.err);
 
+        int cameraBlock = gl.glGetUniformBlockIndex(id, CAMERA_BLOCK);
+        if (cameraBlock != GL3.GL_INVALID_INDEX)
+            gl.glUniformBlockBinding(id, cameraBlock, CAMERA_BINDING);
+
+        int objectsBlock = gl.glGetUniformBlockIndex(id, OBJECTS_BLOCK);
+        if (objectsBlock != GL3.GL_INVALID_INDEX)
+            gl.glUniformBlockBinding(id, objectsBlock, OBJECTS_BINDING);
+
         gl.glEnableVertexAttribArray(POSITION);
         gl.glBindAttribLocation(id, POSITION, "position");
     }
 
+    /**
+     * Get a shader made from the given files that is shared by everything drawing in the given
+     * context. The shader is loaded the first time it is asked for.
+     * 
+     * This is useful for library code that needs its own shader (e.g. a textured one) without
+     * the application having to create and pass it around.
+     * 
+     * @param gl
+     * @param vertex The file containing the vertex shader code.
+     * @param fragment The file containing the fragment shader code.
+     * @return
+     */
+    public static Shader shared(GL3 gl, String vertex, String fragment) {
+        String key = Shader.class.getName() + ":" + vertex + ":" + fragment;
+        Shader shader = (Shader) gl.getContext().getAttachedObject(key);
+        if (shader == null) {
+            shader = new Shader(gl, vertex, fragment);
+            gl.getContext().attachObject(key, shader);
+        }
+        return shader;
+    }
+
     /**
      * "Use" this shader in the given context.
      * 
@@ -82,6 +167,8 @@ public class Shader {
      */
     public void use(GL3 gl) {
         gl.glUseProgram(id);
+        gl.glUniform1f(gl.glGetUniformLocation(id, "depth"), depth);
+        CameraBlock.get(gl).flush(gl);
     }
 
     /**
@@ -114,18 +201,49 @@ public class Shader {
         gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
         int modelLoc = gl.glGetUniformLocation(ids[0], "model_matrix");
         gl.glUniformMatrix3fv(modelLoc, 1, false, mat.getValues(), 0);
+
+        // Every draw sets its model matrix first, so this is where camera changes are uploaded
+        CameraBlock.get(gl).flush(gl);
     }
     
     /**
-     * Sets the view matrix of the currently loaded shader.
+     * Sets the depth of the currently loaded shader. This is remembered, and set again whenever
+     * a shader is loaded with use(), so drawing code that switches shaders keeps the same depth.
+     * 
+     * The depth is only used when depth testing is enabled. It should be between -1 (nearest)
+     * and 1 (furthest).
      * @param gl
-     * @param mat
+     * @param d
      */
-    public static void setViewMatrix(GL3 gl, Matrix3 mat) {
+    public static void setDepth(GL3 gl, float d) {
+        depth = d;
         int ids[] = new int[1]; 
         gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, ids, 0);
-        int viewLoc = gl.glGetUniformLocation(ids[0], "view_matrix");
-        gl.glUniformMatrix3fv(viewLoc, 1, false, mat.getValues(), 0);
+        int depthLoc = gl.glGetUniformLocation(ids[0], "depth");
+        gl.glUniform1f(depthLoc, d);
+    }
+
+    /**
+     * Sets the view matrix for every shader.
+     * 
+     * The view matrix is stored in the {@link CameraBlock}, so it doesn't need to be set again
+     * when switching between shaders.
+     * @param gl
+     * @param mat
+     */
+    public static void setViewMatrix(GL3 gl, Matrix3 mat) {
+        viewMatrix = mat;
+        CameraBlock.get(gl).setViewMatrix(mat);
+    }
+    
+    /**
+     * Gets the view matrix most recently set with setViewMatrix(). Useful for temporarily
+     * replacing the view (e.g. when rendering to a texture) and restoring it afterwards.
+     * 
+     * @return
+     */
+    public static Matrix3 getViewMatrix() {
+        return viewMatrix;
     }
     
     /**
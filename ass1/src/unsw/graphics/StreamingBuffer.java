@@ -0,0 +1,336 @@
+/**
+ *
+ */
+package unsw.graphics;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.jogamp.common.util.VersionNumber;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.GLException;
+
+/**
+ * A large vertex buffer that data which changes every frame is streamed through.
+ *
+ * Instead of creating, filling and deleting a buffer for every draw call, each write is appended
+ * to the end of one big ring buffer, and the draw call uses it at the returned offset. When the
+ * end of the buffer is reached, writing starts again at the beginning.
+ *
+ * A draw that needs several writes (e.g. vertices and then indices) must reserve() their total
+ * size first. Otherwise the buffer could wrap around between the writes, and the storage holding
+ * the first write would be orphaned or overwritten before it is drawn.
+ *
+ * The buffer is divided into regions of REGION_SIZE bytes, and no write (or group of reserved
+ * writes) crosses from one region into the next. If it wouldn't fit in what is left of the
+ * current region, it starts at the beginning of the next one instead.
+ *
+ * If the context is OpenGL 4 and supports ARB_buffer_storage, the buffer is mapped once,
+ * persistently, and data is copied straight into it. The buffer is split into regions, and a
+ * fence is placed after the last draw that uses each region, so a region is never overwritten
+ * while the GPU may still be reading it. (The application asks for OpenGL 4 when it is
+ * available.) Otherwise the buffer is orphaned each time it wraps around, which lets the driver
+ * hand out fresh storage while the GPU finishes with the old.
+ *
+ * There is one StreamingBuffer per OpenGL context. Use get() to find it.
+ */
+public class StreamingBuffer {
+
+    /**
+     * The size of the buffer in bytes.
+     */
+    public static final int CAPACITY = 4 * 1024 * 1024;
+
+    /**
+     * The size of each region in bytes. This is also the most that can be written, or reserved,
+     * at once.
+     */
+    public static final int REGION_SIZE = CAPACITY / 4;
+
+    private static final String KEY = StreamingBuffer.class.getName();
+
+    // Every write starts on a multiple of this many bytes
+    private static final int ALIGNMENT = 16;
+
+    // The number of regions the persistently mapped buffer is fenced in
+    private static final int REGIONS = CAPACITY / REGION_SIZE;
+
+    // How long to wait for a fence before checking again (in nanoseconds)
+    private static final long FENCE_TIMEOUT = 1000000;
+
+    // Buffer storage is core from OpenGL 4.4
+    private static final VersionNumber BUFFER_STORAGE_VERSION = new VersionNumber(4, 4, 0);
+
+    private int name;
+
+    // The persistently mapped storage, or null if the buffer is orphaned instead
+    private ByteBuffer mapping;
+
+    // The fence placed after the last use of each region, or 0
+    private long[] fences;
+
+    // Where the next write goes, and the region it is in
+    private int offset;
+    private int region;
+
+    private StreamingBuffer(GL3 gl) {
+        int[] names = new int[1];
+        gl.glGenBuffers(1, names, 0);
+        name = names[0];
+        fences = new long[REGIONS];
+        offset = 0;
+        region = 0;
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, name);
+        if (hasBufferStorage(gl)) {
+            int flags = GL.GL_MAP_WRITE_BIT | GL4.GL_MAP_PERSISTENT_BIT
+                    | GL4.GL_MAP_COHERENT_BIT;
+            try {
+                gl.getGL4().glBufferStorage(GL.GL_ARRAY_BUFFER, CAPACITY, null, flags);
+                mapping = gl.glMapBufferRange(GL.GL_ARRAY_BUFFER, 0, CAPACITY, flags);
+            } catch (GLException e) {
+                // Fall back to orphaning, with a new buffer because storage may be immutable
+                mapping = null;
+                gl.glDeleteBuffers(1, names, 0);
+                gl.glGenBuffers(1, names, 0);
+                name = names[0];
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, name);
+            }
+        }
+        if (mapping != null) {
+            mapping.order(ByteOrder.nativeOrder());
+        } else {
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, CAPACITY, null, GL3.GL_STREAM_DRAW);
+        }
+    }
+
+    /**
+     * Get the streaming buffer for the given context, creating it if necessary.
+     *
+     * @param gl
+     * @return
+     */
+    public static StreamingBuffer get(GL3 gl) {
+        StreamingBuffer buffer = (StreamingBuffer) gl.getContext().getAttachedObject(KEY);
+        if (buffer == null) {
+            buffer = new StreamingBuffer(gl);
+            gl.getContext().attachObject(KEY, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Check whether the buffer is persistently mapped, rather than orphaned when it wraps around.
+     *
+     * @return
+     */
+    public boolean isPersistent() {
+        return mapping != null;
+    }
+
+    /**
+     * Make sure the next writes, of the given sizes in bytes, all go in one contiguous range in
+     * one region, by moving on to the next region now if they wouldn't fit in this one.
+     *
+     * @param gl
+     * @param sizes
+     */
+    public void reserve(GL3 gl, int... sizes) {
+        int total = 0;
+        for (int size : sizes) {
+            total += align(size);
+        }
+        if (total > REGION_SIZE)
+            throw new IllegalArgumentException("size: " + total + ", region: " + REGION_SIZE);
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, name);
+        offset = fit(gl, total);
+    }
+
+    /**
+     * Copy the first 'size' bytes of the given data into the buffer, and leave the buffer bound
+     * to GL_ARRAY_BUFFER.
+     *
+     * The data may be a ByteBuffer, FloatBuffer or IntBuffer. It is read from the start, whatever
+     * its position. The data is only valid until the end of the frame, so it should be drawn
+     * straight away.
+     *
+     * @param gl
+     * @param data
+     * @param size
+     * @return The offset in bytes the data was written at, for use with glVertexAttribPointer()
+     */
+    public int write(GL3 gl, Buffer data, int size) {
+        if (size > REGION_SIZE)
+            throw new IllegalArgumentException("size: " + size + ", region: " + REGION_SIZE);
+        Profiler.count(Profiler.Counter.UPLOADED_BYTES, size);
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, name);
+        int start = fit(gl, size);
+
+        if (mapping != null) {
+            ByteBuffer destination = mapping.duplicate().order(ByteOrder.nativeOrder());
+            destination.position(start);
+            copy(data, destination, size);
+        } else if (size > 0) {
+            // Nothing has been written to this range since the buffer was last orphaned, so
+            // there is no need to wait for the GPU.
+            ByteBuffer destination = gl.glMapBufferRange(GL.GL_ARRAY_BUFFER, start, size,
+                    GL.GL_MAP_WRITE_BIT | GL.GL_MAP_INVALIDATE_RANGE_BIT
+                            | GL.GL_MAP_UNSYNCHRONIZED_BIT);
+            destination.order(ByteOrder.nativeOrder());
+            copy(data, destination, size);
+            gl.glUnmapBuffer(GL.GL_ARRAY_BUFFER);
+        }
+
+        offset = start + size;
+        return start;
+    }
+
+    /**
+     * Copy the given indices into the buffer, and leave the buffer bound to both GL_ARRAY_BUFFER
+     * and GL_ELEMENT_ARRAY_BUFFER. If the vertices they index were written to this buffer too,
+     * both writes must have been reserved together.
+     *
+     * @param gl
+     * @param indices
+     * @return The offset in bytes the indices were written at, for use with glDrawElements()
+     */
+    public int writeIndices(GL3 gl, IntBuffer indices) {
+        int start = write(gl, indices, indices.capacity() * Integer.BYTES);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, name);
+        return start;
+    }
+
+    /**
+     * Free the buffer and any fences.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        for (int i = 0; i < REGIONS; i++) {
+            if (fences[i] != 0) {
+                gl.glDeleteSync(fences[i]);
+                fences[i] = 0;
+            }
+        }
+        if (mapping != null) {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, name);
+            gl.glUnmapBuffer(GL.GL_ARRAY_BUFFER);
+            mapping = null;
+        }
+        gl.glDeleteBuffers(1, new int[] { name }, 0);
+        gl.getContext().detachObject(KEY);
+    }
+
+    /**
+     * Find where a write of the given size should start so that it stays in one region, moving on
+     * to that region (or wrapping around) if necessary. The buffer must be bound to
+     * GL_ARRAY_BUFFER.
+     *
+     * A region is only fenced once writing has left it, and the draws that read a write come
+     * after it, so a write must never leave a region that an earlier part of it is in.
+     *
+     * @return The offset to write at
+     */
+    private int fit(GL3 gl, int size) {
+        int start = align(offset);
+        int target = start / REGION_SIZE;
+        if (target < REGIONS && start + size > (target + 1) * REGION_SIZE) {
+            target++;
+            start = target * REGION_SIZE;
+        }
+
+        if (target == REGIONS) {
+            wrap(gl);
+            return 0;
+        }
+        if (mapping != null)
+            enterRegion(gl, target, false);
+        return start;
+    }
+
+    /**
+     * Start writing at the beginning of the buffer again. The buffer must be bound to
+     * GL_ARRAY_BUFFER.
+     */
+    private void wrap(GL3 gl) {
+        if (mapping != null) {
+            enterRegion(gl, 0, true);
+        } else {
+            // Orphan the old storage. The GPU keeps it until it has finished with it.
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, CAPACITY, null, GL3.GL_STREAM_DRAW);
+        }
+        offset = 0;
+    }
+
+    private static boolean hasBufferStorage(GL3 gl) {
+        if (!gl.isGL4())
+            return false;
+        return gl.getContext().getGLVersionNumber().compareTo(BUFFER_STORAGE_VERSION) >= 0
+                || gl.isExtensionAvailable("GL_ARB_buffer_storage");
+    }
+
+    private static int align(int offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Move writing on to the given region, fencing each region that is left behind and waiting
+     * for the GPU to finish with each one that is entered.
+     *
+     * @param target
+     * @param wrapped Whether writing has gone back to the start of the buffer, in which case the
+     * current region must be left even if it is also the target.
+     */
+    private void enterRegion(GL3 gl, int target, boolean wrapped) {
+        while (region != target || wrapped) {
+            wrapped = false;
+            if (fences[region] != 0)
+                gl.glDeleteSync(fences[region]);
+            fences[region] = gl.glFenceSync(GL3.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            region = (region + 1) % REGIONS;
+            waitFor(gl, region);
+        }
+    }
+
+    private void waitFor(GL3 gl, int region) {
+        long fence = fences[region];
+        if (fence == 0)
+            return;
+
+        int result;
+        do {
+            result = gl.glClientWaitSync(fence, GL3.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+        } while (result == GL3.GL_TIMEOUT_EXPIRED);
+
+        gl.glDeleteSync(fence);
+        fences[region] = 0;
+    }
+
+    private static void copy(Buffer data, ByteBuffer destination, int size) {
+        if (data instanceof ByteBuffer) {
+            ByteBuffer source = ((ByteBuffer) data).duplicate();
+            source.position(0);
+            source.limit(size);
+            destination.put(source);
+        } else if (data instanceof FloatBuffer) {
+            FloatBuffer source = ((FloatBuffer) data).duplicate();
+            source.position(0);
+            source.limit(size / Float.BYTES);
+            destination.asFloatBuffer().put(source);
+        } else if (data instanceof IntBuffer) {
+            IntBuffer source = ((IntBuffer) data).duplicate();
+            source.position(0);
+            source.limit(size / Integer.BYTES);
+            destination.asIntBuffer().put(source);
+        } else {
+            throw new IllegalArgumentException("Unsupported buffer type: " + data.getClass());
+        }
+    }
+}
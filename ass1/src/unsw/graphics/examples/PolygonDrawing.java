@@ -7,11 +7,11 @@ package unsw.graphics.examples;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.jogamp.newt.event.MouseAdapter;
 import com.jogamp.newt.event.MouseEvent;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.Application2D;
+import unsw.graphics.Input;
 import unsw.graphics.geometry.Line2D;
 import unsw.graphics.geometry.LineStrip2D;
 import unsw.graphics.geometry.Point2D;
@@ -42,35 +42,27 @@ public class PolygonDrawing extends Application2D {
 
     public static void main(String[] args) {
         PolygonDrawing example = new PolygonDrawing();
+        // The drawing only changes in response to the mouse
+        example.setOnDemand(true);
         example.start();
     }
     
-    @Override
-    public void init(GL3 gl) {
-        super.init(gl);
-        getWindow().addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent ev) {
-                if (ev.getButton() == MouseEvent.BUTTON1)
-                    currentStrip.add(currentPoint);
-                else if (ev.getButton() == MouseEvent.BUTTON3) {
-                    if (currentStrip.getPoints().size() < 3) return;
-                    Polygon2D poly = new Polygon2D(currentStrip.getPoints());
-                    finishedPolygons.add(poly);
-                    currentStrip = new LineStrip2D();
-                }
-            }
-            
-            @Override
-            public void mouseMoved(MouseEvent ev) {
-                currentPoint = fromScreenCoords(ev);
-            }
-        });
-    }
-    
     @Override
     public void display(GL3 gl) {
         super.display(gl);
+
+        // The input is read on this thread, so it is always applied before the frame is drawn
+        Input input = getInput();
+        if (input.hasMouse())
+            currentPoint = fromScreenCoords(input.getMouseX(), input.getMouseY());
+        if (input.wasButtonPressed(MouseEvent.BUTTON1))
+            currentStrip.add(currentPoint);
+        if (input.wasButtonPressed(MouseEvent.BUTTON3)
+                && currentStrip.getPoints().size() >= 3) {
+            Polygon2D poly = new Polygon2D(currentStrip.getPoints());
+            finishedPolygons.add(poly);
+            currentStrip = new LineStrip2D();
+        }
         
         currentStrip.draw(gl);
         currentPoint.draw(gl);
@@ -84,10 +76,10 @@ public class PolygonDrawing extends Application2D {
         }
     }
 
-    private Point2D fromScreenCoords(MouseEvent ev) {
+    private Point2D fromScreenCoords(int screenX, int screenY) {
         //We need to map from pixel coordinates to coordinates on the canvas
-        float x = 2f*ev.getX()/getWindow().getSurfaceWidth() - 1;
-        float y = -2f*ev.getY()/getWindow().getSurfaceHeight() + 1;
+        float x = 2f*screenX/getWindow().getSurfaceWidth() - 1;
+        float y = -2f*screenY/getWindow().getSurfaceHeight() + 1;
         return new Point2D(x, y);
     }
 
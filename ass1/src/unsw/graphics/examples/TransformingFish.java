@@ -25,6 +25,8 @@ public class TransformingFish extends Application2D {
 
     public static void main(String[] args) {
         TransformingFish example = new TransformingFish();
+        // Nothing moves, so there is no need to redraw unless the window changes
+        example.setOnDemand(true);
         example.start();
     }
     
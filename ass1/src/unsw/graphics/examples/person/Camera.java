@@ -2,10 +2,11 @@ package unsw.graphics.examples.person;
 
 
 import com.jogamp.newt.event.KeyEvent;
-import com.jogamp.newt.event.KeyListener;
+import com.jogamp.newt.event.InputEvent;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Input;
 import unsw.graphics.Shader;
 import unsw.graphics.geometry.LineStrip2D;
 import unsw.graphics.geometry.Point2D;
@@ -18,7 +19,7 @@ import unsw.graphics.geometry.Point2D;
  * @author malcolmr
  * @author Robert Clifton-Everest
  */
-public class Camera implements KeyListener {
+public class Camera {
 
     private Point2D myPos;
     private float myAngle;
@@ -55,32 +56,46 @@ public class Camera implements KeyListener {
         Shader.setViewMatrix(gl, viewFrame.getMatrix());
     }
 
-    @Override
-    public void keyPressed(KeyEvent e) {
-        switch(e.getKeyCode()) {
+    /**
+     * Move the camera for the arrow keys pressed this frame. With shift held down they rotate and
+     * zoom instead.
+     * 
+     * @param input
+     */
+    public void update(Input input) {
+        for (int i = 0; i < input.getEventCount(); i++) {
+            if (input.getEventType(i) == Input.KEY_PRESSED) {
+                boolean shift = (input.getEventModifiers(i) & InputEvent.SHIFT_MASK) != 0;
+                keyPressed(input.getEventCode(i), shift);
+            }
+        }
+    }
+
+    private void keyPressed(int keyCode, boolean shift) {
+        switch(keyCode) {
         case KeyEvent.VK_LEFT:
-            if (e.isShiftDown())
+            if (shift)
                 myAngle += 5;
             else
                 myPos = new Point2D(myPos.getX() - 1, myPos.getY());                
             break;
             
         case KeyEvent.VK_RIGHT:
-            if (e.isShiftDown())
+            if (shift)
                 myAngle -= 5;
             else
                 myPos = new Point2D(myPos.getX() + 1, myPos.getY());                
             break;
 
         case KeyEvent.VK_DOWN:
-            if (e.isShiftDown())
+            if (shift)
                 myScale *= 1.1;
             else
                 myPos = new Point2D(myPos.getX(), myPos.getY() - 1);
             break;
 
         case KeyEvent.VK_UP:
-            if (e.isShiftDown())
+            if (shift)
                 myScale /= 1.1;
             else
                 myPos = new Point2D(myPos.getX(), myPos.getY() + 1);
@@ -89,7 +104,4 @@ public class Camera implements KeyListener {
 
     }
 
-    @Override
-    public void keyReleased(KeyEvent e) {}
-
 }
@@ -1,10 +1,10 @@
 package unsw.graphics.examples.person;
 
 import com.jogamp.newt.event.KeyEvent;
-import com.jogamp.newt.event.KeyListener;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Input;
 import unsw.graphics.geometry.Line2D;
 import unsw.graphics.geometry.Point2D;
 
@@ -12,12 +12,12 @@ import unsw.graphics.geometry.Point2D;
 /**
  * The person in the person demo.
  * 
- * Draws the person and allows for manipulation as a key listener.
+ * Draws the person and allows for manipulation with the keyboard.
  *
  * @author malcolmr
  * @author Robert Clifton-Everest
  */
-public class Person implements KeyListener { 
+public class Person { 
     
     static private float TORSO_LENGTH = 12;
     private static final float SHOULDER_HEIGHT = TORSO_LENGTH * 3 / 4;
@@ -72,10 +72,21 @@ public class Person implements KeyListener {
         myRightArm.draw(gl, shoulderFrame);
     }    
     
-    @Override
-    public void keyPressed(KeyEvent e) {
+    /**
+     * Move the person's limbs for the keys pressed this frame. Keys held down keep moving them.
+     * 
+     * @param input
+     */
+    public void update(Input input) {
+        for (int i = 0; i < input.getEventCount(); i++) {
+            if (input.getEventType(i) == Input.KEY_PRESSED)
+                keyPressed(input.getEventCode(i));
+        }
+    }
+
+    private void keyPressed(int keyCode) {
         
-        switch(e.getKeyCode()) {
+        switch(keyCode) {
         
         case KeyEvent.VK_1:
             myLeftArm.rotateElbow(-5);
@@ -146,9 +157,5 @@ public class Person implements KeyListener {
         
     }
 
-    @Override
-    public void keyReleased(KeyEvent e) {
-    }
-
     
 }
@@ -4,7 +4,6 @@
 package unsw.graphics.examples.person;
 
 import com.jogamp.newt.event.KeyEvent;
-import com.jogamp.newt.event.KeyListener;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.Application2D;
@@ -26,7 +25,7 @@ import unsw.graphics.CoordFrame2D;
  * @author Robert Clifton-Everest
  * 
  */
-public class PersonDemo extends Application2D implements KeyListener {
+public class PersonDemo extends Application2D {
     
     private boolean useCamera;
     
@@ -49,6 +48,11 @@ public class PersonDemo extends Application2D implements KeyListener {
     @Override
     public void display(GL3 gl) {
         super.display(gl);
+
+        if (getInput().wasKeyPressed(KeyEvent.VK_SPACE))
+            useCamera ^= true;
+        person.update(getInput());
+        camera.update(getInput());
        
         CoordFrame2D frame;
         if (!useCamera) {
@@ -66,21 +70,4 @@ public class PersonDemo extends Application2D implements KeyListener {
         //camera.draw(gl, frame);
     }
     
-    @Override
-    public void init(GL3 gl) {
-        super.init(gl);
-        getWindow().addKeyListener(person);
-        getWindow().addKeyListener(camera);
-        getWindow().addKeyListener(this);
-    }
-
-    @Override
-    public void keyPressed(KeyEvent e) {
-        if (e.getKeyCode() == KeyEvent.VK_SPACE)
-            useCamera ^= true;
-    }
-
-    @Override
-    public void keyReleased(KeyEvent arg0) {}
-
 }
@@ -1,12 +1,12 @@
 package unsw.graphics.examples.sailing;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import org.json.JSONReader;
+import org.json.UTF8Tokener;
 
 import unsw.graphics.examples.sailing.objects.Island;
 import unsw.graphics.examples.sailing.objects.Merchant;
@@ -51,27 +51,65 @@ public class Map {
         myMerchants.add(merchant);
     }
     
+    /**
+     * Read a map, adding its objects to the scene as they are read. The file is streamed rather
+     * than read into a JSONObject first, so only the values of the current object are held.
+     * 
+     * @param scene
+     * @param in
+     * @return
+     */
     static public Map read(Scene scene, InputStream in) {
-        
-        JSONTokener jtk = new JSONTokener(in);
-        JSONObject jsonMap = new JSONObject(jtk);
+        return read(scene, new JSONReader(in));
+    }
 
-        Map map = new Map();
+    /**
+     * Read a map from a file, which is memory-mapped and parsed as UTF-8 bytes rather than
+     * decoded into characters first.
+     * 
+     * @param scene
+     * @param file
+     * @return
+     */
+    static public Map read(Scene scene, File file) {
+        return read(scene, new JSONReader(new UTF8Tokener(file)));
+    }
 
-        JSONObject jsonPlayer = jsonMap.getJSONObject("player");
-        map.myPlayer = Pirate.fromJSON(scene.getRoot(), jsonPlayer);
+    /**
+     * Read a map from a JSONReader, adding its objects to the scene as they are read.
+     * 
+     * @param scene
+     * @param reader
+     * @return
+     */
+    static public Map read(Scene scene, JSONReader reader) {
+        Map map = new Map();
 
-        JSONArray jsonIslands = jsonMap.getJSONArray("islands");
-        for (int i = 0; i < jsonIslands.length(); i++) {
-            Island island = Island.fromJSON(scene.getRoot(), jsonIslands.getJSONObject(i));
-            map.addIsland(island);
-        }
-        
-        JSONArray jsonMerchants = jsonMap.getJSONArray("merchants");
-        for (int i = 0; i < jsonMerchants.length(); i++) {
-            Merchant merchant = Merchant.fromJSON(scene.getRoot(), jsonMerchants.getJSONObject(i));
-            map.addMerchant(merchant);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("player")) {
+                map.myPlayer = Pirate.fromJSON(scene.getRoot(), reader);
+            } else if (name.equals("islands")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    map.addIsland(Island.fromJSON(scene.getRoot(), reader));
+                }
+                reader.endArray();
+            } else if (name.equals("merchants")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    map.addMerchant(Merchant.fromJSON(scene.getRoot(), reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
         }
+        reader.endObject();
+
+        if (map.myPlayer == null)
+            throw reader.syntaxError("Expected a player");
         
         return map;
     }
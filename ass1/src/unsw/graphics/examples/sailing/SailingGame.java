@@ -3,32 +3,49 @@ package unsw.graphics.examples.sailing;
 import java.awt.Color;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.Application2D;
+import unsw.graphics.InputRecorder;
+import unsw.graphics.InputReplay;
 import unsw.graphics.examples.sailing.objects.CameraHarness;
 import unsw.graphics.examples.sailing.objects.Mouse;
 import unsw.graphics.examples.sailing.objects.Pirate;
 import unsw.graphics.scene.Camera;
 import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.View;
 
 /**
  * COMMENT: A Sailing 'Game' that uses UNSWgraph
  *          This will not work until you have implemented the relevant
  *          assignment 1 classes. 
  *
+ * Run it with "--record FILE" to record the input to a file, and "--replay FILE" to play it
+ * back without a window and print how long the frames took. Replays always update the scene by
+ * the same step, so they behave the same way every time.
+ *
  * @author malcolmr
  */
 public class SailingGame extends Application2D {
 
     private static final Color WATER_COLOR = new Color(0.1f, 0.3f, 1f);
+    private static final Color MINIMAP_COLOR = new Color(0.05f, 0.15f, 0.5f);
     private static final String MAP_FILE = "res/sailing/map.json";
 
+    // How far a replay moves the scene each frame, and how long it goes on after the last input
+    private static final float REPLAY_STEP = 1 / 60f;
+    private static final int REPLAY_TAIL_FRAMES = 60;
+
     private Map myMap;
     private Scene scene;
+
+    // Where the input is recorded to, or played back from, or null
+    private InputRecorder myRecorder;
+    private InputReplay myReplay;
     
     private SailingGame() {
         super("Sailing Game", 1024, 768);
@@ -53,14 +70,25 @@ public class SailingGame extends Application2D {
         
         scene.setCamera(camera);
         setBackground(WATER_COLOR);
-      
-        getWindow().addMouseListener(Mouse.theMouse);     
+
+        // A minimap of the whole world in the top right corner. It doesn't need to keep up with
+        // every frame.
+        Camera minimapCamera = new Camera(scene.getRoot());
+        minimapCamera.setPosition(15, 15);
+        minimapCamera.scale(40);
+        View minimap = new View(minimapCamera, 0.75f, 0.75f, 0.25f, 0.25f);
+        minimap.setInterval(4);
+        minimap.setBackground(MINIMAP_COLOR);
+        scene.addView(minimap);
+
+        if (myReplay != null) {
+            scene.setFixedStep(REPLAY_STEP);
+            myReplay.play(scene.getTime(), getInput());
+        }
     }
 
     public void readMap(File mapFile) throws IOException {
-        InputStream in = new FileInputStream(mapFile);
-        myMap = Map.read(scene, in);
-        in.close();
+        myMap = Map.read(scene, mapFile);
     }
     
     @Override
@@ -68,15 +96,66 @@ public class SailingGame extends Application2D {
         scene.reshape(width, height);
     }
     
+    @Override
+    protected boolean hasChanged() {
+        // Move the ships, and see whether that moved anything
+        if (scene == null)
+            return true;
+
+        if (myRecorder != null) {
+            try {
+                myRecorder.record(scene.getTime(), getInput());
+            } catch (IOException e) {
+                e.printStackTrace();
+                myRecorder = null;
+            }
+        }
+
+        // The input has just been read, so the ships see this frame's clicks
+        Mouse.theMouse.update(getInput(), scene.getCamera(), scene.getWidth(), scene.getHeight());
+        scene.update();
+
+        // Queue up the recorded input for the next frame
+        if (myReplay != null)
+            myReplay.play(scene.getTime(), getInput());
+        return scene.isChanged();
+    }
+
     @Override
     public void display(GL3 gl) {
         super.display(gl);
-        Mouse.theMouse.update(scene.getCamera(), getWindow());
         scene.draw(gl);
     }
 
     public static void main(String[] args) throws IOException {
         SailingGame game = new SailingGame();
+        if (args.length == 2 && args[0].equals("--replay")) {
+            InputStream in = new FileInputStream(args[1]);
+            game.myReplay = new InputReplay(in);
+            in.close();
+
+            int frames = (int) Math.ceil(game.myReplay.getEndTime() / REPLAY_STEP)
+                    + REPLAY_TAIL_FRAMES;
+            game.startHeadless(frames);
+            System.out.println("Replayed " + game.myReplay.getEvents() + " events in " + frames
+                    + " frames: " + game.getFrameTimes());
+            return;
+        }
+
+        if (args.length == 2 && args[0].equals("--record")) {
+            InputRecorder recorder = new InputRecorder(new FileOutputStream(args[1]));
+            game.myRecorder = recorder;
+
+            // The window closing exits straight away, so finish the recording on the way out
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        game.setOnDemand(true);
         game.start();
     }
 
@@ -2,8 +2,7 @@ package unsw.graphics.examples.sailing.objects;
 
 import java.awt.Color;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONReader;
 
 import unsw.graphics.geometry.Polygon2D;
 import unsw.graphics.scene.PolygonalSceneObject;
@@ -27,16 +26,28 @@ public class Island extends PolygonalSceneObject {
         setPosition(x, y);
     }
 
-    public static Island fromJSON(SceneObject parent, JSONObject json) {
-
-        float x = (float) json.getDouble("x");
-        float y = (float) json.getDouble("y");
-        JSONArray points = json.getJSONArray("polygon");
-
-        float[] polygon = new float[points.length()];
-        for (int i = 0; i < points.length(); i++) {
-            polygon[i] = (float) points.getDouble(i);
+    public static Island fromJSON(SceneObject parent, JSONReader reader) {
+
+        float x = Float.NaN;
+        float y = Float.NaN;
+        float[] polygon = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("x")) {
+                x = (float) reader.nextDouble();
+            } else if (name.equals("y")) {
+                y = (float) reader.nextDouble();
+            } else if (name.equals("polygon")) {
+                polygon = reader.nextFloatArray();
+            } else {
+                reader.skipValue();
+            }
         }
+        reader.endObject();
+        if (Float.isNaN(x) || Float.isNaN(y) || polygon == null)
+            throw reader.syntaxError("Expected x, y and polygon");
 
         return new Island(parent, x, y, new Polygon2D(polygon));
     }
@@ -2,7 +2,7 @@ package unsw.graphics.examples.sailing.objects;
 
 import java.awt.Color;
 
-import org.json.JSONObject;
+import org.json.JSONReader;
 
 import unsw.graphics.geometry.Polygon2D;
 import unsw.graphics.scene.PolygonalSceneObject;
@@ -42,18 +42,39 @@ public class Merchant extends PolygonalSceneObject {
 
         setPosition(x, y);
         setRotation(angle);
+
+        // the sail never moves relative to the hull, so draw them together
+        freeze();
     }
 
     /**
      * COMMENT: fromJSON
      * 
-     * @param jsonObject
+     * @param parent
+     * @param reader Positioned at the start of the merchant's object
      * @return
      */
-    public static Merchant fromJSON(SceneObject parent, JSONObject json) {
-        float x = (float) json.getDouble("x");
-        float y = (float) json.getDouble("y");
-        float angle = (float) json.getDouble("angle");
+    public static Merchant fromJSON(SceneObject parent, JSONReader reader) {
+        float x = Float.NaN;
+        float y = Float.NaN;
+        float angle = Float.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("x")) {
+                x = (float) reader.nextDouble();
+            } else if (name.equals("y")) {
+                y = (float) reader.nextDouble();
+            } else if (name.equals("angle")) {
+                angle = (float) reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (Float.isNaN(x) || Float.isNaN(y) || Float.isNaN(angle))
+            throw reader.syntaxError("Expected x, y and angle");
         
         return new Merchant(parent, x, y, angle);
     }
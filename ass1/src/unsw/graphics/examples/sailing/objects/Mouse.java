@@ -1,9 +1,6 @@
 package unsw.graphics.examples.sailing.objects;
 
-import com.jogamp.newt.Window;
-import com.jogamp.newt.event.MouseAdapter;
-import com.jogamp.newt.event.MouseEvent;
-
+import unsw.graphics.Input;
 import unsw.graphics.geometry.Point2D;
 import unsw.graphics.scene.Camera;
 
@@ -18,35 +15,25 @@ import unsw.graphics.scene.Camera;
  *
  * Mouse is a singleton class. There is only one instance, stored in Mouse.theMouse.
  * 
- * You need to add this object as a MouseListener and MouseMotionListener to your window to make it work:
+ * It reads the application's Input, so you need to update it once a frame:
  * 
- * getWindow().addMouseListener(Mouse.theMouse);
- * getWindow().addMouseMotionListener(Mouse.theMouse);
+ * Mouse.theMouse.update(getInput(), scene.getCamera(), width, height);
  *
  * @author malcolmr
  */
-public class Mouse extends MouseAdapter {
+public class Mouse {
 
     public static final Mouse theMouse = new Mouse();
     
-    private MouseEvent lastEvent;
     /**
      * The position of the mouse in world coordinates
      */
     private Point2D myPosition;
 
-    private boolean[] myPressed;
-    private boolean[] myReleased;
-    private boolean[] myWasPressed;
-    private boolean[] myWasReleased;
+    private Input myInput;
 
     private Mouse() {
         myPosition = new Point2D(0, 0);
-
-        myPressed = new boolean[3];
-        myReleased = new boolean[3];
-        myWasPressed = new boolean[3];
-        myWasReleased = new boolean[3];     
     }
 
     /**
@@ -62,23 +49,21 @@ public class Mouse extends MouseAdapter {
      * When the view is updated, compute and store the position of the mouse in the world coordinate
      * frame.
      *
-     * Update any mouse presses or releases that have happened.
+     * Mouse presses and releases are read from the input, which has already been updated this
+     * frame.
      * 
-     * @param gl
+     * @param input
+     * @param camera
+     * @param width The width of the window, in pixels
+     * @param height The height of the window, in pixels
      */
-    public void update(Camera camera, Window window) {
-        if (lastEvent != null) {
-            float x = 2f*lastEvent.getX()/window.getSurfaceWidth() - 1f;
-            float y = -2f*lastEvent.getY()/window.getSurfaceHeight() + 1f;
+    public void update(Input input, Camera camera, int width, int height) {
+        myInput = input;
+        if (input.hasMouse()) {
+            float x = 2f*input.getMouseX()/width - 1f;
+            float y = -2f*input.getMouseY()/height + 1f;
             myPosition = camera.fromView(x, y);
         }
-        
-        for (int i = 0; i < 3; i++) {
-            myWasPressed[i] = myPressed[i];
-            myWasReleased[i] = myReleased[i];
-            myPressed[i] = false;
-            myReleased[i] = false;            
-        }
     }
 
     /**
@@ -90,46 +75,6 @@ public class Mouse extends MouseAdapter {
         return myPosition;
     }
 
-    /**
-     * Store mouse movement events to record the latest mouse position.
-     * 
-     * @see java.awt.event.MouseAdapter#mouseMoved(java.awt.event.MouseEvent)
-     */
-    @Override
-    public void mouseMoved(MouseEvent e) {
-        lastEvent = e;
-    }
-
-    /**
-     * Store mouse movement events to record the latest mouse position.
-     *
-     * @see java.awt.event.MouseAdapter#mouseDragged(java.awt.event.MouseEvent)
-     */
-    @Override
-    public void mouseDragged(MouseEvent e) {
-        lastEvent = e;
-    }
-
-    /**
-     * Store the most recent mouse press event for each of the buttons.
-     *  
-     * @see java.awt.event.MouseAdapter#mousePressed(java.awt.event.MouseEvent)
-     */
-    @Override
-    public void mousePressed(MouseEvent e) {
-        myPressed[e.getButton()-1] = true;
-    }
-
-    /**
-     * Store the most recent mouse press release for each of the buttons.
-     * 
-     * @see java.awt.event.MouseAdapter#mouseReleased(java.awt.event.MouseEvent)
-     */
-    @Override
-    public void mouseReleased(MouseEvent e) {
-        myReleased[e.getButton()-1] = true;
-    }
-
     /**
      * Returns true if the specified mouse button was pressed this frame.
      * 
@@ -137,7 +82,7 @@ public class Mouse extends MouseAdapter {
      * @return
      */
     public boolean wasPressed(int button) {
-        return myWasPressed[button-1];
+        return myInput != null && myInput.wasButtonPressed(button);
     }
 
     /**
@@ -147,7 +92,7 @@ public class Mouse extends MouseAdapter {
      * @return
      */
     public boolean wasReleased(int button) {
-        return myWasReleased[button-1];
+        return myInput != null && myInput.wasButtonReleased(button);
     }
 
 }
@@ -2,7 +2,7 @@ package unsw.graphics.examples.sailing.objects;
 
 import java.awt.Color;
 
-import org.json.JSONObject;
+import org.json.JSONReader;
 
 import com.jogamp.newt.event.MouseEvent;
 
@@ -113,13 +113,31 @@ public class Pirate extends PolygonalSceneObject {
     /**
      * COMMENT: fromJSON
      * 
-     * @param jsonPlayer
+     * @param parent
+     * @param reader Positioned at the start of the pirate's object
      * @return
      */
-    public static Pirate fromJSON(SceneObject parent, JSONObject json) {
-        float x = (float) json.getDouble("x");
-        float y = (float) json.getDouble("y");
-        float angle = (float) json.getDouble("angle");
+    public static Pirate fromJSON(SceneObject parent, JSONReader reader) {
+        float x = Float.NaN;
+        float y = Float.NaN;
+        float angle = Float.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("x")) {
+                x = (float) reader.nextDouble();
+            } else if (name.equals("y")) {
+                y = (float) reader.nextDouble();
+            } else if (name.equals("angle")) {
+                angle = (float) reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (Float.isNaN(x) || Float.isNaN(y) || Float.isNaN(angle))
+            throw reader.syntaxError("Expected x, y and angle");
         
         return new Pirate(parent, x, y, angle);
     }
@@ -8,7 +8,9 @@ import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
 import unsw.graphics.Point2DBuffer;
+import unsw.graphics.Profiler;
 import unsw.graphics.Shader;
+import unsw.graphics.StreamingBuffer;
 
 /**
  * A line in 2D space.
@@ -58,16 +60,12 @@ public class Line2D {
         buffer.put(0, start);
         buffer.put(1, end);
         
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, 2*2*Float.BYTES, buffer.getBuffer(), GL.GL_STATIC_DRAW);
+        int offset = StreamingBuffer.get(gl).write(gl, buffer.getBuffer(), 2*2*Float.BYTES);
         
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, offset);
         Shader.setModelMatrix(gl, frame.getMatrix());
         gl.glDrawArrays(GL.GL_LINES, 0, 2);
-        
-        gl.glDeleteBuffers(1, names, 0);
+        Profiler.countDraw(2);
     }
     
     /**
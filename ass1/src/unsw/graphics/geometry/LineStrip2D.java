@@ -11,7 +11,9 @@ import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
 import unsw.graphics.Point2DBuffer;
+import unsw.graphics.Profiler;
 import unsw.graphics.Shader;
+import unsw.graphics.StreamingBuffer;
 
 /**
  * A line strip in 2D space.
@@ -67,17 +69,13 @@ public class LineStrip2D {
     public void draw(GL3 gl, CoordFrame2D frame) {
         Point2DBuffer buffer = new Point2DBuffer(points);
 
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 2 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
+        int offset = StreamingBuffer.get(gl).write(gl, buffer.getBuffer(),
+                points.size() * 2 * Float.BYTES);
 
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, offset);
         Shader.setModelMatrix(gl, frame.getMatrix());
         gl.glDrawArrays(GL.GL_LINE_STRIP, 0, points.size());
-
-        gl.glDeleteBuffers(1, names, 0);
+        Profiler.countDraw(points.size());
     }
     
     /**
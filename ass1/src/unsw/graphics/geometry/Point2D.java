@@ -5,7 +5,9 @@ import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
 import unsw.graphics.Point2DBuffer;
+import unsw.graphics.Profiler;
 import unsw.graphics.Shader;
+import unsw.graphics.StreamingBuffer;
 import unsw.graphics.Vector3;
 
 /**
@@ -41,19 +43,12 @@ public class Point2D {
     public void draw(GL3 gl, CoordFrame2D frame) {
         Point2DBuffer buffer = new Point2DBuffer(1);
         buffer.put(0, this);
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
+        int offset = StreamingBuffer.get(gl).write(gl, buffer.getBuffer(), 2 * Float.BYTES);
 
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, 2 * Float.BYTES, buffer.getBuffer(),
-                GL.GL_STATIC_DRAW);
-
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, offset);
         Shader.setModelMatrix(gl, frame.getMatrix());
         gl.glDrawArrays(GL.GL_POINTS, 0, 1);
-
-        gl.glDeleteBuffers(1, names, 0);
+        Profiler.countDraw(1);
     }
     
     /**
@@ -3,20 +3,35 @@
  */
 package unsw.graphics.geometry;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.util.GLBuffers;
 
 import unsw.graphics.CoordFrame2D;
 import unsw.graphics.Point2DBuffer;
+import unsw.graphics.Profiler;
 import unsw.graphics.Shader;
 
 /**
- * A convex polygon in 2D space.
+ * A polygon in 2D space.
  * 
- * This class is immutable.
+ * The polygon does not need to be convex, but its edges should not cross. It is split into
+ * triangles (by ear clipping) when it is constructed, so it can be drawn as an indexed list of
+ * triangles. Its outline is likewise stored as an indexed list of line segments. Unlike fans and
+ * loops, these lists can be concatenated, so many polygons can be drawn with a single
+ * glDrawElements() call.
+ * 
+ * The first time the polygon is drawn, its vertices and indices are uploaded to a vertex buffer
+ * and an element buffer of its own, which later draws reuse. Call destroy() to free them.
+ * 
+ * The points of the polygon are immutable, so the buffers never need to be uploaded again
+ * (unless it is drawn in a different OpenGL context).
  * 
  * @author Robert Clifton-Everest
  *
@@ -24,8 +39,22 @@ import unsw.graphics.Shader;
 public class Polygon2D {
     private List<Point2D> points;
 
+    // Cached buffers for drawing
+    private Point2DBuffer vertices;
+    private IntBuffer triangleIndices;
+    private IntBuffer outlineIndices;
+
+    // The buffers on the GPU, and the context they belong to, or null if not uploaded yet
+    private GLContext context;
+    private int vertexBuffer;
+    private int indexBuffer;
+
+    // The bounding box of the vertices
+    private float minX, minY, maxX, maxY;
+
     public Polygon2D(List<Point2D> points) {
         this.points = new ArrayList<Point2D>(points);
+        init();
     }
     
     /**
@@ -47,6 +76,22 @@ public class Polygon2D {
             points.add(new Point2D(values[2*i], values[2*i + 1]));
         }
         this.points = points;
+        init();
+    }
+
+    private void init() {
+        vertices = new Point2DBuffer(points);
+        triangleIndices = GLBuffers.newDirectIntBuffer(triangulate(points));
+        outlineIndices = GLBuffers.newDirectIntBuffer(outline(points.size()));
+
+        minX = minY = Float.POSITIVE_INFINITY;
+        maxX = maxY = Float.NEGATIVE_INFINITY;
+        for (Point2D p : points) {
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
     }
 
     /**
@@ -54,40 +99,178 @@ public class Polygon2D {
      * @param gl
      */
     public void draw(GL3 gl, CoordFrame2D frame) {
-        Point2DBuffer buffer = new Point2DBuffer(points);
+        drawElements(gl, frame, GL.GL_TRIANGLES, triangleIndices);
+    }
+    
+    /**
+     * Draw the outline of the polygon in the given coordinate frame.
+     * @param gl
+     */
+    public void drawOutline(GL3 gl, CoordFrame2D frame) {
+        drawElements(gl, frame, GL.GL_LINES, outlineIndices);
+    }
+
+    private void drawElements(GL3 gl, CoordFrame2D frame, int mode, IntBuffer indices) {
+        if (indices.capacity() == 0)
+            return;
+
+        if (context != gl.getContext())
+            upload(gl);
 
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 2 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
+        // The outline indices come after the triangle indices in the element buffer
+        int first = indices == outlineIndices ? triangleIndices.capacity() : 0;
 
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBuffer);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
         gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
         Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_TRIANGLE_FAN, 0, points.size());
+        gl.glDrawElements(mode, indices.capacity(), GL.GL_UNSIGNED_INT,
+                (long) first * Integer.BYTES);
+        Profiler.countDraw(indices.capacity());
+    }
+
+    /**
+     * Copy the vertices and indices into new buffers in the current context.
+     */
+    private void upload(GL3 gl) {
+        IntBuffer indices = GLBuffers.newDirectIntBuffer(triangleIndices.capacity()
+                + outlineIndices.capacity());
+        indices.put(triangleIndices.duplicate());
+        indices.put(outlineIndices.duplicate());
+        indices.rewind();
+
+        int[] names = new int[2];
+        gl.glGenBuffers(2, names, 0);
+        vertexBuffer = names[0];
+        indexBuffer = names[1];
+        context = gl.getContext();
+
+        int vertexSize = points.size() * 2 * Float.BYTES;
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBuffer);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, vertexSize, vertices.getBuffer(), GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, indices.capacity() * Integer.BYTES, indices,
+                GL.GL_STATIC_DRAW);
+        Profiler.count(Profiler.Counter.UPLOADED_BYTES,
+                vertexSize + (long) indices.capacity() * Integer.BYTES);
+    }
+
+    /**
+     * Free the buffers the polygon was uploaded to. It is uploaded again if it is drawn after
+     * this.
+     * 
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (context == null)
+            return;
+        gl.glDeleteBuffers(2, new int[] { vertexBuffer, indexBuffer }, 0);
+        vertexBuffer = 0;
+        indexBuffer = 0;
+        context = null;
+    }
 
-        gl.glDeleteBuffers(1, names, 0);
+    /**
+     * Check whether the polygon currently has buffers on the GPU.
+     * 
+     * @return
+     */
+    public boolean isUploaded() {
+        return context != null;
     }
     
-    public void drawOutline(GL3 gl, CoordFrame2D frame) {
-        // TODO: You need to write this method.
-        // It should draw an outline of a polygon using GL_LINE_LOOP
+    /**
+     * Get the vertices of the polygon.
+     * 
+     * @return An unmodifiable view of the vertices
+     */
+    public List<Point2D> getPoints() {
+        return Collections.unmodifiableList(points);
+    }
 
-        Point2DBuffer buffer = new Point2DBuffer(points);
+    /**
+     * Get the smallest x coordinate of any vertex.
+     * 
+     * @return
+     */
+    public float getMinX() {
+        return minX;
+    }
 
-        int[] names = new int[1];
-        gl.glGenBuffers(1, names, 0);
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
-        gl.glBufferData(GL.GL_ARRAY_BUFFER, points.size() * 2 * Float.BYTES,
-                buffer.getBuffer(), GL.GL_STATIC_DRAW);
+    /**
+     * Get the smallest y coordinate of any vertex.
+     * 
+     * @return
+     */
+    public float getMinY() {
+        return minY;
+    }
 
-        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 0, 0);
-        Shader.setModelMatrix(gl, frame.getMatrix());
-        gl.glDrawArrays(GL.GL_LINE_LOOP, 0, points.size());
+    /**
+     * Get the largest x coordinate of any vertex.
+     * 
+     * @return
+     */
+    public float getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Get the largest y coordinate of any vertex.
+     * 
+     * @return
+     */
+    public float getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Check whether a point is inside the polygon. Points exactly on an edge may be counted
+     * either way.
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean contains(float x, float y) {
+        if (x < minX || x > maxX || y < minY || y > maxY)
+            return false;
 
-        gl.glDeleteBuffers(1, names, 0);
+        // Count how many edges a ray going right from the point crosses
+        boolean inside = false;
+        Point2D previous = points.get(points.size() - 1);
+        for (Point2D p : points) {
+            if ((p.getY() > y) != (previous.getY() > y)) {
+                float crossing = p.getX() + (y - p.getY()) * (previous.getX() - p.getX())
+                        / (previous.getY() - p.getY());
+                if (x < crossing)
+                    inside = !inside;
+            }
+            previous = p;
+        }
+        return inside;
     }
-    
+
+    /**
+     * Get the triangles that make up the polygon, as indices into getPoints(). Every 3 indices
+     * form a triangle.
+     * 
+     * @return A copy of the indices
+     */
+    public int[] getTriangleIndices() {
+        return toArray(triangleIndices);
+    }
+
+    /**
+     * Get the line segments that make up the outline of the polygon, as indices into
+     * getPoints(). Every 2 indices form a segment.
+     * 
+     * @return A copy of the indices
+     */
+    public int[] getOutlineIndices() {
+        return toArray(outlineIndices);
+    }
+
     /**
      * Draw the polygon on the canvas.
      * @param gl
@@ -96,4 +279,128 @@ public class Polygon2D {
         draw(gl, CoordFrame2D.identity());
     }
 
+    private static int[] toArray(IntBuffer buffer) {
+        int[] array = new int[buffer.capacity()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = buffer.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Compute the indices of the segments joining each vertex to the next, wrapping around to
+     * the first.
+     */
+    private static int[] outline(int n) {
+        if (n < 2)
+            return new int[0];
+        if (n == 2)
+            return new int[] { 0, 1 };
+        int[] indices = new int[n * 2];
+        for (int i = 0; i < n; i++) {
+            indices[2*i] = i;
+            indices[2*i + 1] = (i + 1) % n;
+        }
+        return indices;
+    }
+
+    /**
+     * Split a simple polygon into triangles by ear clipping.
+     * 
+     * An "ear" is a convex corner whose triangle contains no other vertex of the polygon. Every
+     * simple polygon with more than 3 vertices has one, so we can repeatedly cut off ears until
+     * only a triangle remains.
+     * 
+     * If the polygon is degenerate (e.g. it crosses itself) and no ear can be found, a corner is
+     * cut off anyway so that this always terminates.
+     * 
+     * @param points
+     * @return (n-2)*3 indices into points, or none if there are fewer than 3 points
+     */
+    static int[] triangulate(List<Point2D> points) {
+        int n = points.size();
+        if (n < 3)
+            return new int[0];
+
+        // Work out whether the polygon is clockwise or anticlockwise, so we know which way a
+        // convex corner turns.
+        float area = 0;
+        for (int i = 0; i < n; i++) {
+            Point2D p = points.get(i);
+            Point2D q = points.get((i + 1) % n);
+            area += p.getX() * q.getY() - q.getX() * p.getY();
+        }
+        float orientation = area < 0 ? -1 : 1;
+
+        // The vertices that haven't been cut off yet
+        int[] remaining = new int[n];
+        for (int i = 0; i < n; i++) {
+            remaining[i] = i;
+        }
+        int count = n;
+
+        int[] triangles = new int[(n - 2) * 3];
+        int t = 0;
+
+        int i = 0;
+        int failures = 0;
+        while (count > 3) {
+            int prev = remaining[(i + count - 1) % count];
+            int curr = remaining[i];
+            int next = remaining[(i + 1) % count];
+
+            if (failures >= count || isEar(points, remaining, count, prev, curr, next,
+                    orientation)) {
+                triangles[t++] = prev;
+                triangles[t++] = curr;
+                triangles[t++] = next;
+
+                System.arraycopy(remaining, i + 1, remaining, i, count - i - 1);
+                count--;
+                if (i >= count)
+                    i = 0;
+                failures = 0;
+            } else {
+                i = (i + 1) % count;
+                failures++;
+            }
+        }
+        triangles[t++] = remaining[0];
+        triangles[t++] = remaining[1];
+        triangles[t++] = remaining[2];
+
+        return triangles;
+    }
+
+    private static boolean isEar(List<Point2D> points, int[] remaining, int count, int prev,
+            int curr, int next, float orientation) {
+        Point2D a = points.get(prev);
+        Point2D b = points.get(curr);
+        Point2D c = points.get(next);
+
+        // The corner must be convex
+        if (orientation * cross(a, b, c) <= 0)
+            return false;
+
+        // No other vertex can be inside the triangle
+        for (int j = 0; j < count; j++) {
+            int k = remaining[j];
+            if (k == prev || k == curr || k == next)
+                continue;
+            Point2D p = points.get(k);
+            if (orientation * cross(a, b, p) >= 0 && orientation * cross(b, c, p) >= 0
+                    && orientation * cross(c, a, p) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The z component of (b - a) x (c - b). Positive if a, b, c turn anticlockwise.
+     */
+    private static float cross(Point2D a, Point2D b, Point2D c) {
+        return (b.getX() - a.getX()) * (c.getY() - b.getY())
+                - (b.getY() - a.getY()) * (c.getX() - b.getX());
+    }
+
 }
@@ -0,0 +1,282 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.ReleaseQueue;
+import unsw.graphics.Shader;
+
+/**
+ * A scene object that draws the PolygonalSceneObjects below it in batches.
+ *
+ * The fills of up to 256 polygons are packed into one vertex buffer and drawn with a single
+ * glMultiDrawArrays() call, and likewise for their outlines. Colors are stored per vertex, so
+ * polygons of any color share a batch. Each polygon's model matrix is looked up in a uniform
+ * buffer, so the objects can still move freely and only their matrices are uploaded each frame.
+ * This makes scenes with many PolygonalSceneObjects much cheaper to draw, without changing the
+ * objects themselves.
+ *
+ * All the fills are drawn first, then all the outlines, then any other descendants (which are
+ * drawn normally). So outlines may overlap fills in a different order than they would outside a
+ * batch.
+ *
+ * PolygonalSceneObjects are drawn from their shape and colors, so subclasses that override
+ * drawSelf() should not be put in a batch. Frozen descendants, and CachedSceneObjects, are drawn
+ * normally along with their whole subtree.
+ */
+public class BatchedSceneObject extends SceneObject implements ReleaseQueue.Resource {
+
+    private static final String VERTEX_SHADER = "shaders/vertex_multi_2d.glsl";
+    private static final String FRAGMENT_SHADER = "shaders/fragment_color_2d.glsl";
+
+    // The objects in the batches, and where each one is in them
+    private List<PolygonalSceneObject> myObjects;
+    private List<Color> myFillColors;
+    private List<Color> myLineColors;
+    private List<PolygonBatch> myFillBatches;
+    private List<PolygonBatch> myLineBatches;
+    private int[] myFillBatch;
+    private int[] myFillIndex;
+    private int[] myLineBatch;
+    private int[] myLineIndex;
+
+    // Where the batches are freed once this object is destroyed
+    private ReleaseQueue myReleaseQueue;
+
+    // Collected while walking the tree each frame
+    private List<PolygonalSceneObject> myFound;
+    private List<CoordFrame2D> myFoundFrames;
+    private List<SceneObject> myOthers;
+    private List<CoordFrame2D> myOtherFrames;
+    private List<Boolean> myOtherIsSubtree;
+
+    /**
+     * Create a batching container and add it to the scene tree.
+     *
+     * @param parent
+     */
+    public BatchedSceneObject(SceneObject parent) {
+        super(parent);
+        myObjects = new ArrayList<PolygonalSceneObject>();
+        myFillColors = new ArrayList<Color>();
+        myLineColors = new ArrayList<Color>();
+        myFillBatches = new ArrayList<PolygonBatch>();
+        myLineBatches = new ArrayList<PolygonBatch>();
+        myFillBatch = new int[0];
+        myFillIndex = new int[0];
+        myLineBatch = new int[0];
+        myLineIndex = new int[0];
+
+        myFound = new ArrayList<PolygonalSceneObject>();
+        myFoundFrames = new ArrayList<CoordFrame2D>();
+        myOthers = new ArrayList<SceneObject>();
+        myOtherFrames = new ArrayList<CoordFrame2D>();
+        myOtherIsSubtree = new ArrayList<Boolean>();
+    }
+
+    /**
+     * Get the number of draw calls used to draw the batched polygons.
+     *
+     * @return
+     */
+    public int getBatchCount() {
+        return myFillBatches.size() + myLineBatches.size();
+    }
+
+    /**
+     * Draw the object, and its descendants in batches.
+     */
+    @Override
+    protected void drawTree(GL3 gl, CoordFrame2D frame) {
+        CoordFrame2D transform = localFrame(frame);
+        drawSelf(gl, transform);
+
+        myFound.clear();
+        myFoundFrames.clear();
+        myOthers.clear();
+        myOtherFrames.clear();
+        myOtherIsSubtree.clear();
+        for (SceneObject child : getChildren()) {
+            collect(child, transform);
+        }
+
+        if (!isUpToDate()) {
+            rebuild(gl);
+        }
+
+        for (int i = 0; i < myObjects.size(); i++) {
+            myFillBatches.get(myFillBatch[i]).setMatrix(myFillIndex[i],
+                    myFoundFrames.get(i).getMatrix());
+            if (myLineBatch[i] >= 0) {
+                myLineBatches.get(myLineBatch[i]).setMatrix(myLineIndex[i],
+                        myFoundFrames.get(i).getMatrix());
+            }
+        }
+
+        int[] previousProgram = new int[1];
+        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, previousProgram, 0);
+        Shader.shared(gl, VERTEX_SHADER, FRAGMENT_SHADER).use(gl);
+
+        for (PolygonBatch batch : myFillBatches) {
+            batch.draw(gl);
+        }
+        for (PolygonBatch batch : myLineBatches) {
+            batch.draw(gl);
+        }
+
+        gl.glUseProgram(previousProgram[0]);
+
+        for (int i = 0; i < myOthers.size(); i++) {
+            if (myOtherIsSubtree.get(i)) {
+                myOthers.get(i).draw(gl, myOtherFrames.get(i));
+            } else {
+                myOthers.get(i).drawSelf(gl, myOtherFrames.get(i));
+            }
+        }
+    }
+
+    /**
+     * Add this object to a render queue, to be drawn along with its descendants.
+     */
+    @Override
+    public void enqueue(RenderQueue queue, CoordFrame2D frame) {
+        if (isShowing()) {
+            queue.addSubtree(this, frame, RenderQueue.state(RenderQueue.MULTI_SHADER, 0, null));
+        }
+    }
+
+    /**
+     * Remove the object from the scene tree. The batches are freed the next time a frame is
+     * drawn.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (myReleaseQueue != null)
+            myReleaseQueue.add(this);
+    }
+
+    /**
+     * Free the OpenGL resources used by the batches. They will be recreated if this object is
+     * drawn again.
+     *
+     * @param gl
+     */
+    @Override
+    public void release(GL3 gl) {
+        for (PolygonBatch batch : myFillBatches) {
+            batch.destroy(gl);
+        }
+        for (PolygonBatch batch : myLineBatches) {
+            batch.destroy(gl);
+        }
+        myFillBatches.clear();
+        myLineBatches.clear();
+        myObjects.clear();
+        myFillColors.clear();
+        myLineColors.clear();
+    }
+
+    /**
+     * Find the showing descendants and their frames.
+     *
+     * @param object
+     * @param frame The frame of the object's parent
+     */
+    private void collect(SceneObject object, CoordFrame2D frame) {
+        if (!object.isShowing())
+            return;
+
+        if (object.isFrozen() || object instanceof CachedSceneObject
+                || object instanceof BatchedSceneObject) {
+            // These draw their own subtrees
+            myOthers.add(object);
+            myOtherFrames.add(frame);
+            myOtherIsSubtree.add(true);
+            return;
+        }
+
+        CoordFrame2D transform = object.localFrame(frame);
+        if (object instanceof PolygonalSceneObject) {
+            myFound.add((PolygonalSceneObject) object);
+            myFoundFrames.add(transform);
+        } else {
+            myOthers.add(object);
+            myOtherFrames.add(transform);
+            myOtherIsSubtree.add(false);
+        }
+
+        for (SceneObject child : object.getChildren()) {
+            collect(child, transform);
+        }
+    }
+
+    /**
+     * Check whether the batches still contain exactly the objects found this frame, with the
+     * same colors.
+     */
+    private boolean isUpToDate() {
+        if (myFound.size() != myObjects.size())
+            return false;
+        for (int i = 0; i < myFound.size(); i++) {
+            PolygonalSceneObject object = myFound.get(i);
+            if (object != myObjects.get(i)
+                    || !Objects.equals(object.getFillColor(), myFillColors.get(i))
+                    || !Objects.equals(object.getLineColor(), myLineColors.get(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pack the objects found this frame into batches.
+     */
+    private void rebuild(GL3 gl) {
+        release(gl);
+        myReleaseQueue = ReleaseQueue.get(gl);
+
+        int n = myFound.size();
+        myFillBatch = new int[n];
+        myFillIndex = new int[n];
+        myLineBatch = new int[n];
+        myLineIndex = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            PolygonalSceneObject object = myFound.get(i);
+            myObjects.add(object);
+            myFillColors.add(object.getFillColor());
+            myLineColors.add(object.getLineColor());
+
+            // Unfilled polygons are drawn in black, as in PolygonalSceneObject.drawSelf()
+            Color fill = object.getFillColor() != null ? object.getFillColor() : Color.BLACK;
+            myFillBatch[i] = openBatch(myFillBatches, GL.GL_TRIANGLES);
+            myFillIndex[i] = myFillBatches.get(myFillBatch[i]).add(object.getShape(), fill);
+
+            Color line = object.getLineColor();
+            if (line != null) {
+                myLineBatch[i] = openBatch(myLineBatches, GL.GL_LINE_LOOP);
+                myLineIndex[i] = myLineBatches.get(myLineBatch[i]).add(object.getShape(), line);
+            } else {
+                myLineBatch[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * Find a batch with room in it, creating one if necessary.
+     *
+     * @return The index of the batch in the list
+     */
+    private static int openBatch(List<PolygonBatch> batches, int mode) {
+        if (batches.isEmpty() || batches.get(batches.size() - 1).isFull()) {
+            batches.add(new PolygonBatch(mode));
+        }
+        return batches.size() - 1;
+    }
+}
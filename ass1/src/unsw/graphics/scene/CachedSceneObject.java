@@ -0,0 +1,382 @@
+package unsw.graphics.scene;
+
+import java.nio.FloatBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Matrix3;
+import unsw.graphics.Profiler;
+import unsw.graphics.ReleaseQueue;
+import unsw.graphics.Shader;
+import unsw.graphics.Vector3;
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * A scene object that draws its descendants through a cached texture.
+ *
+ * The first time it is drawn, all of its descendants are rendered into an offscreen texture at
+ * the resolution they currently cover on the screen. After that the whole subtree is drawn as a
+ * single textured quad.
+ *
+ * The cache is rebuilt when any descendant changes (its transform, its colors, or the shape of
+ * the tree), or when the on-screen scale of the subtree has changed by more than the zoom
+ * threshold. Moving or rotating the CachedSceneObject itself doesn't invalidate the cache.
+ *
+ * This is intended for static decoration, like islands, that would otherwise be redrawn polygon
+ * by polygon every frame. Because the texture is rebuilt whenever something changes, it is a poor
+ * fit for subtrees that animate.
+ */
+public class CachedSceneObject extends SceneObject implements ReleaseQueue.Resource {
+
+    /**
+     * By default, the cache is rebuilt when the scale changes by 50%.
+     */
+    public static final float DEFAULT_ZOOM_THRESHOLD = 1.5f;
+
+    private static final int MAX_TEXTURE_SIZE = 4096;
+
+    private float myZoomThreshold;
+
+    // OpenGL names for the cache, or 0 if they haven't been created
+    private int myFramebuffer;
+    private int myTexture;
+    private int myQuadBuffer;
+
+    // Where the cache is freed once this object is destroyed
+    private ReleaseQueue myReleaseQueue;
+
+    private int myTextureWidth;
+    private int myTextureHeight;
+
+    // The state the cache was built for
+    private boolean amCached;
+    private long myCachedVersion;
+    private float myCachedScaleX;
+    private float myCachedScaleY;
+
+    /**
+     * Create a cached container and add it to the scene tree.
+     *
+     * @param parent
+     */
+    public CachedSceneObject(SceneObject parent) {
+        super(parent);
+        myZoomThreshold = DEFAULT_ZOOM_THRESHOLD;
+        amCached = false;
+    }
+
+    /**
+     * Get the zoom threshold.
+     *
+     * @return
+     */
+    public float getZoomThreshold() {
+        return myZoomThreshold;
+    }
+
+    /**
+     * Set how far the on-screen scale can change before the cache is rebuilt. e.g. a threshold of
+     * 2 means the cache is rebuilt when the subtree appears twice as big, or half as big, as it
+     * did when the cache was last built.
+     *
+     * @param threshold A value greater than 1
+     */
+    public void setZoomThreshold(float threshold) {
+        if (threshold <= 1)
+            throw new IllegalArgumentException("Zoom threshold must be greater than 1");
+        myZoomThreshold = threshold;
+    }
+
+    /**
+     * Force the cache to be rebuilt the next time this object is drawn.
+     */
+    public void invalidateCache() {
+        amCached = false;
+    }
+
+    /**
+     * Draw the object, and its descendants via the cache.
+     */
+    @Override
+    protected void drawTree(GL3 gl, CoordFrame2D frame) {
+        CoordFrame2D transform = localFrame(frame);
+        drawSelf(gl, transform);
+
+        // How many pixels a unit in our coordinate frame currently covers
+        int[] viewport = new int[4];
+        gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+        float[] m = Shader.getViewMatrix().multiply(transform.getMatrix()).getValues();
+        float scaleX = (float) Math.hypot(m[0], m[1]) * viewport[2] / 2;
+        float scaleY = (float) Math.hypot(m[3], m[4]) * viewport[3] / 2;
+
+        if (!isCacheValid(scaleX, scaleY)) {
+            rebuild(gl, scaleX, scaleY, viewport);
+        }
+
+        if (myTexture != 0) {
+            drawQuad(gl, transform);
+        }
+    }
+
+    /**
+     * The cached texture is blended over what is behind it, so it is never opaque.
+     */
+    @Override
+    public boolean isOpaque() {
+        return false;
+    }
+
+    /**
+     * Add this object to a render queue, to be drawn along with its descendants.
+     */
+    @Override
+    public void enqueue(RenderQueue queue, CoordFrame2D frame) {
+        if (isShowing()) {
+            queue.addSubtree(this, frame, RenderQueue.state(RenderQueue.TEXTURE_SHADER, 0, null));
+        }
+    }
+
+    /**
+     * Remove the object from the scene tree. The cache is freed the next time a frame is drawn.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (myReleaseQueue != null)
+            myReleaseQueue.add(this);
+    }
+
+    /**
+     * Check whether the cache currently holds a texture.
+     *
+     * @return
+     */
+    public boolean hasTexture() {
+        return myTexture != 0;
+    }
+
+    /**
+     * Free the OpenGL resources used by the cache. The cache will be recreated if this object is
+     * drawn again.
+     *
+     * @param gl
+     */
+    @Override
+    public void release(GL3 gl) {
+        if (myTexture != 0) {
+            gl.glDeleteTextures(1, new int[] { myTexture }, 0);
+            gl.glDeleteFramebuffers(1, new int[] { myFramebuffer }, 0);
+            gl.glDeleteBuffers(1, new int[] { myQuadBuffer }, 0);
+            myTexture = 0;
+            myFramebuffer = 0;
+            myQuadBuffer = 0;
+        }
+        amCached = false;
+    }
+
+    private boolean isCacheValid(float scaleX, float scaleY) {
+        if (!amCached || myCachedVersion != getDescendantVersion())
+            return false;
+
+        // Nothing was drawn, so the scale doesn't matter
+        if (myTexture == 0)
+            return true;
+
+        float ratioX = scaleX / myCachedScaleX;
+        float ratioY = scaleY / myCachedScaleY;
+        return ratioX < myZoomThreshold && ratioX > 1 / myZoomThreshold
+                && ratioY < myZoomThreshold && ratioY > 1 / myZoomThreshold;
+    }
+
+    /**
+     * Render the descendants into the texture.
+     */
+    private void rebuild(GL3 gl, float scaleX, float scaleY, int[] viewport) {
+        amCached = true;
+        myCachedVersion = getDescendantVersion();
+        myCachedScaleX = scaleX;
+        myCachedScaleY = scaleY;
+
+        float[] bounds = computeBounds();
+        if (bounds == null || scaleX <= 0 || scaleY <= 0) {
+            // Nothing to draw
+            release(gl);
+            amCached = true;
+            return;
+        }
+
+        // Leave a pixel of space around the edge so outlines aren't clipped
+        bounds[0] -= 1 / scaleX;
+        bounds[1] -= 1 / scaleY;
+        bounds[2] += 1 / scaleX;
+        bounds[3] += 1 / scaleY;
+
+        int width = (int) Math.ceil((bounds[2] - bounds[0]) * scaleX);
+        int height = (int) Math.ceil((bounds[3] - bounds[1]) * scaleY);
+        width = Math.max(1, Math.min(MAX_TEXTURE_SIZE, width));
+        height = Math.max(1, Math.min(MAX_TEXTURE_SIZE, height));
+
+        createTarget(gl, width, height);
+        updateQuad(gl, bounds);
+
+        // Remember the state we're about to change
+        int[] previousFramebuffer = new int[1];
+        gl.glGetIntegerv(GL.GL_FRAMEBUFFER_BINDING, previousFramebuffer, 0);
+        Matrix3 previousView = Shader.getViewMatrix();
+
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, myFramebuffer);
+        gl.glViewport(0, 0, width, height);
+        gl.glClearColor(0, 0, 0, 0);
+        gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+
+        // A view that maps the bounds onto the whole texture
+        float boundsWidth = bounds[2] - bounds[0];
+        float boundsHeight = bounds[3] - bounds[1];
+        Matrix3 view = Matrix3.scale(2 / boundsWidth, 2 / boundsHeight)
+                .multiply(Matrix3.translation(-(bounds[0] + bounds[2]) / 2,
+                        -(bounds[1] + bounds[3]) / 2));
+        Shader.setViewMatrix(gl, view);
+
+        for (SceneObject child : getChildren()) {
+            child.draw(gl, CoordFrame2D.identity());
+        }
+
+        // Put everything back
+        Shader.setViewMatrix(gl, previousView);
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, previousFramebuffer[0]);
+        gl.glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+    }
+
+    /**
+     * Compute the bounding box of all the (showing) descendants in this object's coordinate
+     * frame.
+     *
+     * @return {minX, minY, maxX, maxY}, or null if there is nothing to draw
+     */
+    private float[] computeBounds() {
+        float[] bounds = null;
+        for (SceneObject child : getChildren()) {
+            bounds = extendBounds(bounds, child, CoordFrame2D.identity());
+        }
+        return bounds;
+    }
+
+    private static float[] extendBounds(float[] bounds, SceneObject object,
+            CoordFrame2D frame) {
+        if (!object.isShowing())
+            return bounds;
+
+        CoordFrame2D transform = object.localFrame(frame);
+        Polygon2D shape = object.getShape();
+        if (shape != null) {
+            Matrix3 m = transform.getMatrix();
+            for (Point2D p : shape.getPoints()) {
+                Point2D q = m.multiply(new Vector3(p.getX(), p.getY(), 1)).asPoint2D();
+                if (bounds == null) {
+                    bounds = new float[] { q.getX(), q.getY(), q.getX(), q.getY() };
+                } else {
+                    bounds[0] = Math.min(bounds[0], q.getX());
+                    bounds[1] = Math.min(bounds[1], q.getY());
+                    bounds[2] = Math.max(bounds[2], q.getX());
+                    bounds[3] = Math.max(bounds[3], q.getY());
+                }
+            }
+        }
+
+        for (SceneObject child : object.getChildren()) {
+            bounds = extendBounds(bounds, child, transform);
+        }
+        return bounds;
+    }
+
+    /**
+     * Create (or resize) the texture and the framebuffer that renders into it.
+     */
+    private void createTarget(GL3 gl, int width, int height) {
+        int[] names = new int[1];
+        if (myTexture == 0) {
+            gl.glGenTextures(1, names, 0);
+            myTexture = names[0];
+            gl.glGenFramebuffers(1, names, 0);
+            myFramebuffer = names[0];
+            gl.glGenBuffers(1, names, 0);
+            myQuadBuffer = names[0];
+            myReleaseQueue = ReleaseQueue.get(gl);
+        } else if (width == myTextureWidth && height == myTextureHeight) {
+            return;
+        }
+
+        gl.glBindTexture(GL.GL_TEXTURE_2D, myTexture);
+        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA8, width, height, 0, GL.GL_RGBA,
+                GL.GL_UNSIGNED_BYTE, null);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+
+        int[] previousFramebuffer = new int[1];
+        gl.glGetIntegerv(GL.GL_FRAMEBUFFER_BINDING, previousFramebuffer, 0);
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, myFramebuffer);
+        gl.glFramebufferTexture2D(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0, GL.GL_TEXTURE_2D,
+                myTexture, 0);
+        int status = gl.glCheckFramebufferStatus(GL.GL_FRAMEBUFFER);
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, previousFramebuffer[0]);
+        if (status != GL.GL_FRAMEBUFFER_COMPLETE)
+            throw new RuntimeException("Incomplete framebuffer: " + status);
+
+        myTextureWidth = width;
+        myTextureHeight = height;
+    }
+
+    /**
+     * Store the corners of the quad covering the given bounds, along with their texture
+     * coordinates.
+     */
+    private void updateQuad(GL3 gl, float[] bounds) {
+        FloatBuffer quad = GLBuffers.newDirectFloatBuffer(new float[] {
+            // x, y, s, t
+            bounds[0], bounds[1], 0, 0,
+            bounds[2], bounds[1], 1, 0,
+            bounds[2], bounds[3], 1, 1,
+            bounds[0], bounds[3], 0, 1
+        });
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, myQuadBuffer);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, 4 * 4 * Float.BYTES, quad, GL.GL_STATIC_DRAW);
+    }
+
+    /**
+     * Draw the cached texture on a quad in the given frame.
+     */
+    private void drawQuad(GL3 gl, CoordFrame2D frame) {
+        int[] previousProgram = new int[1];
+        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, previousProgram, 0);
+
+        Shader.shared(gl, "shaders/vertex_tex_2d.glsl", "shaders/fragment_tex_2d.glsl").use(gl);
+        Shader.setModelMatrix(gl, frame.getMatrix());
+
+        gl.glActiveTexture(GL.GL_TEXTURE0);
+        gl.glBindTexture(GL.GL_TEXTURE_2D, myTexture);
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, myQuadBuffer);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 4 * Float.BYTES, 0);
+        gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_FLOAT, false, 4 * Float.BYTES,
+                2 * Float.BYTES);
+        gl.glEnableVertexAttribArray(Shader.TEX_COORD);
+
+        // The texture was cleared to transparent black and drawn over with opaque colors, so its
+        // colors are already multiplied by alpha.
+        gl.glEnable(GL.GL_BLEND);
+        gl.glBlendFunc(GL.GL_ONE, GL.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glDrawArrays(GL.GL_TRIANGLE_FAN, 0, 4);
+        Profiler.countDraw(4);
+        gl.glDisable(GL.GL_BLEND);
+
+        gl.glDisableVertexAttribArray(Shader.TEX_COORD);
+        gl.glUseProgram(previousProgram[0]);
+    }
+
+}
@@ -1,10 +1,11 @@
 package unsw.graphics.scene;
 
+import java.util.Arrays;
+
 import com.jogamp.opengl.GL3;
 
+import unsw.graphics.CameraBlock;
 import unsw.graphics.CoordFrame2D;
-import unsw.graphics.Matrix3;
-import unsw.graphics.Vector3;
 import unsw.graphics.Shader;
 import unsw.graphics.geometry.Point2D;
 
@@ -24,8 +25,25 @@ public class Camera extends SceneObject {
      */
     private float myAspectRatio;
 
+    // The view transform, its matrix and its inverse, as they were when last computed
+    private CoordFrame2D myViewFrame;
+    private float[] myView;
+    private float[] myInverseView;
+
+    // What the view was computed from: the aspect ratio, and the camera and its ancestors (from
+    // the camera up) with their versions
+    private float myViewAspectRatio;
+    private SceneObject[] myViewChain;
+    private long[] myViewVersions;
+    private int myViewChainLength;
+
     public Camera(SceneObject parent) {
         super(parent);
+        myView = new float[9];
+        myInverseView = new float[9];
+        myViewChain = new SceneObject[8];
+        myViewVersions = new long[8];
+        myViewChainLength = 0;
     }
 
     public void setView(GL3 gl) {
@@ -48,12 +66,22 @@ public class Camera extends SceneObject {
         
         // TODO set the view matrix to the computed transform
         //Shader.setViewMatrix(gl, transform.getMatrix());
-        CoordFrame2D viewFrame = CoordFrame2D.identity()
-                .scale(1/getGlobalScale(), 1/getGlobalScale())
-                .rotate(-getGlobalRotation())
-                .translate(-getGlobalPosition().getX(), -getGlobalPosition().getY())
-                .scale(1, myAspectRatio);
-        Shader.setViewMatrix(gl, viewFrame.getMatrix());
+        Shader.setViewMatrix(gl, getViewFrame().getMatrix());
+        CameraBlock.get(gl).setAspectRatio(myAspectRatio);
+    }
+
+    /**
+     * Get the view transform for the camera's current position, rotation, scale and aspect
+     * ratio. This is what setView() sets the view matrix to.
+     * 
+     * The transform is cached, and only computed again when the camera, one of its ancestors or
+     * the aspect ratio has changed.
+     * 
+     * @return
+     */
+    public CoordFrame2D getViewFrame() {
+        updateView();
+        return myViewFrame;
     }
 
     public void reshape(int width, int height) {
@@ -69,11 +97,121 @@ public class Camera extends SceneObject {
      * @return
      */
     public Point2D fromView(float x, float y) {
-        Matrix3 mat = Matrix3.translation(getGlobalPosition())
-                .multiply(Matrix3.rotation(getGlobalRotation()))
-                .multiply(Matrix3.scale(getGlobalScale(), getGlobalScale()))
-                .multiply(Matrix3.scale(myAspectRatio, 1));
-        return mat.multiply(new Vector3(x,y,1)).asPoint2D();
+        updateView();
+        float[] m = myInverseView;
+        return new Point2D(m[0]*x + m[3]*y + m[6], m[1]*x + m[4]*y + m[7]);
+    }
+
+    /**
+     * Transforms a point from world coordinates to camera coordinates.
+     * 
+     * @param x
+     * @param y
+     * @return
+     */
+    public Point2D toView(float x, float y) {
+        updateView();
+        float[] m = myView;
+        return new Point2D(m[0]*x + m[3]*y + m[6], m[1]*x + m[4]*y + m[7]);
+    }
+
+    /**
+     * Transforms many points from camera coordinates to world coordinates at once, e.g. for
+     * picking. The points are packed as x, y pairs. The source and destination may be the same
+     * array.
+     * 
+     * @param src The points in camera coordinates
+     * @param srcOffset The index of the first point's x coordinate in src
+     * @param dst Where to put the points in world coordinates
+     * @param dstOffset The index to put the first point's x coordinate at in dst
+     * @param count The number of points
+     */
+    public void fromView(float[] src, int srcOffset, float[] dst, int dstOffset, int count) {
+        updateView();
+        transform(myInverseView, src, srcOffset, dst, dstOffset, count);
+    }
+
+    /**
+     * Transforms many points from world coordinates to camera coordinates at once, e.g. for
+     * culling. The points are packed as x, y pairs. The source and destination may be the same
+     * array.
+     * 
+     * @param src The points in world coordinates
+     * @param srcOffset The index of the first point's x coordinate in src
+     * @param dst Where to put the points in camera coordinates
+     * @param dstOffset The index to put the first point's x coordinate at in dst
+     * @param count The number of points
+     */
+    public void toView(float[] src, int srcOffset, float[] dst, int dstOffset, int count) {
+        updateView();
+        transform(myView, src, srcOffset, dst, dstOffset, count);
+    }
+
+    /**
+     * Compute the view transform and its inverse again, if anything they depend on has changed.
+     */
+    private void updateView() {
+        if (myViewFrame != null && myViewAspectRatio == myAspectRatio && isViewChainCurrent())
+            return;
+
+        myViewFrame = CoordFrame2D.identity()
+                .scale(1/getGlobalScale(), 1/getGlobalScale())
+                .rotate(-getGlobalRotation())
+                .translate(-getGlobalPosition().getX(), -getGlobalPosition().getY())
+                .scale(1, myAspectRatio);
+        myView = myViewFrame.getMatrix().getValues();
+        invertAffine(myView, myInverseView);
+        myViewAspectRatio = myAspectRatio;
+
+        myViewChainLength = 0;
+        for (SceneObject o = this; o != null; o = o.getParent()) {
+            if (myViewChainLength == myViewChain.length) {
+                myViewChain = Arrays.copyOf(myViewChain, 2 * myViewChainLength);
+                myViewVersions = Arrays.copyOf(myViewVersions, 2 * myViewChainLength);
+            }
+            myViewChain[myViewChainLength] = o;
+            myViewVersions[myViewChainLength] = o.getVersion();
+            myViewChainLength++;
+        }
+    }
+
+    /**
+     * Check whether the camera and its ancestors are the same objects, unchanged, as when the
+     * view was computed.
+     */
+    private boolean isViewChainCurrent() {
+        SceneObject o = this;
+        for (int i = 0; i < myViewChainLength; i++, o = o.getParent()) {
+            if (o != myViewChain[i] || o.getVersion() != myViewVersions[i])
+                return false;
+        }
+        return o == null;
+    }
+
+    /**
+     * Invert a column-major matrix that has (0, 0, 1) as its last row.
+     */
+    private static void invertAffine(float[] m, float[] result) {
+        float det = m[0]*m[4] - m[3]*m[1];
+        result[0] = m[4] / det;
+        result[1] = -m[1] / det;
+        result[2] = 0;
+        result[3] = -m[3] / det;
+        result[4] = m[0] / det;
+        result[5] = 0;
+        result[6] = -(result[0]*m[6] + result[3]*m[7]);
+        result[7] = -(result[1]*m[6] + result[4]*m[7]);
+        result[8] = 1;
+    }
+
+    private static void transform(float[] m, float[] src, int srcOffset, float[] dst,
+            int dstOffset, int count) {
+        for (int i = 0; i < 2 * count; i += 2) {
+            float x = src[srcOffset + i];
+            float y = src[srcOffset + i + 1];
+            dst[dstOffset + i] = m[0]*x + m[3]*y + m[6];
+            dst[dstOffset + i + 1] = m[1]*x + m[4]*y + m[7];
+        }
     }
 
     public float getAspectRatio() {
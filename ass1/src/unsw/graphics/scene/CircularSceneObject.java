@@ -3,9 +3,12 @@ package unsw.graphics.scene;
 import java.awt.Color;
 import java.util.*;
 
+import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Mesh;
+import unsw.graphics.MeshRegistry;
 import unsw.graphics.geometry.*;
 import unsw.graphics.Shader;
 import unsw.graphics.geometry.Polygon2D;
@@ -25,6 +28,7 @@ public class CircularSceneObject extends SceneObject {
 
     private float myRadius;
     private Polygon2D myPolygon;
+    private Mesh myMesh;
     private Color myFillColor;
     private Color myLineColor;
 
@@ -90,6 +94,7 @@ public class CircularSceneObject extends SceneObject {
      */
     public void setFillColor(Color fillColor) {
         myFillColor = fillColor;
+        invalidateAppearance();
     }
 
     /**
@@ -110,6 +115,30 @@ public class CircularSceneObject extends SceneObject {
      */
     public void setLineColor(Color lineColor) {
         myLineColor = lineColor;
+        invalidateAppearance();
+    }
+
+    /**
+     * Remove the object from the scene tree, and release its mesh.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (myMesh != null) {
+            myMesh.release();
+            myMesh = null;
+        }
+    }
+
+    @Override
+    public long getDrawState() {
+        Color fill = myFillColor != null ? myFillColor : Color.BLACK;
+        return RenderQueue.state(RenderQueue.DEFAULT_SHADER, GL.GL_TRIANGLES, fill);
+    }
+
+    @Override
+    public Polygon2D getShape() {
+        return myPolygon;
     }
 
     // ===========================================
@@ -127,17 +156,48 @@ public class CircularSceneObject extends SceneObject {
     @Override
     public void drawSelf(GL3 gl, CoordFrame2D frame) {
 
+        // Equal polygons share one mesh, which is only uploaded once
+        if (myMesh == null)
+            myMesh = MeshRegistry.get(gl).acquire(gl, myPolygon);
+
         if (myFillColor != null) {
             Shader.setPenColor(gl, myFillColor);
-            myPolygon.draw(gl, frame);
+            myMesh.draw(gl, frame);
         } else {
             Shader.setPenColor(gl, Color.BLACK);
-            myPolygon.draw(gl, frame);
+            myMesh.draw(gl, frame);
         }
 
         if (myLineColor != null) {
             Shader.setPenColor(gl, myLineColor);
-            myPolygon.drawOutline(gl, frame);
+            myMesh.drawOutline(gl, frame);
+        }
+
+    }
+
+    @Override
+    public void enqueueSelf(RenderQueue queue, CoordFrame2D frame) {
+        // Until drawSelf() has uploaded the mesh, the queue has to call it
+        Mesh mesh = myMesh;
+        if (mesh == null) {
+            queue.add(this, frame);
+        } else {
+            queue.addMesh(this, frame, mesh, myFillColor != null ? myFillColor : Color.BLACK,
+                    myLineColor);
+        }
+    }
+
+    @Override
+    public void freezeSelf(FrozenMesh mesh, CoordFrame2D frame) {
+
+        if (myFillColor != null) {
+            mesh.addPolygon(myPolygon, frame, myFillColor);
+        } else {
+            mesh.addPolygon(myPolygon, frame, Color.BLACK);
+        }
+
+        if (myLineColor != null) {
+            mesh.addOutline(myPolygon, frame, myLineColor);
         }
 
     }
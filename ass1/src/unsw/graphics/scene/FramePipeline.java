@@ -0,0 +1,198 @@
+package unsw.graphics.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Shader;
+
+/**
+ * Builds each frame's render queue on worker threads, while the OpenGL thread draws the previous
+ * frame's.
+ *
+ * OpenGL calls can only be made on the thread that owns the context, but walking the scene tree
+ * and computing every object's coordinate frame can be done anywhere. Each frame the children of
+ * the root are split into contiguous runs, one per worker, and each worker adds its run of
+ * subtrees to its own RenderQueue. While they do that, the OpenGL thread draws the queue that was
+ * built the frame before. The workers' queues are then joined, in tree order, into the queue that
+ * will be drawn next frame.
+ *
+ * The command lists are double buffered: one is built while the other is drawn. This means what
+ * is drawn is always one frame behind the scene. Entries carry the meshes, colors and frames
+ * their objects had when the frame was built (see RenderQueue.addMesh()), and the view is
+ * recorded with each frame, so drawing doesn't read the objects the workers are walking. Objects
+ * destroyed in the meantime are skipped.
+ *
+ * A few entries are still drawn from the live object, because the OpenGL thread has to create
+ * their resources: objects drawn for the first time, frozen subtrees that need rebuilding, and
+ * cached and batched subtrees. Changes to these show up a frame early.
+ *
+ * The scene must not be changed while a frame is being built, i.e. during draw().
+ */
+public class FramePipeline {
+
+    private final int myThreadCount;
+    private final ExecutorService myWorkers;
+
+    // The frame being built, and the frame built last time, which is drawn meanwhile
+    private Frame myBuilding;
+    private Frame mySubmitting;
+    private boolean amPending;
+
+    /**
+     * The commands for one frame.
+     */
+    private static class Frame {
+        // One queue per worker, and all of them joined together
+        RenderQueue[] parts;
+        RenderQueue merged;
+        CoordFrame2D view;
+
+        Frame(int threads) {
+            parts = new RenderQueue[threads];
+            for (int i = 0; i < threads; i++) {
+                parts[i] = new RenderQueue();
+            }
+            merged = new RenderQueue();
+            view = CoordFrame2D.identity();
+        }
+    }
+
+    /**
+     * Create a pipeline with the given number of worker threads.
+     *
+     * @param threads
+     */
+    public FramePipeline(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one worker thread is needed");
+        myThreadCount = threads;
+        myWorkers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "FramePipeline worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        myBuilding = new Frame(threads);
+        mySubmitting = new Frame(threads);
+        amPending = false;
+    }
+
+    /**
+     * Build this frame's commands for the scene tree on the worker threads, while drawing the
+     * last frame's.
+     *
+     * @param gl
+     * @param root The root of the scene tree
+     * @param camera The camera the scene is viewed through
+     * @param sorted Whether to sort the scene (see Scene.setSorted())
+     * @param depthTested Whether to layer the scene with the depth buffer (see
+     * Scene.setDepthTested())
+     */
+    public void draw(GL3 gl, SceneObject root, Camera camera, boolean sorted,
+            boolean depthTested) {
+        List<Future<?>> tasks = build(root, camera);
+
+        if (amPending) {
+            submit(gl, mySubmitting, sorted, depthTested);
+        }
+
+        join(tasks);
+        for (RenderQueue part : myBuilding.parts) {
+            myBuilding.merged.addAll(part);
+        }
+
+        if (!amPending) {
+            // Nothing was built last frame, so draw this one straight away
+            submit(gl, myBuilding, sorted, depthTested);
+        } else {
+            Frame swap = mySubmitting;
+            mySubmitting = myBuilding;
+            myBuilding = swap;
+        }
+        amPending = true;
+    }
+
+    /**
+     * Stop the worker threads. The pipeline can't be used afterwards.
+     */
+    public void shutdown() {
+        myWorkers.shutdown();
+        amPending = false;
+    }
+
+    /**
+     * Start filling myBuilding with the commands for the scene tree.
+     *
+     * @return The tasks started, which must be joined before the frame is used
+     */
+    private List<Future<?>> build(SceneObject root, Camera camera) {
+        Frame frame = myBuilding;
+        frame.merged.clear();
+        for (RenderQueue part : frame.parts) {
+            part.clear();
+        }
+        frame.view = camera.getViewFrame();
+
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        if (!root.isShowing()) {
+            return tasks;
+        }
+        if (root.isFrozen()) {
+            // The whole tree is drawn as one, so there is nothing to split up
+            root.enqueue(frame.merged, CoordFrame2D.identity());
+            return tasks;
+        }
+
+        CoordFrame2D rootFrame = root.localFrame(CoordFrame2D.identity());
+        root.enqueueSelf(frame.merged, rootFrame);
+
+        List<SceneObject> children = new ArrayList<SceneObject>(root.getChildren());
+        int n = children.size();
+        for (int t = 0; t < myThreadCount; t++) {
+            List<SceneObject> run = children.subList(t * n / myThreadCount,
+                    (t + 1) * n / myThreadCount);
+            if (run.isEmpty())
+                continue;
+            RenderQueue part = frame.parts[t];
+            tasks.add(myWorkers.submit(() -> {
+                for (SceneObject child : run) {
+                    child.enqueue(part, rootFrame);
+                }
+            }));
+        }
+        return tasks;
+    }
+
+    private static void join(List<Future<?>> tasks) {
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building frame", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while building frame", e.getCause());
+        }
+    }
+
+    private static void submit(GL3 gl, Frame frame, boolean sorted, boolean depthTested) {
+        Shader.setViewMatrix(gl, frame.view.getMatrix());
+        if (depthTested) {
+            frame.merged.drawDepthTested(gl);
+        } else {
+            if (sorted) {
+                frame.merged.sort();
+            } else {
+                frame.merged.resetOrder();
+            }
+            frame.merged.draw(gl);
+        }
+    }
+}
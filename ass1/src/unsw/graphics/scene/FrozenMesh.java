@@ -0,0 +1,245 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.ColoredPoint2DBuffer;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.Shader;
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * The merged geometry of a frozen subtree (see SceneObject.freeze()).
+ *
+ * Every vertex is stored already transformed into the frozen object's coordinate frame, along
+ * with its own color packed into four bytes, in one vertex buffer. The indices of the filled
+ * triangles and outline segments are kept in one element buffer, in the order they were added,
+ * which is tree order. Consecutive shapes of the same kind form a run, drawn with one
+ * glDrawElements() call, so fills and outlines overlap the same way as when drawn one by one.
+ */
+public class FrozenMesh {
+
+    private static final String VERTEX_SHADER = "shaders/vertex_color_2d.glsl";
+    private static final String FRAGMENT_SHADER = "shaders/fragment_color_2d.glsl";
+
+    // Positions as x, y pairs, and colors packed as RGBA
+    private float[] myPositions;
+    private int[] myColors;
+    private int myVertexCount;
+
+    private int[] myIndices;
+    private int myIndexCount;
+
+    // Runs of indices drawn with one call: the mode (GL_TRIANGLES or GL_LINES), and the first
+    // index and number of indices
+    private int[] myRunModes;
+    private int[] myRunStarts;
+    private int[] myRunCounts;
+    private int myRunCount;
+
+    // OpenGL names of the vertex and element buffers, or 0 if they haven't been created
+    private int myVertexBuffer;
+    private int myIndexBuffer;
+    private boolean amUploaded;
+
+    public FrozenMesh() {
+        myPositions = new float[64];
+        myColors = new int[32];
+        myIndices = new int[64];
+        myRunModes = new int[8];
+        myRunStarts = new int[8];
+        myRunCounts = new int[8];
+        myVertexBuffer = 0;
+        myIndexBuffer = 0;
+        clear();
+    }
+
+    /**
+     * Remove all geometry from the mesh.
+     */
+    public void clear() {
+        myVertexCount = 0;
+        myIndexCount = 0;
+        myRunCount = 0;
+        amUploaded = false;
+    }
+
+    /**
+     * Add a filled polygon.
+     *
+     * @param polygon
+     * @param frame The frame of the polygon, relative to the frozen object
+     * @param color
+     */
+    public void addPolygon(Polygon2D polygon, CoordFrame2D frame, Color color) {
+        int first = addVertices(polygon, frame, color);
+        addIndices(GL.GL_TRIANGLES, polygon.getTriangleIndices(), first);
+    }
+
+    /**
+     * Add the outline of a polygon.
+     *
+     * @param polygon
+     * @param frame The frame of the polygon, relative to the frozen object
+     * @param color
+     */
+    public void addOutline(Polygon2D polygon, CoordFrame2D frame, Color color) {
+        int first = addVertices(polygon, frame, color);
+        addIndices(GL.GL_LINES, polygon.getOutlineIndices(), first);
+    }
+
+    /**
+     * Get the total number of vertices in the mesh.
+     *
+     * @return
+     */
+    public int getVertexCount() {
+        return myVertexCount;
+    }
+
+    /**
+     * Draw the mesh in the given coordinate frame.
+     *
+     * @param gl
+     * @param frame
+     */
+    public void draw(GL3 gl, CoordFrame2D frame) {
+        if (myIndexCount == 0)
+            return;
+
+        if (myVertexBuffer == 0) {
+            int[] names = new int[2];
+            gl.glGenBuffers(2, names, 0);
+            myVertexBuffer = names[0];
+            myIndexBuffer = names[1];
+        }
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, myVertexBuffer);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, myIndexBuffer);
+
+        if (!amUploaded) {
+            ColoredPoint2DBuffer vertices = new ColoredPoint2DBuffer(myVertexCount);
+            for (int i = 0; i < myVertexCount; i++) {
+                vertices.put(i, myPositions[2*i], myPositions[2*i + 1], myColors[i]);
+            }
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, vertices.getSize(), vertices.getBuffer(),
+                    GL.GL_STATIC_DRAW);
+
+            IntBuffer indices = GLBuffers.newDirectIntBuffer(myIndexCount);
+            indices.put(myIndices, 0, myIndexCount);
+            indices.rewind();
+            gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, indices.capacity() * Integer.BYTES,
+                    indices, GL.GL_STATIC_DRAW);
+            Profiler.count(Counter.UPLOADED_BYTES,
+                    vertices.getSize() + indices.capacity() * Integer.BYTES);
+            amUploaded = true;
+        }
+
+        int[] previousProgram = new int[1];
+        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, previousProgram, 0);
+
+        Shader.shared(gl, VERTEX_SHADER, FRAGMENT_SHADER).use(gl);
+        Shader.setModelMatrix(gl, frame.getMatrix());
+
+        ColoredPoint2DBuffer.setAttribPointers(gl);
+
+        for (int i = 0; i < myRunCount; i++) {
+            gl.glDrawElements(myRunModes[i], myRunCounts[i], GL.GL_UNSIGNED_INT,
+                    (long) myRunStarts[i] * Integer.BYTES);
+            Profiler.countDraw(myRunCounts[i]);
+        }
+
+        gl.glDisableVertexAttribArray(Shader.COLOR);
+        gl.glUseProgram(previousProgram[0]);
+    }
+
+    /**
+     * Free the vertex and element buffers.
+     *
+     * @param gl
+     */
+    public void destroy(GL3 gl) {
+        if (myVertexBuffer != 0) {
+            gl.glDeleteBuffers(2, new int[] { myVertexBuffer, myIndexBuffer }, 0);
+            myVertexBuffer = 0;
+            myIndexBuffer = 0;
+        }
+        amUploaded = false;
+    }
+
+    /**
+     * Get the number of draw calls the mesh is drawn with.
+     *
+     * @return
+     */
+    public int getRunCount() {
+        return myRunCount;
+    }
+
+    /**
+     * Add indices drawn in the given mode, offset by the first vertex, continuing the last run
+     * if it is in the same mode.
+     */
+    private void addIndices(int mode, int[] indices, int first) {
+        if (indices.length == 0)
+            return;
+
+        if (myRunCount == 0 || myRunModes[myRunCount - 1] != mode) {
+            myRunModes = ensureCapacity(myRunModes, myRunCount + 1);
+            myRunStarts = ensureCapacity(myRunStarts, myRunCount + 1);
+            myRunCounts = ensureCapacity(myRunCounts, myRunCount + 1);
+            myRunModes[myRunCount] = mode;
+            myRunStarts[myRunCount] = myIndexCount;
+            myRunCounts[myRunCount] = 0;
+            myRunCount++;
+        }
+
+        myIndices = ensureCapacity(myIndices, myIndexCount + indices.length);
+        for (int i : indices) {
+            myIndices[myIndexCount++] = first + i;
+        }
+        myRunCounts[myRunCount - 1] += indices.length;
+        amUploaded = false;
+    }
+
+    /**
+     * Add the polygon's vertices, transformed by the frame and with the given color.
+     *
+     * @return The index of the first vertex added
+     */
+    private int addVertices(Polygon2D polygon, CoordFrame2D frame, Color color) {
+        List<Point2D> points = polygon.getPoints();
+        float[] m = frame.getMatrix().getValues();
+        int rgba = ColoredPoint2DBuffer.pack(color);
+        int first = myVertexCount;
+
+        myPositions = ensureCapacity(myPositions, (myVertexCount + points.size()) * 2);
+        myColors = ensureCapacity(myColors, myVertexCount + points.size());
+        for (Point2D p : points) {
+            myPositions[2*myVertexCount] = m[0] * p.getX() + m[3] * p.getY() + m[6];
+            myPositions[2*myVertexCount + 1] = m[1] * p.getX() + m[4] * p.getY() + m[7];
+            myColors[myVertexCount] = rgba;
+            myVertexCount++;
+        }
+        amUploaded = false;
+        return first;
+    }
+
+    private static float[] ensureCapacity(float[] array, int size) {
+        return size <= array.length ? array
+                : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    private static int[] ensureCapacity(int[] array, int size) {
+        return size <= array.length ? array
+                : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+}
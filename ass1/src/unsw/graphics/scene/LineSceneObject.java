@@ -2,9 +2,12 @@ package unsw.graphics.scene;
 
 import java.awt.Color;
 
+import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Mesh;
+import unsw.graphics.MeshRegistry;
 import unsw.graphics.Shader;
 import unsw.graphics.geometry.Polygon2D;
 
@@ -22,6 +25,7 @@ import unsw.graphics.geometry.Polygon2D;
 public class LineSceneObject extends SceneObject {
 
     private Polygon2D myPolygon;
+    private Mesh myMesh;
     private Color myLineColor;
 
     /**
@@ -69,6 +73,29 @@ public class LineSceneObject extends SceneObject {
      */
     public void setLineColor(Color lineColor) {
         myLineColor = lineColor;
+        invalidateAppearance();
+    }
+
+    /**
+     * Remove the object from the scene tree, and release its mesh.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (myMesh != null) {
+            myMesh.release();
+            myMesh = null;
+        }
+    }
+
+    @Override
+    public long getDrawState() {
+        return RenderQueue.state(RenderQueue.DEFAULT_SHADER, GL.GL_LINES, myLineColor);
+    }
+
+    @Override
+    public Polygon2D getShape() {
+        return myPolygon;
     }
 
     // ===========================================
@@ -86,8 +113,34 @@ public class LineSceneObject extends SceneObject {
     @Override
     public void drawSelf(GL3 gl, CoordFrame2D frame) {
 
+        if (myLineColor == null)
+            return;
+
+        if (myMesh == null)
+            myMesh = MeshRegistry.get(gl).acquire(gl, myPolygon);
+
         Shader.setPenColor(gl, myLineColor);
-        myPolygon.drawOutline(gl, frame);
+        myMesh.drawOutline(gl, frame);
+
+    }
+
+    @Override
+    public void enqueueSelf(RenderQueue queue, CoordFrame2D frame) {
+        // Until drawSelf() has uploaded the mesh, the queue has to call it
+        Mesh mesh = myMesh;
+        if (mesh == null) {
+            queue.add(this, frame);
+        } else {
+            queue.addMesh(this, frame, mesh, null, myLineColor);
+        }
+    }
+
+    @Override
+    public void freezeSelf(FrozenMesh mesh, CoordFrame2D frame) {
+
+        if (myLineColor != null) {
+            mesh.addOutline(myPolygon, frame, myLineColor);
+        }
 
     }
 
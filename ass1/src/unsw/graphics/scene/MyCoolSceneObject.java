@@ -29,6 +29,9 @@ public class MyCoolSceneObject extends SceneObject {
         SceneObject dot3 = new CircularSceneObject(this, Color.WHITE, null);
         dot3.translate(12, 0);
         myChildren.add(dot3);
+
+        // None of the parts move, so they can all be drawn at once
+        freeze();
     }
 
 }
@@ -0,0 +1,518 @@
+package unsw.graphics.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * A bounding volume hierarchy over the world bounds of the objects in a scene, used by
+ * Scene.pick() to find objects without testing every one.
+ *
+ * The index is brought up to date before each query, but only if the scene has changed. If the
+ * same objects are showing as before, only the bounds are recomputed and the existing tree is
+ * refitted around them. Otherwise the tree is rebuilt, splitting each node at the median of its
+ * objects along its longer side.
+ *
+ * Only showing objects with a shape are indexed.
+ *
+ * When objects overlap, the one picked is the one drawn last, which depends on how the scene is
+ * drawn. In tree order, that is the last in the tree. With depth testing, objects are layered by
+ * their layer and then tree order. When the scene is sorted, the order is taken from a
+ * RenderQueue sorted the same way as the one that draws it, so objects on the same layer are
+ * ordered by their draw state before their place in the tree.
+ *
+ * The draw order is only worked out again when it may have changed (see
+ * SceneObject.getOrderVersion()), not when objects have only moved.
+ */
+class PickIndex {
+
+    /**
+     * Objects are drawn in tree order.
+     */
+    static final int TREE_ORDER = 0;
+
+    /**
+     * Objects are drawn by layer, then in tree order (see RenderQueue.drawDepthTested()).
+     */
+    static final int LAYER_ORDER = 1;
+
+    /**
+     * Objects are drawn in the order of a sorted RenderQueue (see RenderQueue.sort()).
+     */
+    static final int QUEUE_ORDER = 2;
+
+    // The most objects in a leaf
+    private static final int LEAF_SIZE = 4;
+
+    // The indexed objects, in the order they are drawn, with their world matrices and bounds
+    private SceneObject[] myObjects;
+    private float[] myMatrices;
+    private float[] myBounds;
+    private int mySize;
+
+    // The objects found by the last traversal, compared with myObjects to see if they changed
+    private SceneObject[] myFound;
+    private int myFoundCount;
+
+    // The nodes of the tree, root first, each followed by its left child. A leaf has a count of
+    // the objects in it, from myItems[myStarts[node]]; an inner node has a count of 0 and
+    // myStarts[node] is its right child.
+    private float[] myNodeBounds;
+    private int[] myStarts;
+    private int[] myCounts;
+    private int myNodeCount;
+
+    // The objects, grouped by leaf
+    private int[] myItems;
+
+    // Used by queries
+    private int[] myStack;
+
+    // The order objects are drawn in, and where each indexed object comes in it. Objects with
+    // the same rank are drawn in tree order.
+    private int myOrder;
+    private int[] myRanks;
+
+    // Used to find the draw order when it isn't TREE_ORDER: the scene's queue entries, the
+    // rank of each in the order they were added, and the next entry to match with an object
+    private RenderQueue myQueue;
+    private int[] myEntryRanks;
+    private int myEntry;
+
+    // The versions of the root when the index was last updated
+    private long myVersion;
+    private long myDescendantVersion;
+    private long myOrderVersion;
+
+    PickIndex() {
+        myObjects = new SceneObject[0];
+        myMatrices = new float[0];
+        myBounds = new float[0];
+        myFound = new SceneObject[64];
+        myNodeBounds = new float[0];
+        myStarts = new int[0];
+        myCounts = new int[0];
+        myItems = new int[0];
+        myStack = new int[64];
+        myOrder = TREE_ORDER;
+        myRanks = new int[0];
+        myEntryRanks = new int[0];
+        myVersion = -1;
+        myDescendantVersion = -1;
+        myOrderVersion = -1;
+    }
+
+    /**
+     * Bring the index up to date with the scene, if it or the order it is drawn in has changed.
+     *
+     * @param root
+     * @param order How the scene is drawn: TREE_ORDER, LAYER_ORDER or QUEUE_ORDER
+     */
+    void update(SceneObject root, int order) {
+        boolean reorder = order != myOrder || root.getOrderVersion() != myOrderVersion;
+        if (!reorder && root.getVersion() == myVersion
+                && root.getDescendantVersion() == myDescendantVersion)
+            return;
+        myOrder = order;
+        myVersion = root.getVersion();
+        myDescendantVersion = root.getDescendantVersion();
+        myOrderVersion = root.getOrderVersion();
+
+        myFoundCount = 0;
+        find(root);
+        boolean same = myFoundCount == mySize;
+        for (int i = 0; same && i < mySize; i++) {
+            same = myFound[i] == myObjects[i];
+        }
+
+        if (!same) {
+            mySize = myFoundCount;
+            myObjects = Arrays.copyOf(myFound, mySize);
+            myMatrices = new float[9 * mySize];
+            myBounds = new float[4 * mySize];
+            myRanks = new int[mySize];
+            reorder = true;
+        }
+        mySize = 0;
+        computeBounds(root, CoordFrame2D.identity());
+        if (reorder) {
+            computeRanks(root);
+        }
+
+        if (same) {
+            refit();
+        } else {
+            build();
+        }
+    }
+
+    /**
+     * Collect the objects to index, in the order they are drawn.
+     */
+    private void find(SceneObject object) {
+        if (!object.isShowing())
+            return;
+        if (object.getShape() != null) {
+            if (myFoundCount == myFound.length)
+                myFound = Arrays.copyOf(myFound, 2 * myFoundCount);
+            myFound[myFoundCount++] = object;
+        }
+        for (SceneObject child : object.getChildren()) {
+            find(child);
+        }
+    }
+
+    /**
+     * Store the world matrix and bounding box of each object, in the same order as find().
+     */
+    private void computeBounds(SceneObject object, CoordFrame2D frame) {
+        if (!object.isShowing())
+            return;
+        CoordFrame2D transform = object.localFrame(frame);
+        Polygon2D shape = object.getShape();
+        if (shape != null) {
+            float[] m = transform.getMatrix().getValues();
+            System.arraycopy(m, 0, myMatrices, 9 * mySize, 9);
+
+            float minX = Float.POSITIVE_INFINITY;
+            float minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY;
+            float maxY = Float.NEGATIVE_INFINITY;
+            for (int corner = 0; corner < 4; corner++) {
+                float x = corner == 0 || corner == 3 ? shape.getMinX() : shape.getMaxX();
+                float y = corner < 2 ? shape.getMinY() : shape.getMaxY();
+                float wx = m[0]*x + m[3]*y + m[6];
+                float wy = m[1]*x + m[4]*y + m[7];
+                minX = Math.min(minX, wx);
+                minY = Math.min(minY, wy);
+                maxX = Math.max(maxX, wx);
+                maxY = Math.max(maxY, wy);
+            }
+            int b = 4 * mySize++;
+            myBounds[b] = minX;
+            myBounds[b + 1] = minY;
+            myBounds[b + 2] = maxX;
+            myBounds[b + 3] = maxY;
+        }
+        for (SceneObject child : object.getChildren()) {
+            computeBounds(child, transform);
+        }
+    }
+
+    /**
+     * Work out where each object comes in the draw order.
+     */
+    private void computeRanks(SceneObject root) {
+        if (myOrder == TREE_ORDER) {
+            Arrays.fill(myRanks, 0, mySize, 0);
+            return;
+        }
+
+        // Sort the scene as it is drawn, and rank each entry by where it was added
+        if (myQueue == null) {
+            myQueue = new RenderQueue();
+        }
+        myQueue.clear();
+        root.enqueue(myQueue, CoordFrame2D.identity());
+        int count = myQueue.size();
+        if (myEntryRanks.length < count) {
+            myEntryRanks = new int[count];
+        }
+        if (myOrder == QUEUE_ORDER) {
+            myQueue.sort();
+            for (int i = 0; i < count; i++) {
+                myEntryRanks[myQueue.getEntry(i)] = i;
+            }
+        }
+        myQueue.resetOrder();
+        if (myOrder == LAYER_ORDER) {
+            for (int i = 0; i < count; i++) {
+                myEntryRanks[i] = myQueue.getObject(i).getLayer();
+            }
+        }
+
+        // The entries were added in tree order, the same order the objects were found in
+        int size = mySize;
+        mySize = 0;
+        myEntry = 0;
+        rank(root, 0, false);
+        mySize = size;
+        myQueue.clear();
+    }
+
+    /**
+     * Give each indexed object the rank of its queue entry, in the same order as find(). Objects
+     * in a subtree that is drawn as a whole (e.g. a frozen one) have no entry of their own, and
+     * take the rank of the ancestor that was added to the queue.
+     *
+     * @param whole Whether the object is inside a subtree that was added as a whole
+     */
+    private void rank(SceneObject object, int rank, boolean whole) {
+        if (!object.isShowing())
+            return;
+        if (!whole && myEntry < myQueue.size() && myQueue.getObject(myEntry) == object) {
+            rank = myEntryRanks[myEntry];
+            whole = myQueue.isSubtree(myEntry);
+            myEntry++;
+        }
+        if (object.getShape() != null)
+            myRanks[mySize++] = rank;
+        for (SceneObject child : object.getChildren()) {
+            rank(child, rank, whole);
+        }
+    }
+
+    /**
+     * Build the tree from scratch.
+     */
+    private void build() {
+        int maxNodes = Math.max(1, 2 * mySize);
+        if (myStarts.length < maxNodes) {
+            myNodeBounds = new float[4 * maxNodes];
+            myStarts = new int[maxNodes];
+            myCounts = new int[maxNodes];
+        }
+        myItems = new int[mySize];
+        for (int i = 0; i < mySize; i++) {
+            myItems[i] = i;
+        }
+        myNodeCount = 0;
+        build(0, mySize);
+    }
+
+    private void build(int start, int end) {
+        int node = myNodeCount++;
+        union(node, start, end);
+
+        int count = end - start;
+        if (count <= LEAF_SIZE) {
+            myStarts[node] = start;
+            myCounts[node] = count;
+            return;
+        }
+
+        // Split the longer side at the median
+        int b = 4 * node;
+        float width = myNodeBounds[b + 2] - myNodeBounds[b];
+        float height = myNodeBounds[b + 3] - myNodeBounds[b + 1];
+        int axis = width >= height ? 0 : 1;
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle, axis);
+
+        myCounts[node] = 0;
+        build(start, middle);
+        myStarts[node] = myNodeCount;
+        build(middle, end);
+    }
+
+    /**
+     * Partially sort myItems[left..right] by centre along the axis, so the item at k is in its
+     * sorted place, with none greater before it and none less after it.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            float pivot = centre(myItems[(left + right) >>> 1], axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (centre(myItems[i], axis) < pivot)
+                    i++;
+                while (centre(myItems[j], axis) > pivot)
+                    j--;
+                if (i <= j) {
+                    int swap = myItems[i];
+                    myItems[i] = myItems[j];
+                    myItems[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private float centre(int item, int axis) {
+        return myBounds[4 * item + axis] + myBounds[4 * item + 2 + axis];
+    }
+
+    /**
+     * Set the bounds of a node to the union of the bounds of myItems[start..end).
+     */
+    private void union(int node, int start, int end) {
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            int b = 4 * myItems[i];
+            minX = Math.min(minX, myBounds[b]);
+            minY = Math.min(minY, myBounds[b + 1]);
+            maxX = Math.max(maxX, myBounds[b + 2]);
+            maxY = Math.max(maxY, myBounds[b + 3]);
+        }
+        int b = 4 * node;
+        myNodeBounds[b] = minX;
+        myNodeBounds[b + 1] = minY;
+        myNodeBounds[b + 2] = maxX;
+        myNodeBounds[b + 3] = maxY;
+    }
+
+    /**
+     * Recompute the bounds of every node, keeping the shape of the tree.
+     */
+    private void refit() {
+        // Children come after their parents, so work backwards
+        for (int node = myNodeCount - 1; node >= 0; node--) {
+            if (myCounts[node] > 0 || node == 0 && mySize == 0) {
+                union(node, myStarts[node], myStarts[node] + myCounts[node]);
+                continue;
+            }
+            int b = 4 * node;
+            int left = 4 * (node + 1);
+            int right = 4 * myStarts[node];
+            myNodeBounds[b] = Math.min(myNodeBounds[left], myNodeBounds[right]);
+            myNodeBounds[b + 1] = Math.min(myNodeBounds[left + 1], myNodeBounds[right + 1]);
+            myNodeBounds[b + 2] = Math.max(myNodeBounds[left + 2], myNodeBounds[right + 2]);
+            myNodeBounds[b + 3] = Math.max(myNodeBounds[left + 3], myNodeBounds[right + 3]);
+        }
+    }
+
+    /**
+     * Find the object drawn on top at a point, in the order given to update().
+     *
+     * @param x World x coordinate
+     * @param y World y coordinate
+     * @return The object, or null if no object's shape contains the point
+     */
+    SceneObject pick(float x, float y) {
+        int best = -1;
+        int top = 0;
+        if (mySize > 0)
+            myStack[top++] = 0;
+        while (top > 0) {
+            int node = myStack[--top];
+            int b = 4 * node;
+            if (x < myNodeBounds[b] || y < myNodeBounds[b + 1] || x > myNodeBounds[b + 2]
+                    || y > myNodeBounds[b + 3])
+                continue;
+
+            if (myCounts[node] == 0) {
+                push(top++, node + 1);
+                push(top++, myStarts[node]);
+                continue;
+            }
+            for (int i = myStarts[node]; i < myStarts[node] + myCounts[node]; i++) {
+                int item = myItems[i];
+                if ((best < 0 || above(item, best)) && contains(item, x, y))
+                    best = item;
+            }
+        }
+        return best < 0 ? null : myObjects[best];
+    }
+
+    /**
+     * Find every object whose bounding box overlaps a rectangle.
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return The objects, in the order they are drawn in the tree
+     */
+    List<SceneObject> pickRect(float minX, float minY, float maxX, float maxY) {
+        int[] found = new int[16];
+        int count = 0;
+        int top = 0;
+        if (mySize > 0)
+            myStack[top++] = 0;
+        while (top > 0) {
+            int node = myStack[--top];
+            if (!overlaps(myNodeBounds, 4 * node, minX, minY, maxX, maxY))
+                continue;
+
+            if (myCounts[node] == 0) {
+                push(top++, node + 1);
+                push(top++, myStarts[node]);
+                continue;
+            }
+            for (int i = myStarts[node]; i < myStarts[node] + myCounts[node]; i++) {
+                int item = myItems[i];
+                if (overlaps(myBounds, 4 * item, minX, minY, maxX, maxY)) {
+                    if (count == found.length)
+                        found = Arrays.copyOf(found, 2 * count);
+                    found[count++] = item;
+                }
+            }
+        }
+
+        Arrays.sort(found, 0, count);
+        List<SceneObject> objects = new ArrayList<SceneObject>(count);
+        for (int i = 0; i < count; i++) {
+            objects.add(myObjects[found[i]]);
+        }
+        return objects;
+    }
+
+    /**
+     * Get the number of objects indexed.
+     *
+     * @return
+     */
+    int size() {
+        return mySize;
+    }
+
+    private void push(int index, int node) {
+        if (index == myStack.length)
+            myStack = Arrays.copyOf(myStack, 2 * index);
+        myStack[index] = node;
+    }
+
+    private static boolean overlaps(float[] bounds, int b, float minX, float minY, float maxX,
+            float maxY) {
+        return bounds[b] <= maxX && bounds[b + 1] <= maxY && bounds[b + 2] >= minX
+                && bounds[b + 3] >= minY;
+    }
+
+    /**
+     * Check whether one object is drawn over another.
+     */
+    private boolean above(int item, int other) {
+        if (myRanks[item] != myRanks[other])
+            return myRanks[item] > myRanks[other];
+        return item > other;
+    }
+
+    /**
+     * Check whether an object's shape contains a world point, by moving the point into the
+     * object's coordinate frame.
+     */
+    private boolean contains(int item, float x, float y) {
+        int b = 4 * item;
+        if (x < myBounds[b] || y < myBounds[b + 1] || x > myBounds[b + 2] || y > myBounds[b + 3])
+            return false;
+
+        int m = 9 * item;
+        float a = myMatrices[m];
+        float c = myMatrices[m + 1];
+        float d = myMatrices[m + 3];
+        float e = myMatrices[m + 4];
+        float det = a * e - d * c;
+        if (det == 0)
+            return false;
+        float dx = x - myMatrices[m + 6];
+        float dy = y - myMatrices[m + 7];
+        float localX = (e * dx - d * dy) / det;
+        float localY = (a * dy - c * dx) / det;
+        return myObjects[item].getShape().contains(localX, localY);
+    }
+}
@@ -0,0 +1,218 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.ColoredPoint2DBuffer;
+import unsw.graphics.Matrix3;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.Shader;
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Many polygons, packed into one vertex buffer and drawn with a single glMultiDrawArrays() call.
+ *
+ * The vertices are stored in each polygon's own coordinate frame, tagged with the index of the
+ * polygon in the batch and the polygon's color. Because the color is part of each vertex,
+ * polygons of any color can share a batch. The model matrices of all the polygons are kept in a
+ * uniform buffer, which the shader looks up by that index. This means the polygons can move
+ * independently without the vertex buffer being touched; only the matrices are uploaded each
+ * frame.
+ *
+ * Use with shaders/vertex_multi_2d.glsl, which must be the current shader when draw() is called.
+ */
+class PolygonBatch {
+
+    /**
+     * The most polygons a batch can hold. This must match the size of the array in the shader.
+     */
+    static final int MAX_OBJECTS = 256;
+
+    // x, y and object index as floats, then the color as 4 bytes
+    private static final int STRIDE = 3 * Float.BYTES + 4;
+
+    // In the std140 layout each column of a mat3 is padded to a vec4
+    private static final int FLOATS_PER_MATRIX = 12;
+
+    private final int myMode;
+
+    // Positions as x, y pairs, colors packed as RGBA, and which polygon each vertex is from
+    private float[] myPositions;
+    private int[] myColors;
+    private int[] myObjectIndices;
+    private int myVertexCount;
+
+    // The range of vertices for each polygon
+    private int[] myFirsts;
+    private int[] myCounts;
+    private int myObjectCount;
+
+    private FloatBuffer myMatrices;
+
+    // OpenGL names of the buffers, or 0 if they haven't been created
+    private int myVertexBuffer;
+    private int myMatrixBuffer;
+    private boolean amUploaded;
+
+    /**
+     * Create an empty batch.
+     *
+     * @param mode GL_TRIANGLES to draw the polygons filled, or GL_LINE_LOOP to draw their outlines
+     */
+    PolygonBatch(int mode) {
+        myMode = mode;
+        myPositions = new float[64];
+        myColors = new int[32];
+        myObjectIndices = new int[32];
+        myFirsts = new int[MAX_OBJECTS];
+        myCounts = new int[MAX_OBJECTS];
+        myObjectCount = 0;
+        myMatrices = GLBuffers.newDirectFloatBuffer(MAX_OBJECTS * FLOATS_PER_MATRIX);
+    }
+
+    boolean isFull() {
+        return myObjectCount == MAX_OBJECTS;
+    }
+
+    /**
+     * Add a polygon to the batch.
+     *
+     * @param polygon
+     * @param color
+     * @return The index of the polygon in the batch, for use with setMatrix()
+     */
+    int add(Polygon2D polygon, Color color) {
+        if (isFull())
+            throw new IllegalStateException("Batch is full");
+
+        int index = myObjectCount++;
+        List<Point2D> points = polygon.getPoints();
+        int rgba = ColoredPoint2DBuffer.pack(color);
+        myFirsts[index] = myVertexCount;
+
+        if (myMode == GL.GL_TRIANGLES) {
+            // Triangle lists can't share vertices without indices, so expand them
+            for (int i : polygon.getTriangleIndices()) {
+                addVertex(points.get(i), index, rgba);
+            }
+        } else {
+            for (Point2D p : points) {
+                addVertex(p, index, rgba);
+            }
+        }
+
+        myCounts[index] = myVertexCount - myFirsts[index];
+        amUploaded = false;
+        return index;
+    }
+
+    /**
+     * Set the model matrix of a polygon in the batch.
+     *
+     * @param index
+     * @param matrix
+     */
+    void setMatrix(int index, Matrix3 matrix) {
+        float[] values = matrix.getValues();
+        int offset = index * FLOATS_PER_MATRIX;
+        for (int column = 0; column < 3; column++) {
+            myMatrices.put(offset + column * 4, values[column * 3]);
+            myMatrices.put(offset + column * 4 + 1, values[column * 3 + 1]);
+            myMatrices.put(offset + column * 4 + 2, values[column * 3 + 2]);
+        }
+    }
+
+    /**
+     * Draw every polygon in the batch with one call.
+     *
+     * @param gl
+     */
+    void draw(GL3 gl) {
+        if (myObjectCount == 0)
+            return;
+
+        if (myVertexBuffer == 0) {
+            int[] names = new int[2];
+            gl.glGenBuffers(2, names, 0);
+            myVertexBuffer = names[0];
+            myMatrixBuffer = names[1];
+        }
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, myVertexBuffer);
+        if (!amUploaded) {
+            ByteBuffer vertices = GLBuffers.newDirectByteBuffer(myVertexCount * STRIDE);
+            for (int i = 0; i < myVertexCount; i++) {
+                vertices.putFloat(myPositions[2*i]);
+                vertices.putFloat(myPositions[2*i + 1]);
+                vertices.putFloat(myObjectIndices[i]);
+                vertices.put((byte) (myColors[i] >>> 24));
+                vertices.put((byte) (myColors[i] >>> 16));
+                vertices.put((byte) (myColors[i] >>> 8));
+                vertices.put((byte) myColors[i]);
+            }
+            vertices.rewind();
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, vertices.capacity(), vertices,
+                    GL.GL_STATIC_DRAW);
+            Profiler.count(Counter.UPLOADED_BYTES, vertices.capacity());
+            amUploaded = true;
+        }
+
+        // The matrices change every frame. The whole block is uploaded, even if the batch isn't
+        // full, because the buffer must be at least as big as the block in the shader.
+        gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, myMatrixBuffer);
+        gl.glBufferData(GL3.GL_UNIFORM_BUFFER, myMatrices.capacity() * Float.BYTES, myMatrices,
+                GL.GL_DYNAMIC_DRAW);
+        Profiler.count(Counter.UPLOADED_BYTES, myMatrices.capacity() * Float.BYTES);
+        gl.glBindBufferBase(GL3.GL_UNIFORM_BUFFER, Shader.OBJECTS_BINDING, myMatrixBuffer);
+
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, STRIDE, 0);
+        gl.glVertexAttribPointer(Shader.OBJECT_INDEX, 1, GL.GL_FLOAT, false, STRIDE,
+                2 * Float.BYTES);
+        gl.glVertexAttribPointer(Shader.COLOR, 4, GL.GL_UNSIGNED_BYTE, true, STRIDE,
+                3 * Float.BYTES);
+        gl.glEnableVertexAttribArray(Shader.OBJECT_INDEX);
+        gl.glEnableVertexAttribArray(Shader.COLOR);
+
+        gl.glMultiDrawArrays(myMode, myFirsts, 0, myCounts, 0, myObjectCount);
+        Profiler.countDraw(myVertexCount);
+
+        gl.glDisableVertexAttribArray(Shader.OBJECT_INDEX);
+        gl.glDisableVertexAttribArray(Shader.COLOR);
+    }
+
+    /**
+     * Free the buffers.
+     *
+     * @param gl
+     */
+    void destroy(GL3 gl) {
+        if (myVertexBuffer != 0) {
+            gl.glDeleteBuffers(2, new int[] { myVertexBuffer, myMatrixBuffer }, 0);
+            myVertexBuffer = 0;
+            myMatrixBuffer = 0;
+        }
+        amUploaded = false;
+    }
+
+    private void addVertex(Point2D p, int index, int rgba) {
+        if (myVertexCount == myColors.length) {
+            myPositions = Arrays.copyOf(myPositions, myColors.length * 4);
+            myColors = Arrays.copyOf(myColors, myColors.length * 2);
+            myObjectIndices = Arrays.copyOf(myObjectIndices, myObjectIndices.length * 2);
+        }
+        myPositions[2*myVertexCount] = p.getX();
+        myPositions[2*myVertexCount + 1] = p.getY();
+        myColors[myVertexCount] = rgba;
+        myObjectIndices[myVertexCount] = index;
+        myVertexCount++;
+    }
+}
@@ -0,0 +1,531 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+import unsw.graphics.ColoredPoint2DBuffer;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Mesh;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.Shader;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * A list of objects to draw, sorted so that objects that use the same OpenGL state are drawn
+ * next to each other.
+ *
+ * Each object is given a 64-bit key, packed (from most to least significant bits) from its layer,
+ * the shader it uses, the primitive it draws and its color. The queue is sorted by these keys
+ * with a radix sort, which is stable, so objects with equal keys are drawn in the order they
+ * were added.
+ *
+ * Layers are drawn in increasing order, so an object on a higher layer is always drawn over one
+ * on a lower layer. Within a layer, objects are grouped by state, so their order in the tree
+ * only decides which is on top if they have the same state. Put objects that must overlap in a
+ * particular way on different layers.
+ *
+ * Alternatively, drawDepthTested() uses the depth buffer to layer the objects. Each object is
+ * given a depth from its layer and its place in the tree, so opaque objects come out in the
+ * right order however they are drawn. They are drawn grouped by state, and front to back
+ * within each group, so hidden pixels can be rejected early. Only objects that blend over what
+ * is behind them (those whose isOpaque() is false, e.g. cached textures) are still drawn back
+ * to front, with blending.
+ *
+ * Objects that draw a shared mesh or a frozen subtree copy what they draw (the mesh, colors and
+ * frame) into their entry when they are added, and the queue draws that rather than calling the
+ * object. So a queue that was built earlier still draws the scene as it was then, and can be
+ * drawn while another thread walks the scene tree.
+ */
+public class RenderQueue {
+
+    /**
+     * The shader used by Application2D, which drawSelf() normally draws with.
+     */
+    public static final int DEFAULT_SHADER = 0;
+
+    /**
+     * The per-vertex color shader used by frozen subtrees.
+     */
+    public static final int COLOR_SHADER = 1;
+
+    /**
+     * The shader used by BatchedSceneObject.
+     */
+    public static final int MULTI_SHADER = 2;
+
+    /**
+     * The texture shader used by CachedSceneObject.
+     */
+    public static final int TEXTURE_SHADER = 3;
+
+    // Bits 63-48 are the layer, 47-40 the shader, 39-32 the primitive and 31-0 the color
+    private static final int LAYER_SHIFT = 48;
+    private static final int SHADER_SHIFT = 40;
+    private static final int PRIMITIVE_SHIFT = 32;
+
+    private static final long STATE_MASK = (1L << LAYER_SHIFT) - 1;
+
+    // How far outside the view (in view coordinates) an object can be before it is culled, so
+    // outlines and points drawn wider than their shape aren't cut off
+    private static final float CULL_MARGIN = 0.01f;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private SceneObject[] myObjects;
+    private CoordFrame2D[] myFrames;
+    private boolean[] mySubtrees;
+    private boolean[] myCulled;
+    private long[] myKeys;
+    private int mySize;
+
+    // What entries added with addMesh() or addFrozen() draw, or null for the others
+    private Mesh[] myMeshes;
+    private Color[] myFillColors;
+    private Color[] myLineColors;
+    private FrozenMesh[] myFrozenMeshes;
+
+    // The order to draw the entries in, as indices into the arrays above
+    private int[] myOrder;
+    private int[] myScratch;
+    private int[] myCounts;
+
+    // Used by drawDepthTested(): the position of each entry in tree order, and the keys to sort
+    // it by
+    private int[] myRanks;
+    private long[] myDepthKeys;
+
+    // The corners of an object's bounding box, used by cull()
+    private final float[] myCorners;
+
+    public RenderQueue() {
+        myObjects = new SceneObject[64];
+        myFrames = new CoordFrame2D[64];
+        mySubtrees = new boolean[64];
+        myCulled = new boolean[64];
+        myKeys = new long[64];
+        myMeshes = new Mesh[64];
+        myFillColors = new Color[64];
+        myLineColors = new Color[64];
+        myFrozenMeshes = new FrozenMesh[64];
+        myOrder = new int[64];
+        myScratch = new int[64];
+        myCounts = new int[RADIX];
+        myRanks = new int[64];
+        myDepthKeys = new long[64];
+        myCorners = new float[8];
+        mySize = 0;
+    }
+
+    /**
+     * Pack the state an object draws with into the lower bits of a sort key.
+     *
+     * @param shader One of the shader constants in this class
+     * @param primitive The OpenGL primitive, e.g. GL_TRIANGLES
+     * @param color The color, or null if it doesn't matter
+     * @return
+     */
+    public static long state(int shader, int primitive, Color color) {
+        long rgba = color == null ? 0 : ColoredPoint2DBuffer.pack(color) & 0xFFFFFFFFL;
+        return (long) (shader & 0xFF) << SHADER_SHIFT
+                | (long) (primitive & 0xFF) << PRIMITIVE_SHIFT
+                | rgba;
+    }
+
+    /**
+     * Add an object to be drawn by itself, with drawSelf().
+     *
+     * @param object
+     * @param frame The object's own frame
+     */
+    public void add(SceneObject object, CoordFrame2D frame) {
+        add(object, frame, false, object.getDrawState());
+    }
+
+    /**
+     * Add an object to be drawn along with all its descendants, with draw().
+     *
+     * @param object
+     * @param frame The frame of the object's parent
+     * @param state The state the subtree is drawn with (see state())
+     */
+    public void addSubtree(SceneObject object, CoordFrame2D frame, long state) {
+        add(object, frame, true, state);
+    }
+
+    /**
+     * Add an object that draws a shared mesh, copying the colors it draws with, so the queue
+     * draws the mesh itself instead of calling drawSelf().
+     *
+     * @param object
+     * @param frame The object's own frame
+     * @param mesh
+     * @param fillColor The color to fill the mesh with, or null to not fill it
+     * @param lineColor The color to outline the mesh with, or null to not outline it
+     */
+    public void addMesh(SceneObject object, CoordFrame2D frame, Mesh mesh, Color fillColor,
+            Color lineColor) {
+        add(object, frame, false, object.getDrawState());
+        myMeshes[mySize - 1] = mesh;
+        myFillColors[mySize - 1] = fillColor;
+        myLineColors[mySize - 1] = lineColor;
+    }
+
+    /**
+     * Add a frozen subtree whose merged mesh is up to date, so the queue draws the mesh itself
+     * instead of calling draw(). Like other subtrees, it is never culled.
+     *
+     * @param object
+     * @param frame The object's own frame
+     * @param mesh
+     */
+    public void addFrozen(SceneObject object, CoordFrame2D frame, FrozenMesh mesh) {
+        add(object, frame, true, state(COLOR_SHADER, 0, null));
+        myFrozenMeshes[mySize - 1] = mesh;
+    }
+
+    /**
+     * Add every entry in another queue to the end of this one.
+     *
+     * @param other
+     */
+    public void addAll(RenderQueue other) {
+        int size = mySize + other.mySize;
+        ensureCapacity(size);
+        System.arraycopy(other.myObjects, 0, myObjects, mySize, other.mySize);
+        System.arraycopy(other.myFrames, 0, myFrames, mySize, other.mySize);
+        System.arraycopy(other.mySubtrees, 0, mySubtrees, mySize, other.mySize);
+        System.arraycopy(other.myCulled, 0, myCulled, mySize, other.mySize);
+        System.arraycopy(other.myKeys, 0, myKeys, mySize, other.mySize);
+        System.arraycopy(other.myMeshes, 0, myMeshes, mySize, other.mySize);
+        System.arraycopy(other.myFillColors, 0, myFillColors, mySize, other.mySize);
+        System.arraycopy(other.myLineColors, 0, myLineColors, mySize, other.mySize);
+        System.arraycopy(other.myFrozenMeshes, 0, myFrozenMeshes, mySize, other.mySize);
+        mySize = size;
+    }
+
+    /**
+     * Get the number of objects in the queue.
+     *
+     * @return
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Get the i-th object to be drawn. Only valid after sort(), sortForDepth() or
+     * resetOrder().
+     *
+     * @param i
+     * @return
+     */
+    public SceneObject getObject(int i) {
+        if (i < 0 || i >= mySize)
+            throw new IndexOutOfBoundsException("index: " + i + ", size: " + mySize);
+        return myObjects[myOrder[i]];
+    }
+
+    /**
+     * Get where the i-th object to be drawn was added to the queue, counting from 0.
+     *
+     * @param i
+     * @return
+     */
+    int getEntry(int i) {
+        return myOrder[i];
+    }
+
+    /**
+     * Check whether the i-th object to be drawn was added with its descendants, as a subtree.
+     *
+     * @param i
+     * @return
+     */
+    boolean isSubtree(int i) {
+        return mySubtrees[myOrder[i]];
+    }
+
+    /**
+     * Sort the queue by key, keeping objects with equal keys in the order they were added.
+     */
+    public void sort() {
+        resetOrder();
+        radixSort(myKeys);
+    }
+
+    /**
+     * Sort the queue for drawing with depth testing (see drawDepthTested()): opaque objects
+     * grouped by state and front to back within each group, then objects that blend back to
+     * front.
+     */
+    public void sortForDepth() {
+        // Find where each entry would be drawn without depth testing: by layer, then tree order
+        resetOrder();
+        for (int i = 0; i < mySize; i++) {
+            myDepthKeys[i] = myKeys[i] >>> LAYER_SHIFT;
+        }
+        radixSort(myDepthKeys);
+        for (int i = 0; i < mySize; i++) {
+            myRanks[myOrder[i]] = i;
+        }
+
+        // Sort front to back first, so that order is kept within each group by the next sort
+        resetOrder();
+        for (int i = 0; i < mySize; i++) {
+            myDepthKeys[i] = mySize - 1 - myRanks[i];
+        }
+        radixSort(myDepthKeys);
+
+        for (int i = 0; i < mySize; i++) {
+            if (myObjects[i].isOpaque()) {
+                myDepthKeys[i] = myKeys[i] & STATE_MASK;
+            } else {
+                myDepthKeys[i] = Long.MIN_VALUE | myRanks[i];
+            }
+        }
+        radixSort(myDepthKeys);
+    }
+
+    /**
+     * Draw everything in the queue, using the depth buffer to put the layers in order.
+     *
+     * The framebuffer must have a depth buffer, cleared before drawing. This is done by
+     * Application2D.
+     *
+     * @param gl
+     */
+    public void drawDepthTested(GL3 gl) {
+        sortForDepth();
+
+        gl.glEnable(GL.GL_DEPTH_TEST);
+        gl.glDepthFunc(GL.GL_LEQUAL);
+        boolean translucent = false;
+        for (int i = 0; i < mySize; i++) {
+            int entry = myOrder[i];
+            if (myObjects[entry].isDestroyed() || myCulled[entry])
+                continue;
+            if (!translucent && !myObjects[entry].isOpaque()) {
+                // Objects that blend mustn't hide the ones drawn after them
+                gl.glDepthMask(false);
+                translucent = true;
+            }
+
+            // Later entries are nearer. Entries drawn as whole subtrees share one depth, and
+            // are drawn over themselves in tree order as the depth test passes on equal depths.
+            Shader.setDepth(gl, 1 - 2f * (myRanks[entry] + 1) / (mySize + 1));
+            drawEntry(gl, entry);
+        }
+        gl.glDepthMask(true);
+        gl.glDisable(GL.GL_DEPTH_TEST);
+        Shader.setDepth(gl, 0);
+    }
+
+    /**
+     * Skip drawing the objects that can't be seen through the given camera, until the next call
+     * to cull() or showAll().
+     * 
+     * An object is culled if the bounding box of its shape is entirely outside the camera's
+     * view. Objects without a shape, and subtrees added with addSubtree(), are never culled.
+     * 
+     * @param camera
+     * @return The number of objects culled
+     */
+    public int cull(Camera camera) {
+        int culled = 0;
+        for (int i = 0; i < mySize; i++) {
+            Polygon2D shape = mySubtrees[i] ? null : myObjects[i].getShape();
+            if (shape == null) {
+                myCulled[i] = false;
+                continue;
+            }
+
+            float[] m = myFrames[i].getMatrix().getValues();
+            corner(m, 0, shape.getMinX(), shape.getMinY());
+            corner(m, 2, shape.getMaxX(), shape.getMinY());
+            corner(m, 4, shape.getMaxX(), shape.getMaxY());
+            corner(m, 6, shape.getMinX(), shape.getMaxY());
+            camera.toView(myCorners, 0, myCorners, 0, 4);
+
+            float minX = Math.min(Math.min(myCorners[0], myCorners[2]),
+                    Math.min(myCorners[4], myCorners[6]));
+            float maxX = Math.max(Math.max(myCorners[0], myCorners[2]),
+                    Math.max(myCorners[4], myCorners[6]));
+            float minY = Math.min(Math.min(myCorners[1], myCorners[3]),
+                    Math.min(myCorners[5], myCorners[7]));
+            float maxY = Math.max(Math.max(myCorners[1], myCorners[3]),
+                    Math.max(myCorners[5], myCorners[7]));
+            float limit = 1 + CULL_MARGIN;
+            myCulled[i] = minX > limit || maxX < -limit || minY > limit || maxY < -limit;
+            if (myCulled[i])
+                culled++;
+        }
+        return culled;
+    }
+
+    /**
+     * Undo cull(), so every object is drawn.
+     */
+    public void showAll() {
+        Arrays.fill(myCulled, 0, mySize, false);
+    }
+
+    /**
+     * Check whether the i-th object to be drawn was culled by cull().
+     * 
+     * @param i
+     * @return
+     */
+    public boolean isCulled(int i) {
+        if (i < 0 || i >= mySize)
+            throw new IndexOutOfBoundsException("index: " + i + ", size: " + mySize);
+        return myCulled[myOrder[i]];
+    }
+
+    /**
+     * Store a point transformed by a column-major matrix in myCorners.
+     */
+    private void corner(float[] m, int index, float x, float y) {
+        myCorners[index] = m[0]*x + m[3]*y + m[6];
+        myCorners[index + 1] = m[1]*x + m[4]*y + m[7];
+    }
+
+    /**
+     * Undo any sorting, so the entries are drawn in the order they were added.
+     */
+    public void resetOrder() {
+        for (int i = 0; i < mySize; i++) {
+            myOrder[i] = i;
+        }
+    }
+
+    /**
+     * Sort the entries in myOrder by the given keys, keeping entries with equal keys in the
+     * order they are already in.
+     */
+    private void radixSort(long[] keys) {
+        // Least significant digit first. Each pass is stable, so the result is too.
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(myCounts, 0);
+            for (int i = 0; i < mySize; i++) {
+                myCounts[digit(keys[i], shift)]++;
+            }
+
+            // Skip the pass if every key has the same digit (e.g. unused layers or colors)
+            if (mySize == 0 || myCounts[digit(keys[0], shift)] == mySize)
+                continue;
+
+            int total = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int count = myCounts[d];
+                myCounts[d] = total;
+                total += count;
+            }
+            for (int i = 0; i < mySize; i++) {
+                int entry = myOrder[i];
+                myScratch[myCounts[digit(keys[entry], shift)]++] = entry;
+            }
+
+            int[] swap = myOrder;
+            myOrder = myScratch;
+            myScratch = swap;
+        }
+    }
+
+    /**
+     * Draw everything in the queue, in sorted order.
+     *
+     * @param gl
+     */
+    public void draw(GL3 gl) {
+        for (int i = 0; i < mySize; i++) {
+            int entry = myOrder[i];
+            // Queues can be drawn a frame after they were filled (see FramePipeline), by which
+            // time the object's mesh may have been freed
+            if (myObjects[entry].isDestroyed() || myCulled[entry])
+                continue;
+            drawEntry(gl, entry);
+        }
+    }
+
+    /**
+     * Draw one entry, from what was copied into it if possible.
+     */
+    private void drawEntry(GL3 gl, int entry) {
+        CoordFrame2D frame = myFrames[entry];
+        if (myMeshes[entry] != null) {
+            if (myFillColors[entry] != null) {
+                Shader.setPenColor(gl, myFillColors[entry]);
+                myMeshes[entry].draw(gl, frame);
+            }
+            if (myLineColors[entry] != null) {
+                Shader.setPenColor(gl, myLineColors[entry]);
+                myMeshes[entry].drawOutline(gl, frame);
+            }
+        } else if (myFrozenMeshes[entry] != null) {
+            Profiler.count(Counter.OBJECTS, 1);
+            myFrozenMeshes[entry].draw(gl, frame);
+        } else if (mySubtrees[entry]) {
+            myObjects[entry].draw(gl, frame);
+        } else {
+            myObjects[entry].drawSelf(gl, frame);
+        }
+    }
+
+    /**
+     * Remove everything from the queue.
+     */
+    public void clear() {
+        // Don't hold on to objects that may have been removed from the scene
+        Arrays.fill(myObjects, 0, mySize, null);
+        Arrays.fill(myFrames, 0, mySize, null);
+        Arrays.fill(myMeshes, 0, mySize, null);
+        Arrays.fill(myFillColors, 0, mySize, null);
+        Arrays.fill(myLineColors, 0, mySize, null);
+        Arrays.fill(myFrozenMeshes, 0, mySize, null);
+        mySize = 0;
+    }
+
+    private void add(SceneObject object, CoordFrame2D frame, boolean subtree, long state) {
+        ensureCapacity(mySize + 1);
+        myObjects[mySize] = object;
+        myFrames[mySize] = frame;
+        mySubtrees[mySize] = subtree;
+        myCulled[mySize] = false;
+        myMeshes[mySize] = null;
+        myFillColors[mySize] = null;
+        myLineColors[mySize] = null;
+        myFrozenMeshes[mySize] = null;
+        // Offset the layer so that negative layers sort before positive ones
+        myKeys[mySize] = (long) (object.getLayer() - Short.MIN_VALUE) << LAYER_SHIFT
+                | state;
+        mySize++;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= myObjects.length)
+            return;
+        int capacity = Math.max(size, myObjects.length * 2);
+        myObjects = Arrays.copyOf(myObjects, capacity);
+        myFrames = Arrays.copyOf(myFrames, capacity);
+        mySubtrees = Arrays.copyOf(mySubtrees, capacity);
+        myCulled = Arrays.copyOf(myCulled, capacity);
+        myKeys = Arrays.copyOf(myKeys, capacity);
+        myMeshes = Arrays.copyOf(myMeshes, capacity);
+        myFillColors = Arrays.copyOf(myFillColors, capacity);
+        myLineColors = Arrays.copyOf(myLineColors, capacity);
+        myFrozenMeshes = Arrays.copyOf(myFrozenMeshes, capacity);
+        myOrder = new int[capacity];
+        myScratch = new int[capacity];
+        myRanks = new int[capacity];
+        myDepthKeys = new long[capacity];
+    }
+
+    private static int digit(long key, int shift) {
+        return (int) (key >>> shift) & (RADIX - 1);
+    }
+}
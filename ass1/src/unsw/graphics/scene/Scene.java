@@ -1,13 +1,24 @@
 package unsw.graphics.scene;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.geometry.Point2D;
 
 
 /**
  * A Scene consists of a scene tree and a camera attached to the tree.
  * 
+ * The scene can also be drawn through more cameras, each in its own part of the window (see
+ * addView()).
+ * 
  * Every object in the scene tree is updated on each display call.
  * Then the scene tree is rendered.
  *
@@ -21,9 +32,44 @@ public class Scene {
 
     private Camera myCamera;
 
+    // The views the scene is drawn through. The first is the main camera's.
+    private List<View> myViews;
+
+    // Views that have been removed, whose textures are freed the next time the scene is drawn
+    private List<View> myRemovedViews;
+
+    // Used by the views to draw the scene, when it isn't sorted, and the number of frames drawn
+    private RenderQueue myViewQueue;
+    private long myFrame;
+
+    // The size of the window
+    private int myWidth;
+    private int myHeight;
+
     private SceneObject root;
     private long myTime;
 
+    // The simulated time, in seconds, and how far each update moves it (0 to follow the clock)
+    private double myElapsed;
+    private float myFixedStep;
+
+    // Used to sort the scene before drawing it, or null to draw it in tree order
+    private RenderQueue myQueue;
+    private boolean amDepthTested;
+
+    // Builds frames on worker threads, or null to build them on the OpenGL thread
+    private FramePipeline myPipeline;
+
+    // Finds objects at a point, or null if nothing has been picked yet
+    private PickIndex myPickIndex;
+
+    // Whether update() has been called since the scene was last drawn
+    private boolean amUpdated;
+
+    // The versions of the root when the scene was last drawn
+    private long myDrawnVersion;
+    private long myDrawnDescendantVersion;
+
     /**
      * Construct a new scene with a camera attached to the root object.
      *
@@ -32,34 +78,351 @@ public class Scene {
         root = new SceneObject();
         myTime = System.currentTimeMillis();
         myCamera = new Camera(root);
+        myViews = new ArrayList<View>();
+        myViews.add(new View(myCamera, 0, 0, 1, 1));
+        myRemovedViews = new ArrayList<View>();
+        amUpdated = false;
+        myDrawnVersion = -1;
+        myDrawnDescendantVersion = -1;
     }
 
     public void reshape(int width, int height) {
+        myWidth = width;
+        myHeight = height;
         
-        // tell the camera that the screen has reshaped
-        myCamera.reshape(width, height);
+        // tell the cameras that the screen has reshaped
+        for (View view : myViews) {
+            view.reshape(width, height);
+        }
     }
 
     public void draw(GL3 gl) {
+        releaseRemovedViews(gl);
+        if (myViews.size() > 1 || !myViews.get(0).isFullWindow()) {
+            drawViews(gl);
+            return;
+        }
 
         // set the view matrix based on the camera position
         myCamera.setView(gl); 
         
-        // update the objects
-        update();
+        // update the objects, unless that has already been done this frame
+        if (!amUpdated) {
+            update();
+        }
+        amUpdated = false;
 
         // draw the scene tree
-        root.draw(gl, CoordFrame2D.identity());        
+        long start = Profiler.start();
+        if (myPipeline != null) {
+            myPipeline.draw(gl, root, myCamera, myQueue != null, amDepthTested);
+        } else if (myQueue == null) {
+            root.draw(gl, CoordFrame2D.identity());
+        } else {
+            myQueue.clear();
+            root.enqueue(myQueue, CoordFrame2D.identity());
+            if (amDepthTested) {
+                myQueue.drawDepthTested(gl);
+            } else {
+                myQueue.sort();
+                myQueue.draw(gl);
+            }
+        }
+        Profiler.stop(Counter.TRAVERSAL_TIME, start);
+
+        myDrawnVersion = root.getVersion();
+        myDrawnDescendantVersion = root.getDescendantVersion();
+    }
+
+    /**
+     * Draw the scene through every view. The scene tree is only walked once, and each view culls
+     * the objects its camera can't see before drawing the rest. Meshes are shared by all the
+     * views, as they belong to the OpenGL context.
+     */
+    private void drawViews(GL3 gl) {
+        if (!amUpdated) {
+            update();
+        }
+        amUpdated = false;
+        myFrame++;
+
+        int[] window = new int[4];
+        gl.glGetIntegerv(GL.GL_VIEWPORT, window, 0);
+
+        long start = Profiler.start();
+        RenderQueue queue = myQueue;
+        if (queue == null) {
+            if (myViewQueue == null)
+                myViewQueue = new RenderQueue();
+            queue = myViewQueue;
+        }
+        queue.clear();
+        root.enqueue(queue, CoordFrame2D.identity());
+        for (View view : myViews) {
+            view.draw(gl, queue, myFrame, window, myQueue != null, amDepthTested);
+        }
+        queue.showAll();
+        Profiler.stop(Counter.TRAVERSAL_TIME, start);
+
+        // Leave things as they would be with only the main view
+        gl.glViewport(window[0], window[1], window[2], window[3]);
+        myCamera.setView(gl);
+
+        myDrawnVersion = root.getVersion();
+        myDrawnDescendantVersion = root.getDescendantVersion();
+    }
+
+    /**
+     * Get the main view, which shows the scene through its camera (see getCamera()). By default
+     * it covers the whole window, but it can be moved, e.g. for split screen.
+     * 
+     * @return
+     */
+    public View getMainView() {
+        return myViews.get(0);
+    }
+
+    /**
+     * Add a view to draw the scene through, after the ones already added.
+     * 
+     * With more than one view, or if the main view doesn't cover the whole window, the scene is
+     * drawn through a {@link RenderQueue}, culled for each view, and not with worker threads (see
+     * setWorkerThreads()).
+     * 
+     * @param view
+     */
+    public void addView(View view) {
+        myViews.add(view);
+        if (myWidth > 0 && myHeight > 0)
+            view.reshape(myWidth, myHeight);
+    }
+
+    /**
+     * Stop drawing the scene through a view. The main view can't be removed.
+     * 
+     * The view's texture and framebuffer, if it has them, are freed the next time the scene is
+     * drawn, as that is when the OpenGL context is available.
+     * 
+     * @param view
+     */
+    public void removeView(View view) {
+        if (view == myViews.get(0))
+            throw new IllegalArgumentException("Can't remove the main view");
+        if (myViews.remove(view))
+            myRemovedViews.add(view);
+    }
+
+    /**
+     * Free the OpenGL resources of the views that have been removed, unless they have been
+     * added again since.
+     */
+    private void releaseRemovedViews(GL3 gl) {
+        for (View view : myRemovedViews) {
+            if (!myViews.contains(view))
+                view.release(gl);
+        }
+        myRemovedViews.clear();
+    }
+
+    /**
+     * Get every view the scene is drawn through, starting with the main view.
+     * 
+     * @return
+     */
+    public List<View> getViews() {
+        return Collections.unmodifiableList(myViews);
+    }
+
+    /**
+     * Check whether anything in the scene tree has moved or changed since it was last drawn.
+     * 
+     * @return
+     */
+    public boolean isChanged() {
+        return root.getVersion() != myDrawnVersion
+                || root.getDescendantVersion() != myDrawnDescendantVersion;
+    }
+
+    /**
+     * Choose whether to sort the scene by layer and state before drawing it.
+     * 
+     * By default the scene is drawn in tree order, so later objects are drawn over earlier
+     * ones. When sorted, objects are drawn through a {@link RenderQueue}, which groups objects
+     * that use the same state together. Use SceneObject.setLayer() to decide which objects are
+     * drawn on top.
+     * 
+     * @param sorted
+     */
+    public void setSorted(boolean sorted) {
+        myQueue = sorted ? new RenderQueue() : null;
+        if (!sorted)
+            amDepthTested = false;
     }
 
-    private void update() {
+    public boolean isSorted() {
+        return myQueue != null;
+    }
+
+    /**
+     * Choose whether to layer the scene with the depth buffer.
+     * 
+     * This sorts the scene (see setSorted()), but instead of relying on draw order, gives every
+     * object a depth from its layer and its place in the tree. Opaque objects can then be drawn
+     * in whatever order suits batching, and still overlap as they would in tree order. Only
+     * objects that blend (see SceneObject.isOpaque()) are drawn back to front.
+     * 
+     * @param depthTested
+     */
+    public void setDepthTested(boolean depthTested) {
+        if (depthTested && myQueue == null)
+            myQueue = new RenderQueue();
+        amDepthTested = depthTested;
+    }
+
+    public boolean isDepthTested() {
+        return amDepthTested;
+    }
+
+    /**
+     * Choose how many worker threads to build each frame on (see {@link FramePipeline}).
+     * 
+     * With 0 threads (the default) the scene is drawn directly on the OpenGL thread. Otherwise
+     * the scene tree is walked on the workers while the previous frame is drawn, so what is drawn
+     * lags one frame behind the scene.
+     * 
+     * @param threads
+     */
+    public void setWorkerThreads(int threads) {
+        if (myPipeline != null) {
+            myPipeline.shutdown();
+            myPipeline = null;
+        }
+        if (threads > 0)
+            myPipeline = new FramePipeline(threads);
+    }
+
+    /**
+     * Update every object in the scene tree by the time since the last update.
+     * 
+     * This is done by draw(), but can be called first (e.g. to find out with isChanged() whether
+     * the scene needs drawing), in which case draw() won't update the scene again.
+     */
+    public void update() {
+        amUpdated = true;
         
         // compute the time since the last frame
         long time = System.currentTimeMillis();
-        float dt = (time - myTime) / 1000f;
+        float dt = myFixedStep > 0 ? myFixedStep : (time - myTime) / 1000f;
         myTime = time;
+        myElapsed += dt;
         
-        root.update(dt);      
+        long start = Profiler.start();
+        root.update(dt);
+        Profiler.stop(Counter.UPDATE_TIME, start);
+    }
+
+    /**
+     * Make every update move the scene forward by the same amount of time, however long the frame
+     * actually took. This makes the scene behave the same on every run, e.g. when replaying
+     * recorded input.
+     * 
+     * @param step The time for each update in seconds, or 0 to use the time since the last update
+     */
+    public void setFixedStep(float step) {
+        if (step < 0)
+            throw new IllegalArgumentException("Negative time step: " + step);
+        myFixedStep = step;
+    }
+
+    public float getFixedStep() {
+        return myFixedStep;
+    }
+
+    /**
+     * Get the total time the scene has been updated by.
+     * 
+     * @return The time in seconds
+     */
+    public double getTime() {
+        return myElapsed;
+    }
+
+    /**
+     * Get the width of the window, as given to reshape().
+     * 
+     * @return
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Get the height of the window, as given to reshape().
+     * 
+     * @return
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Find the object drawn on top at a point in world coordinates.
+     * 
+     * Objects are found by their shape (see SceneObject.getShape()), so objects without one, or
+     * with no area (like lines), are never picked. Hidden objects aren't picked either.
+     * 
+     * Where objects overlap, the one found is the one drawn last. When the scene is sorted, that
+     * depends on the objects' layers and draw states as well as the tree (see RenderQueue).
+     * 
+     * @param x
+     * @param y
+     * @return The object, or null if there is none
+     */
+    public SceneObject pick(float x, float y) {
+        return getPickIndex().pick(x, y);
+    }
+
+    /**
+     * Find the object drawn on top at a point in the view of the main camera.
+     * 
+     * @param x The x coordinate, from -1 (left) to 1 (right)
+     * @param y The y coordinate, from -1 (bottom) to 1 (top)
+     * @return The object, or null if there is none
+     */
+    public SceneObject pickView(float x, float y) {
+        Point2D p = myCamera.fromView(x, y);
+        return pick(p.getX(), p.getY());
+    }
+
+    /**
+     * Find every object whose bounding box overlaps a rectangle in world coordinates. As with
+     * pick(), only showing objects with a shape are found.
+     * 
+     * @param x0 The x coordinate of one corner
+     * @param y0 The y coordinate of one corner
+     * @param x1 The x coordinate of the opposite corner
+     * @param y1 The y coordinate of the opposite corner
+     * @return The objects, in the order they are in the tree
+     */
+    public List<SceneObject> pickRect(float x0, float y0, float x1, float y1) {
+        return getPickIndex().pickRect(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1),
+                Math.max(y0, y1));
+    }
+
+    /**
+     * Get the index used for picking, brought up to date with the scene.
+     */
+    private PickIndex getPickIndex() {
+        if (myPickIndex == null)
+            myPickIndex = new PickIndex();
+        int order = PickIndex.TREE_ORDER;
+        if (amDepthTested) {
+            order = PickIndex.LAYER_ORDER;
+        } else if (myQueue != null) {
+            order = PickIndex.QUEUE_ORDER;
+        }
+        myPickIndex.update(root, order);
+        return myPickIndex;
     }
 
     public SceneObject getRoot() {
@@ -73,6 +436,9 @@ public class Scene {
     public void setCamera(Camera camera) {
         myCamera.destroy();
         this.myCamera = camera;
+        myViews.get(0).setCamera(camera);
+        if (myWidth > 0 && myHeight > 0)
+            myViews.get(0).reshape(myWidth, myHeight);
     }
     
 }
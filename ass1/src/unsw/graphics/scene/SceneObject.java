@@ -6,7 +6,9 @@ import java.util.List;
 import com.jogamp.opengl.GL3;
 
 import unsw.graphics.*;
+import unsw.graphics.Profiler.Counter;
 import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
 
 /**
  * A SceneObject is an object that can move around in the world.
@@ -33,6 +35,24 @@ public class SceneObject {
     
     // Is this part of the tree showing?
     private boolean amShowing;
+    private boolean amDestroyed;
+
+    // The layer the object is drawn on when the scene is sorted
+    private int myLayer;
+
+    // The label the subtree is timed on the GPU under, or null
+    private String myGpuTimerLabel;
+
+    // change counters, see invalidate()
+    private long myVersion;
+    private long myDescendantVersion;
+    private long myAppearanceVersion;
+    private long myOrderVersion;
+
+    // merged geometry of the subtree, see freeze()
+    private boolean amFrozen;
+    private FrozenMesh myFrozenMesh;
+    private long myFrozenVersion;
 
     /**
      * Special constructor for creating the root node. Do not use otherwise.
@@ -60,6 +80,8 @@ public class SceneObject {
         myChildren = new ArrayList<SceneObject>();
 
         parent.myChildren.add(this);
+        parent.descendantChanged();
+        parent.orderChanged();
 
         myRotation = 0;
         myScale = 1;
@@ -73,12 +95,25 @@ public class SceneObject {
      * Remove an object and all its children from the scene tree.
      */
     public void destroy() {
+        amDestroyed = true;
 	    List<SceneObject> childrenList = new ArrayList<SceneObject>(myChildren);
         for (SceneObject child : childrenList) {
             child.destroy();
         }
-        if(myParent != null)
+        if(myParent != null) {
             myParent.myChildren.remove(this);
+            myParent.descendantChanged();
+            myParent.orderChanged();
+        }
+    }
+
+    /**
+     * Check whether the object has been removed from the scene tree with destroy().
+     * 
+     * @return
+     */
+    public boolean isDestroyed() {
+        return amDestroyed;
     }
 
     /**
@@ -115,6 +150,7 @@ public class SceneObject {
      */
     public void setRotation(float rotation) {
         myRotation = MathUtil.normaliseAngle(rotation);
+        invalidate();
     }
 
     /**
@@ -125,6 +161,7 @@ public class SceneObject {
     public void rotate(float angle) {
         myRotation += angle;
         myRotation = MathUtil.normaliseAngle(myRotation);
+        invalidate();
     }
 
     /**
@@ -143,6 +180,7 @@ public class SceneObject {
      */
     public void setScale(float scale) {
         myScale = scale;
+        invalidate();
     }
 
     /**
@@ -152,6 +190,7 @@ public class SceneObject {
      */
     public void scale(float factor) {
         myScale *= factor;
+        invalidate();
     }
 
     /**
@@ -181,6 +220,7 @@ public class SceneObject {
      */
     public void setPosition(Point2D p) {
         myTranslation = p;
+        invalidate();
     }
 
     /**
@@ -191,6 +231,7 @@ public class SceneObject {
      */
     public void translate(float dx, float dy) {
         myTranslation = myTranslation.translate(dx, dy);
+        invalidate();
     }
 
     /**
@@ -210,6 +251,155 @@ public class SceneObject {
      */
     public void show(boolean showing) {
         amShowing = showing;
+        orderChanged();
+        invalidate();
+    }
+
+    /**
+     * Record that this object has changed in a way that affects how it is drawn, e.g. its local
+     * transform. Subclasses with their own drawing state, e.g. colors, should call
+     * invalidateAppearance() whenever that state changes.
+     * 
+     * The change is also recorded in every ancestor, so a container can cheaply tell whether
+     * anything below it has changed since it last looked (see getDescendantVersion()).
+     */
+    protected void invalidate() {
+        myVersion++;
+        if (myParent != null) {
+            myParent.descendantChanged();
+        }
+    }
+
+    /**
+     * Record that this object's appearance has changed, e.g. its colors, rather than only its
+     * transform. This is needed for the object to be rebuilt in merged geometry when it is the
+     * frozen object itself (see freeze()), as its own transform is applied when it is drawn.
+     */
+    protected void invalidateAppearance() {
+        myAppearanceVersion++;
+        orderChanged();
+        invalidate();
+    }
+
+    /**
+     * Get the layer the object is drawn on.
+     * 
+     * @return
+     */
+    public int getLayer() {
+        return myLayer;
+    }
+
+    /**
+     * Set the layer the object is drawn on.
+     * 
+     * This only has an effect when the scene is drawn through a {@link RenderQueue} (see
+     * Scene.setSorted()). Objects on higher layers are drawn over objects on lower layers,
+     * wherever they are in the tree. Descendants do not inherit the layer.
+     * 
+     * @param layer A layer from Short.MIN_VALUE to Short.MAX_VALUE. The default is 0.
+     */
+    public void setLayer(int layer) {
+        if (layer < Short.MIN_VALUE || layer > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Layer out of range: " + layer);
+        myLayer = layer;
+        orderChanged();
+        invalidate();
+    }
+
+    /**
+     * Get the label this object's subtree is timed on the GPU under.
+     * 
+     * @return The label, or null if it isn't timed
+     */
+    public String getGpuTimerLabel() {
+        return myGpuTimerLabel;
+    }
+
+    /**
+     * Time how long the GPU takes to draw this object and its descendants, when GPU timing is
+     * enabled (see Profiler.setGpuTimed()). The times are recorded by the Profiler under the
+     * given label.
+     * 
+     * Only the drawing done by draw() is timed, so this has no effect when the scene is sorted
+     * (see Scene.setSorted()), unless the subtree is drawn as a whole (e.g. it is frozen).
+     * 
+     * @param label The label, or null to stop timing the subtree
+     */
+    public void setGpuTimerLabel(String label) {
+        myGpuTimerLabel = label;
+    }
+
+    /**
+     * Record that something below this object has changed.
+     */
+    private void descendantChanged() {
+        for (SceneObject o = this; o != null; o = o.myParent) {
+            o.myDescendantVersion++;
+        }
+    }
+
+    /**
+     * Record that something in this object's subtree has changed the order it is drawn in.
+     */
+    private void orderChanged() {
+        for (SceneObject o = this; o != null; o = o.myParent) {
+            o.myOrderVersion++;
+        }
+    }
+
+    /**
+     * Get a counter that increases every time this object or a descendant changes in a way that
+     * can change the order the scene is drawn in: a child is added or removed, or an object is
+     * shown or hidden, moved to another layer, frozen or unfrozen, or its appearance changes.
+     * Transforms don't change the draw order, so they don't change this.
+     * 
+     * @return
+     */
+    public long getOrderVersion() {
+        return myOrderVersion;
+    }
+
+    /**
+     * Get a counter that increases every time this object's own drawing state changes.
+     * 
+     * @return
+     */
+    public long getVersion() {
+        return myVersion;
+    }
+
+    /**
+     * Get a counter that increases every time any descendant of this object changes, or a child
+     * is added or removed. Changes to this object itself are not included.
+     * 
+     * @return
+     */
+    public long getDescendantVersion() {
+        return myDescendantVersion;
+    }
+
+    /**
+     * Get the outline of this object's geometry in its local coordinate frame, or null if the
+     * object doesn't draw anything itself. Used for things like computing bounds.
+     * 
+     * @return
+     */
+    public Polygon2D getShape() {
+        return null;
+    }
+
+    /**
+     * Compute this object's coordinate frame from its parent's frame, by applying the local
+     * translation, rotation and scale.
+     * 
+     * @param frame The parent's coordinate frame
+     * @return
+     */
+    public CoordFrame2D localFrame(CoordFrame2D frame) {
+        return frame.translate(myTranslation)
+                .rotate(myRotation)
+                .scale(myScale, myScale);
     }
 
     /**
@@ -249,6 +439,169 @@ public class SceneObject {
         // Do nothing by default
     }
 
+    /**
+     * Describe the OpenGL state drawSelf() uses, so that a {@link RenderQueue} can draw objects
+     * that share it together. See RenderQueue.state().
+     * 
+     * By default this is the default shader, with no particular primitive or color.
+     * 
+     * @return
+     */
+    public long getDrawState() {
+        return RenderQueue.state(RenderQueue.DEFAULT_SHADER, 0, null);
+    }
+
+    /**
+     * Check whether drawSelf() covers everything it draws completely, so that it can be drawn in
+     * any order when depth testing is used (see RenderQueue.drawDepthTested()).
+     * 
+     * The bundled shaders ignore the alpha of pen and vertex colors, so shapes are always drawn
+     * opaque. Only objects that blend what they draw over the background (e.g. the texture of a
+     * CachedSceneObject) should return false.
+     * 
+     * @return true by default
+     */
+    public boolean isOpaque() {
+        return true;
+    }
+
+    /**
+     * Add this object and its descendants to a render queue instead of drawing them.
+     * 
+     * Frozen subtrees are added as a whole, as they are drawn in one go.
+     * 
+     * @param queue
+     * @param frame The frame of the object's parent
+     */
+    public void enqueue(RenderQueue queue, CoordFrame2D frame) {
+        if (!amShowing) {
+            return;
+        }
+
+        if (myFrozenMesh != null || amFrozen) {
+            // Once the merged mesh is up to date the queue can draw it by itself. Otherwise the
+            // subtree must be drawn as a whole, so the mesh is rebuilt on the OpenGL thread.
+            if (amFrozen && myFrozenMesh != null && myGpuTimerLabel == null
+                    && myFrozenVersion == myDescendantVersion + myAppearanceVersion) {
+                queue.addFrozen(this, localFrame(frame), myFrozenMesh);
+            } else {
+                queue.addSubtree(this, frame,
+                        RenderQueue.state(RenderQueue.COLOR_SHADER, 0, null));
+            }
+            return;
+        }
+
+        CoordFrame2D transform = localFrame(frame);
+        enqueueSelf(queue, transform);
+        for (SceneObject o : myChildren) {
+            o.enqueue(queue, transform);
+        }
+    }
+
+    /**
+     * Add the object itself (but not any descendants) to a render queue.
+     * 
+     * By default the queue calls drawSelf() when it draws the object. Subclasses that can copy
+     * what they draw into the queue (see RenderQueue.addMesh()) override this, so the queue
+     * doesn't read the object again. A subclass of one of those that overrides drawSelf() must
+     * override this too.
+     * 
+     * @param queue
+     * @param frame The object's own frame
+     */
+    public void enqueueSelf(RenderQueue queue, CoordFrame2D frame) {
+        queue.add(this, frame);
+    }
+
+    /**
+     * Add the object's own geometry (but not any descendants) to the merged mesh of a frozen
+     * subtree. This should add the same shapes, in the same colors, as drawSelf() draws.
+     * 
+     * This does nothing in the base SceneObject class. Subclasses that override drawSelf() should
+     * override this too, otherwise they will disappear when an ancestor is frozen.
+     * 
+     * @param mesh
+     * @param frame The object's frame, relative to the frozen object
+     */
+    public void freezeSelf(FrozenMesh mesh, CoordFrame2D frame) {
+        // Do nothing by default
+    }
+
+    /**
+     * Freeze this object and all of its descendants.
+     * 
+     * The geometry of the whole subtree is merged into a single vertex buffer, already
+     * transformed into this object's coordinate frame, and drawn with a single model matrix.
+     * This is much cheaper than drawing every object separately, so it is worth doing for
+     * composite objects whose parts don't move relative to each other.
+     * 
+     * This object can still be moved, rotated and scaled freely. If a descendant changes, or the
+     * appearance of this object itself (see invalidateAppearance()), the merged buffer is rebuilt
+     * the next time the object is drawn.
+     * 
+     * Descendants are not updated differently while frozen, only drawn differently.
+     */
+    public void freeze() {
+        amFrozen = true;
+        myFrozenVersion = -1;
+        orderChanged();
+    }
+
+    /**
+     * Go back to drawing this object and its descendants one by one.
+     */
+    public void unfreeze() {
+        amFrozen = false;
+        orderChanged();
+    }
+
+    /**
+     * Test if the object is frozen
+     * 
+     * @return
+     */
+    public boolean isFrozen() {
+        return amFrozen;
+    }
+
+    /**
+     * Draw the merged geometry of a frozen subtree, rebuilding it if necessary. If the object has
+     * been unfrozen, the merged buffer is freed instead.
+     * 
+     * @return true if the subtree was drawn
+     */
+    private boolean drawFrozen(GL3 gl, CoordFrame2D frame) {
+        if (!amFrozen) {
+            myFrozenMesh.destroy(gl);
+            myFrozenMesh = null;
+            return false;
+        }
+
+        if (myFrozenMesh == null) {
+            myFrozenMesh = new FrozenMesh();
+        }
+        long version = myDescendantVersion + myAppearanceVersion;
+        if (myFrozenVersion != version) {
+            myFrozenMesh.clear();
+            freezeTree(myFrozenMesh, CoordFrame2D.identity());
+            myFrozenVersion = version;
+        }
+        myFrozenMesh.draw(gl, frame);
+        return true;
+    }
+
+    /**
+     * Add this object and its showing descendants to the merged mesh.
+     */
+    private void freezeTree(FrozenMesh mesh, CoordFrame2D frame) {
+        freezeSelf(mesh, frame);
+        for (SceneObject o : myChildren) {
+            if (o.amShowing) {
+                o.freezeTree(mesh, o.localFrame(frame));
+            }
+        }
+    }
+
     
     // ===========================================
     // COMPLETE THE METHODS BELOW
@@ -268,14 +621,44 @@ public class SceneObject {
             return;
         }
 
+        if (myGpuTimerLabel == null) {
+            drawTree(gl, frame);
+            return;
+        }
+
+        GpuTimer timer = GpuTimer.get(gl);
+        int handle = timer.begin(gl, myGpuTimerLabel);
+        try {
+            drawTree(gl, frame);
+        } finally {
+            timer.end(gl, handle);
+        }
+    }
+
+    /**
+     * Draw the object and all of its descendants, once it is known to be showing. Subclasses
+     * that draw their descendants differently override this rather than draw(), so they can
+     * still be timed.
+     * 
+     * @param gl
+     * @param frame
+     */
+    protected void drawTree(GL3 gl, CoordFrame2D frame) {
+
         // TODO: Compute the coordinate frame for this object
         // draw the object (Call drawSelf() to draw the object itself) 
         // and all its children recursively
        
         //Calculate the frame transformation
-        CoordFrame2D transform = frame.translate(myTranslation)
-                                    .rotate(myRotation)
-                                    .scale(myScale, myScale);
+        CoordFrame2D transform = localFrame(frame);
+        Profiler.count(Counter.OBJECTS, 1);
+
+        // Frozen subtrees are drawn all at once
+        if (myFrozenMesh != null || amFrozen) {
+            if (drawFrozen(gl, transform)) {
+                return;
+            }
+        }
         
         //Calling the drawSelf function
         drawSelf(gl, transform);
@@ -379,8 +762,11 @@ public class SceneObject {
         float globalScale = getGlobalScale();
 
         myParent.myChildren.remove(this);
+        myParent.descendantChanged();
+        myParent.orderChanged();
         myParent = parent;
         myParent.myChildren.add(this);
+        myParent.orderChanged();
         
         //Create an ArrayList of object heirarchy from this.myParent->root
         ArrayList<SceneObject> heirarchy = new ArrayList<>();
@@ -420,6 +806,7 @@ public class SceneObject {
 
         //Setting the local scale
         myScale = globalScale;
+        invalidate();
     }
     
 
@@ -0,0 +1,340 @@
+package unsw.graphics.scene;
+
+import java.awt.Color;
+import java.nio.FloatBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import unsw.graphics.Matrix3;
+import unsw.graphics.Profiler;
+import unsw.graphics.Shader;
+
+/**
+ * A camera and the part of the window it is shown in. A scene can be drawn through several
+ * views at once, e.g. for split screen or a minimap (see Scene.addView()).
+ *
+ * The viewport is given as fractions of the window, from (0, 0) at the bottom left to (1, 1) at
+ * the top right, so it follows the window when it is resized.
+ *
+ * A view can be drawn less often than every frame by setting its interval. It is then rendered
+ * into a texture when it is due, and the texture is shown in between. The texture is the size of
+ * the viewport in pixels.
+ *
+ * The texture uses OpenGL resources that are not freed by the garbage collector. Call release()
+ * to free them.
+ */
+public class View {
+
+    private Camera myCamera;
+
+    // The viewport, as fractions of the window
+    private float myX;
+    private float myY;
+    private float myWidth;
+    private float myHeight;
+
+    private int myInterval;
+    private Color myBackground;
+
+    // The frame the view was last rendered in
+    private long myRenderedFrame;
+    private boolean amRendered;
+
+    // OpenGL names for the texture, or 0 if they haven't been created
+    private int myFramebuffer;
+    private int myTexture;
+    private int myQuadBuffer;
+    private int myTextureWidth;
+    private int myTextureHeight;
+
+    /**
+     * Create a view that covers the given part of the window and is drawn every frame.
+     *
+     * @param camera
+     * @param x The left edge of the viewport, from 0 to 1
+     * @param y The bottom edge of the viewport, from 0 to 1
+     * @param width The width of the viewport, from 0 to 1
+     * @param height The height of the viewport, from 0 to 1
+     */
+    public View(Camera camera, float x, float y, float width, float height) {
+        myCamera = camera;
+        setViewport(x, y, width, height);
+        myInterval = 1;
+        myBackground = null;
+        amRendered = false;
+    }
+
+    public Camera getCamera() {
+        return myCamera;
+    }
+
+    void setCamera(Camera camera) {
+        myCamera = camera;
+    }
+
+    /**
+     * Move the view to a different part of the window.
+     *
+     * @param x The left edge of the viewport, from 0 to 1
+     * @param y The bottom edge of the viewport, from 0 to 1
+     * @param width The width of the viewport, from 0 to 1
+     * @param height The height of the viewport, from 0 to 1
+     */
+    public void setViewport(float x, float y, float width, float height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Viewport must have a positive size");
+        myX = x;
+        myY = y;
+        myWidth = width;
+        myHeight = height;
+    }
+
+    /**
+     * Check whether the view covers the whole window.
+     *
+     * @return
+     */
+    public boolean isFullWindow() {
+        return myX == 0 && myY == 0 && myWidth == 1 && myHeight == 1;
+    }
+
+    public int getInterval() {
+        return myInterval;
+    }
+
+    /**
+     * Set how often the view is rendered, e.g. an interval of 4 renders it every 4th frame.
+     * Views with an interval greater than 1 are shown from a cached texture in between.
+     *
+     * @param frames The number of frames between renders. The default is 1.
+     */
+    public void setInterval(int frames) {
+        if (frames < 1)
+            throw new IllegalArgumentException("Interval must be at least 1 frame");
+        myInterval = frames;
+    }
+
+    public Color getBackground() {
+        return myBackground;
+    }
+
+    /**
+     * Set the color the viewport is cleared to before the view is drawn. By default it is not
+     * cleared, so the view is drawn over whatever is already there.
+     *
+     * @param background The color, or null not to clear the viewport
+     */
+    public void setBackground(Color background) {
+        myBackground = background;
+    }
+
+    /**
+     * Tell the camera the size of the viewport in a window of the given size.
+     *
+     * @param width The width of the window in pixels
+     * @param height The height of the window in pixels
+     */
+    public void reshape(int width, int height) {
+        myCamera.reshape(Math.max(1, Math.round(myWidth * width)),
+                Math.max(1, Math.round(myHeight * height)));
+    }
+
+    /**
+     * Draw the objects in the queue, which must hold the whole scene, through this view.
+     *
+     * @param gl
+     * @param queue
+     * @param frame The number of the frame being drawn
+     * @param window The viewport of the whole window (x, y, width, height)
+     * @param sorted Whether to sort the scene (see Scene.setSorted())
+     * @param depthTested Whether to layer the scene with the depth buffer (see
+     * Scene.setDepthTested())
+     */
+    void draw(GL3 gl, RenderQueue queue, long frame, int[] window, boolean sorted,
+            boolean depthTested) {
+        int x = window[0] + Math.round(myX * window[2]);
+        int y = window[1] + Math.round(myY * window[3]);
+        int width = Math.max(1, Math.round(myWidth * window[2]));
+        int height = Math.max(1, Math.round(myHeight * window[3]));
+
+        if (myInterval == 1) {
+            gl.glViewport(x, y, width, height);
+            gl.glEnable(GL.GL_SCISSOR_TEST);
+            gl.glScissor(x, y, width, height);
+            clear(gl, myBackground, depthTested);
+            render(gl, queue, sorted, depthTested);
+            gl.glDisable(GL.GL_SCISSOR_TEST);
+            return;
+        }
+
+        if (!amRendered || frame - myRenderedFrame >= myInterval
+                || width != myTextureWidth || height != myTextureHeight) {
+            renderToTexture(gl, queue, width, height, sorted);
+            myRenderedFrame = frame;
+            amRendered = true;
+        }
+        gl.glViewport(x, y, width, height);
+        drawTexture(gl);
+    }
+
+    /**
+     * Check whether the view has a texture and framebuffer to render into, i.e. it has been
+     * drawn with an interval greater than 1 and not released since.
+     *
+     * @return
+     */
+    public boolean hasTexture() {
+        return myTexture != 0;
+    }
+
+    /**
+     * Free the OpenGL resources used by the texture. It will be recreated if needed.
+     *
+     * @param gl
+     */
+    public void release(GL3 gl) {
+        if (myTexture != 0) {
+            gl.glDeleteTextures(1, new int[] { myTexture }, 0);
+            gl.glDeleteFramebuffers(1, new int[] { myFramebuffer }, 0);
+            gl.glDeleteBuffers(1, new int[] { myQuadBuffer }, 0);
+            myTexture = 0;
+            myFramebuffer = 0;
+            myQuadBuffer = 0;
+            myTextureWidth = 0;
+            myTextureHeight = 0;
+        }
+        amRendered = false;
+    }
+
+    private static void clear(GL3 gl, Color color, boolean depth) {
+        int bits = depth ? GL.GL_DEPTH_BUFFER_BIT : 0;
+        if (color != null) {
+            gl.glClearColor(color.getRed()/255f, color.getGreen()/255f, color.getBlue()/255f,
+                    color.getAlpha()/255f);
+            bits |= GL.GL_COLOR_BUFFER_BIT;
+        }
+        if (bits != 0)
+            gl.glClear(bits);
+    }
+
+    /**
+     * Draw the queue through the camera, culling what it can't see.
+     */
+    private void render(GL3 gl, RenderQueue queue, boolean sorted, boolean depthTested) {
+        myCamera.setView(gl);
+        queue.cull(myCamera);
+        if (depthTested) {
+            queue.drawDepthTested(gl);
+        } else {
+            if (sorted) {
+                queue.sort();
+            } else {
+                queue.resetOrder();
+            }
+            queue.draw(gl);
+        }
+    }
+
+    /**
+     * Render the view into the texture. The texture has no depth buffer, so the scene is drawn
+     * in order even if it is normally depth tested.
+     */
+    private void renderToTexture(GL3 gl, RenderQueue queue, int width, int height,
+            boolean sorted) {
+        createTarget(gl, width, height);
+
+        int[] previousFramebuffer = new int[1];
+        gl.glGetIntegerv(GL.GL_FRAMEBUFFER_BINDING, previousFramebuffer, 0);
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, myFramebuffer);
+        gl.glViewport(0, 0, width, height);
+        clear(gl, myBackground == null ? new Color(0, 0, 0, 0) : myBackground, false);
+
+        render(gl, queue, sorted, false);
+
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, previousFramebuffer[0]);
+    }
+
+    /**
+     * Create (or resize) the texture and the framebuffer that renders into it.
+     */
+    private void createTarget(GL3 gl, int width, int height) {
+        int[] names = new int[1];
+        if (myTexture == 0) {
+            gl.glGenTextures(1, names, 0);
+            myTexture = names[0];
+            gl.glGenFramebuffers(1, names, 0);
+            myFramebuffer = names[0];
+            gl.glGenBuffers(1, names, 0);
+            myQuadBuffer = names[0];
+
+            // The quad covers the whole viewport
+            FloatBuffer quad = GLBuffers.newDirectFloatBuffer(new float[] {
+                // x, y, s, t
+                -1, -1, 0, 0,
+                1, -1, 1, 0,
+                1, 1, 1, 1,
+                -1, 1, 0, 1
+            });
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, myQuadBuffer);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, 4 * 4 * Float.BYTES, quad, GL.GL_STATIC_DRAW);
+        } else if (width == myTextureWidth && height == myTextureHeight) {
+            return;
+        }
+
+        gl.glBindTexture(GL.GL_TEXTURE_2D, myTexture);
+        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA8, width, height, 0, GL.GL_RGBA,
+                GL.GL_UNSIGNED_BYTE, null);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+
+        int[] previousFramebuffer = new int[1];
+        gl.glGetIntegerv(GL.GL_FRAMEBUFFER_BINDING, previousFramebuffer, 0);
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, myFramebuffer);
+        gl.glFramebufferTexture2D(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0, GL.GL_TEXTURE_2D,
+                myTexture, 0);
+        int status = gl.glCheckFramebufferStatus(GL.GL_FRAMEBUFFER);
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, previousFramebuffer[0]);
+        if (status != GL.GL_FRAMEBUFFER_COMPLETE)
+            throw new RuntimeException("Incomplete framebuffer: " + status);
+
+        myTextureWidth = width;
+        myTextureHeight = height;
+    }
+
+    /**
+     * Draw the texture over the current viewport.
+     */
+    private void drawTexture(GL3 gl) {
+        int[] previousProgram = new int[1];
+        gl.glGetIntegerv(GL3.GL_CURRENT_PROGRAM, previousProgram, 0);
+
+        Shader.shared(gl, "shaders/vertex_tex_2d.glsl", "shaders/fragment_tex_2d.glsl").use(gl);
+        Shader.setViewMatrix(gl, Matrix3.identity());
+        Shader.setModelMatrix(gl, Matrix3.identity());
+
+        gl.glActiveTexture(GL.GL_TEXTURE0);
+        gl.glBindTexture(GL.GL_TEXTURE_2D, myTexture);
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, myQuadBuffer);
+        gl.glVertexAttribPointer(Shader.POSITION, 2, GL.GL_FLOAT, false, 4 * Float.BYTES, 0);
+        gl.glVertexAttribPointer(Shader.TEX_COORD, 2, GL.GL_FLOAT, false, 4 * Float.BYTES,
+                2 * Float.BYTES);
+        gl.glEnableVertexAttribArray(Shader.TEX_COORD);
+
+        // Like CachedSceneObject, the texture was cleared to transparent black (unless it has a
+        // background) and drawn over with opaque colors, so its colors are already multiplied by
+        // alpha.
+        gl.glEnable(GL.GL_BLEND);
+        gl.glBlendFunc(GL.GL_ONE, GL.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glDrawArrays(GL.GL_TRIANGLE_FAN, 0, 4);
+        Profiler.countDraw(4);
+        gl.glDisable(GL.GL_BLEND);
+
+        gl.glDisableVertexAttribArray(Shader.TEX_COORD);
+        gl.glUseProgram(previousProgram[0]);
+    }
+}
@@ -0,0 +1,83 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.GL3;
+
+import junit.framework.TestCase;
+import unsw.graphics.ReleaseQueue;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.BatchedSceneObject;
+import unsw.graphics.scene.PolygonalSceneObject;
+import unsw.graphics.scene.Scene;
+
+/**
+ * Tests for polygons drawn together in batches.
+ *
+ */
+public class BatchedSceneObjectTest extends TestCase {
+
+    private static final Polygon2D SQUARE = new Polygon2D(0,0, 1,0, 1,1, 0,1);
+
+    @Test
+    public void testBatchCount() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        Scene scene = new Scene();
+        scene.reshape(16, 16);
+        BatchedSceneObject batched = new BatchedSceneObject(scene.getRoot());
+        List<PolygonalSceneObject> polygons = new ArrayList<PolygonalSceneObject>();
+        for (int i = 0; i < 300; i++) {
+            polygons.add(new PolygonalSceneObject(batched, SQUARE, Color.RED, null));
+        }
+        try {
+            // A batch holds 256 polygons, and none of them are outlined
+            scene.draw(gl);
+            assertEquals(2, batched.getBatchCount());
+
+            // Outlining one polygon rebuilds the batches with a line batch for it
+            polygons.get(299).setLineColor(Color.BLACK);
+            scene.draw(gl);
+            assertEquals(3, batched.getBatchCount());
+
+            // Changing only a fill color keeps the same number of batches
+            polygons.get(0).setFillColor(Color.BLUE);
+            scene.draw(gl);
+            assertEquals(3, batched.getBatchCount());
+        } finally {
+            context.destroy();
+        }
+    }
+
+    @Test
+    public void testDestroyReleases() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        Scene scene = new Scene();
+        scene.reshape(16, 16);
+        BatchedSceneObject batched = new BatchedSceneObject(scene.getRoot());
+        new PolygonalSceneObject(batched, SQUARE, Color.RED, Color.BLACK);
+        try {
+            scene.draw(gl);
+            assertEquals(2, batched.getBatchCount());
+
+            // The batches are freed the next time the release queue is flushed
+            batched.destroy();
+            assertEquals(2, batched.getBatchCount());
+            ReleaseQueue.get(gl).flush(gl);
+            assertEquals(0, batched.getBatchCount());
+        } finally {
+            context.destroy();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.GL3;
+
+import junit.framework.TestCase;
+import unsw.graphics.ReleaseQueue;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.CachedSceneObject;
+import unsw.graphics.scene.PolygonalSceneObject;
+import unsw.graphics.scene.Scene;
+
+/**
+ * Tests for subtrees drawn through a cached texture.
+ *
+ */
+public class CachedSceneObjectTest extends TestCase {
+
+    private static final Polygon2D SQUARE = new Polygon2D(0,0, 1,0, 1,1, 0,1);
+
+    @Test
+    public void testDestroyReleases() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        Scene scene = new Scene();
+        scene.reshape(16, 16);
+        CachedSceneObject cached = new CachedSceneObject(scene.getRoot());
+        new PolygonalSceneObject(cached, SQUARE, Color.RED, null);
+        try {
+            scene.draw(gl);
+            assertTrue(cached.hasTexture());
+
+            // The texture is freed the next time the release queue is flushed
+            cached.destroy();
+            assertTrue(cached.hasTexture());
+            ReleaseQueue.get(gl).flush(gl);
+            assertFalse(cached.hasTexture());
+        } finally {
+            context.destroy();
+        }
+    }
+}
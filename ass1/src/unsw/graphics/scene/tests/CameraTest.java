@@ -0,0 +1,130 @@
+package unsw.graphics.scene.tests;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.CameraBlock;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Matrix3;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.Vector3;
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.scene.Camera;
+import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Tests for the camera's view transform.
+ *
+ */
+public class CameraTest extends TestCase {
+
+    private static final float EPSILON = 0.0001f;
+
+    private Camera makeCamera(SceneObject parent) {
+        Camera camera = new Camera(parent);
+        camera.reshape(800, 600);
+        camera.setPosition(2, -1);
+        camera.setRotation(30);
+        camera.setScale(3);
+        return camera;
+    }
+
+    @Test
+    public void testFromViewInvertsView() {
+        Scene scene = new Scene();
+        Camera camera = makeCamera(scene.getRoot());
+
+        // A point in the view maps back onto itself through the view transform
+        Point2D world = camera.fromView(0.25f, -0.5f);
+        Vector3 view = camera.getViewFrame().getMatrix().multiply(world.asHomogenous());
+        assertEquals(0.25f, view.asPoint2D().getX(), EPSILON);
+        assertEquals(-0.5f, view.asPoint2D().getY(), EPSILON);
+
+        Point2D back = camera.toView(world.getX(), world.getY());
+        assertEquals(0.25f, back.getX(), EPSILON);
+        assertEquals(-0.5f, back.getY(), EPSILON);
+    }
+
+    @Test
+    public void testCached() {
+        Scene scene = new Scene();
+        Camera camera = makeCamera(scene.getRoot());
+
+        CoordFrame2D view = camera.getViewFrame();
+        assertSame(view, camera.getViewFrame());
+
+        camera.reshape(600, 600);
+        assertNotSame(view, camera.getViewFrame());
+    }
+
+    @Test
+    public void testParentMoved() {
+        Scene scene = new Scene();
+        SceneObject parent = new SceneObject(scene.getRoot());
+        Camera camera = makeCamera(parent);
+
+        Point2D before = camera.fromView(0, 0);
+        parent.translate(5, 0);
+        Point2D after = camera.fromView(0, 0);
+
+        assertEquals(before.getX() + 5, after.getX(), EPSILON);
+        assertEquals(before.getY(), after.getY(), EPSILON);
+    }
+
+    @Test
+    public void testBatch() {
+        Scene scene = new Scene();
+        Camera camera = makeCamera(scene.getRoot());
+
+        float[] points = { 0, 0, 1, 1, -0.5f, 0.25f };
+        float[] world = new float[points.length + 2];
+        camera.fromView(points, 0, world, 2, 3);
+        for (int i = 0; i < 3; i++) {
+            Point2D p = camera.fromView(points[2*i], points[2*i + 1]);
+            assertEquals(p.getX(), world[2 + 2*i], EPSILON);
+            assertEquals(p.getY(), world[2 + 2*i + 1], EPSILON);
+        }
+
+        // In place
+        camera.toView(world, 2, world, 2, 3);
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(points[i], world[2 + i], EPSILON);
+        }
+    }
+
+    @Test
+    public void testBlockUploadedOnce() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        CameraBlock block = CameraBlock.get(context.getGL());
+        Profiler.setEnabled(true);
+        try {
+            Profiler.beginFrame();
+            block.setTime(1.5f);
+            block.setViewMatrix(Matrix3.identity());
+            block.setViewMatrix(makeCamera(new Scene().getRoot()).getViewFrame().getMatrix());
+            block.setAspectRatio(4f / 3);
+            assertTrue(block.isDirty());
+            block.flush(context.getGL());
+            block.flush(context.getGL());
+            Profiler.endFrame();
+            assertFalse(block.isDirty());
+            assertEquals(16 * Float.BYTES, Profiler.get(Counter.UPLOADED_BYTES, 0));
+
+            // Setting the same values again doesn't need another upload
+            block.setAspectRatio(4f / 3);
+            assertFalse(block.isDirty());
+            block.setTime(2);
+            assertTrue(block.isDirty());
+        } finally {
+            Profiler.setEnabled(false);
+            block.destroy(context.getGL());
+            context.destroy();
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package unsw.graphics.scene.tests;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.FrameTimes;
+
+/**
+ * Tests for the percentiles reported by FrameTimes.
+ *
+ */
+public class FrameTimesTest extends TestCase {
+
+    private static final double EPSILON = 0.0001;
+
+    @Test
+    public void testPercentiles() {
+        FrameTimes times = new FrameTimes(100);
+        for (int i = 1; i <= 100; i++) {
+            // 0.95ms, 1.95ms, ... 99.95ms
+            times.record(i * 1000000L - 50000);
+        }
+
+        assertEquals(100, times.getCount());
+        assertEquals(50.0, times.getP50(), EPSILON);
+        assertEquals(95.0, times.getP95(), EPSILON);
+        assertEquals(99.0, times.getP99(), EPSILON);
+    }
+
+    @Test
+    public void testWindow() {
+        FrameTimes times = new FrameTimes(10);
+        for (int i = 0; i < 10; i++) {
+            times.record(50000000L);
+        }
+        for (int i = 0; i < 10; i++) {
+            times.record(950000L);
+        }
+
+        // The slow frames have all rolled out of the window
+        assertEquals(10, times.getCount());
+        assertEquals(1.0, times.getP99(), EPSILON);
+    }
+
+    @Test
+    public void testOverflow() {
+        FrameTimes times = new FrameTimes(4);
+        times.record(1000000L);
+        times.record(250000000L);
+
+        assertEquals(250.0, times.getP99(), EPSILON);
+    }
+
+}
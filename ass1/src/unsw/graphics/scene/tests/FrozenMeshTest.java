@@ -0,0 +1,55 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.FrozenMesh;
+import unsw.graphics.scene.LineSceneObject;
+import unsw.graphics.scene.PolygonalSceneObject;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Tests for the merged geometry of frozen subtrees.
+ *
+ */
+public class FrozenMeshTest extends TestCase {
+
+    private static final Polygon2D SQUARE = new Polygon2D(0,0, 1,0, 1,1, 0,1);
+
+    @Test
+    public void testTreeOrder() {
+        SceneObject root = new SceneObject();
+        new PolygonalSceneObject(root, SQUARE, Color.RED, Color.BLACK);
+        new PolygonalSceneObject(root, SQUARE, Color.WHITE, Color.BLACK);
+        PolygonalSceneObject last = new PolygonalSceneObject(root, SQUARE, Color.BLUE, null);
+
+        FrozenMesh mesh = new FrozenMesh();
+        for (SceneObject o : root.getChildren()) {
+            o.freezeSelf(mesh, CoordFrame2D.identity());
+        }
+
+        // fill, outline, fill, outline, then the last fill, which has no outline
+        assertEquals(5, mesh.getRunCount());
+
+        // Consecutive fills are drawn together
+        mesh.clear();
+        last.freezeSelf(mesh, CoordFrame2D.identity());
+        last.freezeSelf(mesh, CoordFrame2D.identity());
+        assertEquals(1, mesh.getRunCount());
+    }
+
+    @Test
+    public void testNoLineColor() {
+        SceneObject root = new SceneObject();
+        LineSceneObject line = new LineSceneObject(root, 0, 0, 1, 1, null);
+
+        FrozenMesh mesh = new FrozenMesh();
+        line.freezeSelf(mesh, CoordFrame2D.identity());
+        assertEquals(0, mesh.getVertexCount());
+        assertEquals(0, mesh.getRunCount());
+    }
+}
@@ -0,0 +1,61 @@
+package unsw.graphics.scene.tests;
+
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLException;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
+import com.jogamp.opengl.GLProfile;
+
+/**
+ * An offscreen OpenGL context for tests that need to talk to the GPU.
+ *
+ * Not every machine the tests run on has OpenGL 3 (e.g. a build server without Mesa), so
+ * create() returns null instead of failing when no context can be made. Tests should return
+ * straight away in that case.
+ *
+ */
+public class HeadlessGL {
+
+    private final GLOffscreenAutoDrawable drawable;
+
+    private HeadlessGL(GLOffscreenAutoDrawable drawable) {
+        this.drawable = drawable;
+    }
+
+    /**
+     * Create a small offscreen context and make it current on this thread.
+     *
+     * @return The context, or null if OpenGL 3 is not available
+     */
+    public static HeadlessGL create() {
+        try {
+            GLProfile profile = GLProfile.get(GLProfile.GL3);
+            GLCapabilities capabilities = new GLCapabilities(profile);
+            capabilities.setOnscreen(false);
+            capabilities.setFBO(true);
+            GLOffscreenAutoDrawable drawable = GLDrawableFactory.getFactory(profile)
+                    .createOffscreenAutoDrawable(null, capabilities, null, 16, 16);
+            drawable.display();
+            drawable.getContext().makeCurrent();
+            return new HeadlessGL(drawable);
+        } catch (GLException e) {
+            return null;
+        } catch (LinkageError e) {
+            // The native libraries couldn't be loaded
+            return null;
+        }
+    }
+
+    public GL3 getGL() {
+        return drawable.getGL().getGL3();
+    }
+
+    /**
+     * Release and destroy the context.
+     */
+    public void destroy() {
+        drawable.getContext().release();
+        drawable.destroy();
+    }
+}
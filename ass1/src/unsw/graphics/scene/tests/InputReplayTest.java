@@ -0,0 +1,78 @@
+package unsw.graphics.scene.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.jogamp.newt.event.KeyEvent;
+
+import junit.framework.TestCase;
+import unsw.graphics.Input;
+import unsw.graphics.InputRecorder;
+import unsw.graphics.InputReplay;
+
+/**
+ * Tests that input recorded by InputRecorder is played back by InputReplay at the same times.
+ *
+ */
+public class InputReplayTest extends TestCase {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(bytes);
+        Input input = new Input();
+
+        input.post(Input.MOUSE_PRESSED, 1, 0, 100, 200);
+        input.update();
+        recorder.record(0.5, input);
+
+        // Frames without input aren't written
+        input.update();
+        recorder.record(0.75, input);
+
+        input.post(Input.KEY_PRESSED, KeyEvent.VK_SPACE, 0, 0, 0);
+        input.post(Input.MOUSE_WHEEL, -2, 0, 0, 0);
+        input.update();
+        recorder.record(1.0, input);
+        recorder.close();
+
+        assertEquals(2, recorder.getFrames());
+        assertEquals(3, recorder.getEvents());
+        assertEquals(4 + 2 * 10 + 3 * 11, bytes.size());
+
+        InputReplay replay = new InputReplay(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(2, replay.getFrames());
+        assertEquals(1.0, replay.getEndTime(), 0);
+
+        Input played = new Input();
+        assertEquals(0, replay.play(0.25, played));
+        assertEquals(1, replay.play(0.5, played));
+        played.update();
+        assertTrue(played.wasButtonPressed(1));
+        assertEquals(100, played.getMouseX());
+        assertEquals(200, played.getMouseY());
+        assertFalse(replay.isFinished());
+
+        assertEquals(2, replay.play(2.0, played));
+        played.update();
+        assertTrue(played.wasKeyPressed(KeyEvent.VK_SPACE));
+        assertEquals(-2, played.getWheel());
+        assertTrue(replay.isFinished());
+
+        replay.rewind();
+        assertEquals(3, replay.play(2.0, new Input()));
+    }
+
+    @Test
+    public void testNotRecording() {
+        try {
+            new InputReplay(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package unsw.graphics.scene.tests;
+
+import org.junit.Test;
+
+import com.jogamp.newt.event.InputEvent;
+import com.jogamp.newt.event.KeyEvent;
+
+import junit.framework.TestCase;
+import unsw.graphics.Input;
+
+/**
+ * Tests for the per-frame state worked out by Input.
+ *
+ */
+public class InputTest extends TestCase {
+
+    @Test
+    public void testButtons() {
+        Input input = new Input();
+        input.post(Input.MOUSE_MOVED, 0, 0, 10, 20);
+        input.post(Input.MOUSE_PRESSED, 1, 0, 30, 40);
+        assertEquals(2, input.update());
+
+        assertTrue(input.hasMouse());
+        assertEquals(30, input.getMouseX());
+        assertEquals(40, input.getMouseY());
+        assertTrue(input.isButtonDown(1));
+        assertTrue(input.wasButtonPressed(1));
+        assertFalse(input.wasButtonPressed(3));
+
+        // Presses only last a frame, but the button stays down
+        assertEquals(0, input.update());
+        assertTrue(input.isButtonDown(1));
+        assertFalse(input.wasButtonPressed(1));
+
+        input.post(Input.MOUSE_RELEASED, 1, 0, 30, 40);
+        input.update();
+        assertFalse(input.isButtonDown(1));
+        assertTrue(input.wasButtonReleased(1));
+    }
+
+    @Test
+    public void testKeys() {
+        Input input = new Input();
+        input.post(Input.KEY_PRESSED, KeyEvent.VK_A, 0, 0, 0);
+        input.post(Input.KEY_PRESSED, KeyEvent.VK_B, 0, 0, 0);
+        input.post(Input.KEY_RELEASED, KeyEvent.VK_B, 0, 0, 0);
+        input.update();
+
+        assertFalse(input.hasMouse());
+        assertTrue(input.isKeyDown(KeyEvent.VK_A));
+        assertTrue(input.wasKeyPressed(KeyEvent.VK_A));
+        assertFalse(input.isKeyDown(KeyEvent.VK_B));
+        assertTrue(input.wasKeyPressed(KeyEvent.VK_B));
+        assertTrue(input.wasKeyReleased(KeyEvent.VK_B));
+
+        // Auto-repeats are events, but don't count as presses
+        input.post(Input.KEY_RELEASED, KeyEvent.VK_A, InputEvent.AUTOREPEAT_MASK, 0, 0);
+        input.post(Input.KEY_PRESSED, KeyEvent.VK_A, InputEvent.AUTOREPEAT_MASK, 0, 0);
+        input.update();
+        assertEquals(2, input.getEventCount());
+        assertEquals(Input.KEY_PRESSED, input.getEventType(1));
+        assertEquals(KeyEvent.VK_A, input.getEventCode(1));
+        assertTrue(input.isKeyDown(KeyEvent.VK_A));
+        assertFalse(input.wasKeyPressed(KeyEvent.VK_A));
+        assertFalse(input.wasKeyReleased(KeyEvent.VK_A));
+        assertFalse(input.wasKeyPressed(KeyEvent.VK_B));
+    }
+
+    @Test
+    public void testFull() {
+        Input input = new Input();
+        for (int i = 0; i < Input.CAPACITY; i++) {
+            assertTrue(input.post(Input.MOUSE_MOVED, 0, 0, i, i));
+        }
+        assertFalse(input.post(Input.MOUSE_MOVED, 0, 0, -1, -1));
+        assertEquals(1, input.getDroppedEvents());
+
+        assertEquals(Input.CAPACITY, input.update());
+        assertEquals(Input.CAPACITY - 1, input.getMouseX());
+
+        // Draining makes room again, and the ring wraps around
+        assertTrue(input.post(Input.MOUSE_MOVED, 0, 0, 5, 6));
+        assertEquals(1, input.update());
+        assertEquals(5, input.getMouseX());
+        assertEquals(6, input.getEventY(0));
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        final Input input = new Input();
+        final int events = 100000;
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= events; i++) {
+                while (!input.post(Input.MOUSE_MOVED, 0, 0, i, 0))
+                    Thread.yield();
+            }
+        });
+        producer.start();
+
+        // Every event arrives, in order
+        int last = 0;
+        while (last < events) {
+            input.update();
+            for (int i = 0; i < input.getEventCount(); i++) {
+                assertEquals(last + 1, input.getEventX(i));
+                last++;
+            }
+        }
+        producer.join();
+    }
+}
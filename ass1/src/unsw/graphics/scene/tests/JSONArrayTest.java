@@ -0,0 +1,97 @@
+package unsw.graphics.scene.tests;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for JSONArray, particularly arrays of numbers, which are kept unboxed.
+ *
+ */
+public class JSONArrayTest extends TestCase {
+
+    @Test
+    public void testNumbers() {
+        JSONArray array = new JSONArray("[1, 2.5, -3, 3000000000, 1e2, -0.0, 9007199254740993]");
+        assertEquals(7, array.length());
+
+        // The same types as stringToValue gives
+        assertEquals(Integer.valueOf(1), array.get(0));
+        assertEquals(Double.valueOf(2.5), array.get(1));
+        assertEquals(Integer.valueOf(-3), array.get(2));
+        assertEquals(Long.valueOf(3000000000L), array.get(3));
+        assertEquals(Double.valueOf(100), array.get(4));
+        assertEquals(Double.valueOf(-0.0), array.get(5));
+
+        // Too big to be exact as a double, so it is kept boxed
+        assertEquals(Long.valueOf(9007199254740993L), array.get(6));
+        assertEquals(9007199254740993L, array.getLong(6));
+
+        assertEquals(2.5, array.getDouble(1));
+        assertEquals(2, array.getInt(1));
+        assertEquals(3000000000L, array.getLong(3));
+        assertEquals("[1,2.5,-3,3000000000,100,-0,9007199254740993]", array.toString());
+    }
+
+    @Test
+    public void testMixed() {
+        JSONArray array = new JSONArray("[0.5, 1, 2]");
+        array.put(3);
+        array.put(3000000000L);
+        array.put(0, 4.5);
+        assertEquals(4.5, array.getDouble(0));
+        assertEquals("[4.5,1,2,3,3000000000]", array.toString());
+
+        // A value that isn't a number moves them all into the list
+        array.put("four");
+        array.put(new JSONObject("{\"a\": 5}"));
+        assertEquals(7, array.length());
+        assertEquals(Double.valueOf(4.5), array.get(0));
+        assertEquals(Integer.valueOf(1), array.get(1));
+        assertEquals(Long.valueOf(3000000000L), array.get(4));
+        assertEquals("four", array.getString(5));
+        assertEquals(5, array.getJSONObject(6).getInt("a"));
+
+        array = new JSONArray("[1, \"two\", 3.5]");
+        assertEquals("two", array.getString(1));
+        assertEquals(3.5, array.getDouble(2));
+
+        // Padding with nulls
+        array = new JSONArray("[1]");
+        array.put(3, 4);
+        assertEquals("[1,null,null,4]", array.toString());
+    }
+
+    @Test
+    public void testRemove() {
+        JSONArray array = new JSONArray("[1, 2.5, 3, 4.5]");
+        assertEquals(Double.valueOf(2.5), array.remove(1));
+        assertEquals(3, array.length());
+        assertEquals(Integer.valueOf(3), array.get(1));
+        assertEquals(Double.valueOf(4.5), array.get(2));
+        assertNull(array.opt(3));
+        assertTrue(Double.isNaN(array.optDouble(3)));
+    }
+
+    @Test
+    public void testLarge() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 100000; i++) {
+            sb.append(i % 2 == 0 ? Integer.toString(i) : i + ".25").append(", ");
+        }
+        sb.append("]");
+        JSONArray array = new JSONArray(sb.toString());
+
+        assertEquals(100000, array.length());
+        double[] values = array.toDoubleArray();
+        for (int i = 0; i < values.length; i++) {
+            double expected = i % 2 == 0 ? i : i + 0.25;
+            assertEquals(expected, values[i]);
+            assertEquals(expected, array.getDouble(i));
+        }
+        assertEquals(Integer.valueOf(99998), array.get(99998));
+        assertEquals(array.toString(), new JSONArray(array.toString()).toString());
+    }
+}
@@ -0,0 +1,150 @@
+package unsw.graphics.scene.tests;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONReader;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.examples.sailing.Map;
+import unsw.graphics.scene.Scene;
+
+/**
+ * Tests for reading JSON a token at a time with JSONReader.
+ *
+ */
+public class JSONReaderTest extends TestCase {
+
+    private static final double EPSILON = 0.0001;
+
+    @Test
+    public void testTokens() {
+        JSONReader reader = new JSONReader(
+                "{\"a\": [1, -2.5e1, \"three\", true, null], 'b': {\"c\": false}, d: x}");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(JSONReader.NUMBER, reader.peek());
+        assertEquals(1, reader.nextInt());
+        assertEquals(-25.0, reader.nextDouble(), EPSILON);
+        assertEquals("three", reader.nextString());
+        assertTrue(reader.nextBoolean());
+        reader.nextNull();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+
+        assertEquals("b", reader.nextName());
+        reader.beginObject();
+        assertEquals("c", reader.nextName());
+        assertFalse(reader.nextBoolean());
+        reader.endObject();
+
+        // Unquoted strings are accepted, like JSONObject does
+        assertEquals("d", reader.nextName());
+        assertEquals("x", reader.nextString());
+        reader.endObject();
+        assertEquals(JSONReader.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testSkip() {
+        JSONReader reader = new JSONReader("{\"skip\": {\"a\": [1, [2, {}]], \"b\": \"}\"}, "
+                + "\"other\": [3], \"keep\": 4}");
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+
+        // Skipping a name skips its value too
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals(4, reader.nextLong());
+        reader.endObject();
+    }
+
+    @Test
+    public void testSeparators() {
+        // Pairs may be separated by ';', and a separator may come before the closing bracket
+        JSONReader reader = new JSONReader("{\"a\": 1; \"b\": [2, 3,], \"c\": 4;}");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        assertEquals(1, reader.nextInt());
+        assertEquals("b", reader.nextName());
+        reader.beginArray();
+        assertEquals(2, reader.nextInt());
+        assertEquals(3, reader.nextInt());
+        reader.endArray();
+        assertEquals("c", reader.nextName());
+        assertEquals(4, reader.nextInt());
+        reader.endObject();
+    }
+
+    @Test
+    public void testArrays() {
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            many.append(i).append(".5, ");
+        }
+        JSONReader reader = new JSONReader("{\"polygon\": [0, 1.5, -2, 3e1], \"empty\": [], "
+                + "\"many\": [" + many + "40.5]}");
+        reader.beginObject();
+        assertEquals("polygon", reader.nextName());
+        float[] polygon = reader.nextFloatArray();
+        assertEquals(4, polygon.length);
+        assertEquals(1.5f, polygon[1]);
+        assertEquals(30f, polygon[3]);
+
+        assertEquals("empty", reader.nextName());
+        assertEquals(0, reader.nextDoubleArray().length);
+
+        assertEquals("many", reader.nextName());
+        double[] values = reader.nextDoubleArray();
+        assertEquals(41, values.length);
+        assertEquals(40.5, values[40]);
+        reader.endObject();
+
+        JSONArray array = new JSONArray("[1, \"2.5\", -3]");
+        assertEquals(2.5, array.toDoubleArray()[1]);
+        assertEquals(-3f, array.toFloatArray()[2]);
+    }
+
+    @Test
+    public void testErrors() {
+        JSONReader reader = new JSONReader("{\"a\" 1}");
+        reader.beginObject();
+        reader.nextName();
+        try {
+            reader.nextInt();
+            fail("Expected a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+
+        reader = new JSONReader("[\"a\"]");
+        reader.beginArray();
+        try {
+            reader.nextDouble();
+            fail("Expected a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        Scene scene = new Scene();
+        InputStream in = new FileInputStream("res/sailing/map.json");
+        Map map = Map.read(scene, in);
+        in.close();
+
+        assertEquals(-10, map.player().getPosition().getX(), EPSILON);
+        assertEquals(-10, map.player().getPosition().getY(), EPSILON);
+        assertEquals(1, map.islands().size());
+        assertEquals(4, map.islands().get(0).getShape().getPoints().size());
+        assertEquals(1, map.merchants().size());
+        assertEquals(45, map.merchants().get(0).getRotation(), EPSILON);
+    }
+}
@@ -0,0 +1,145 @@
+package unsw.graphics.scene.tests;
+
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import org.json.JSONObject;
+import org.json.JSONReader;
+import org.json.JSONTokener;
+import org.json.UTF8Tokener;
+
+/**
+ * Measures how fast JSON is read from a Reader, by JSONObject (through JSONTokener) and by
+ * JSONReader, on generated maps of a few megabytes. JSONReader is also measured reading the
+ * UTF-8 bytes of the map through UTF8Tokener.
+ *
+ * Run it with the number of islands in each map as arguments, e.g. 20000 80000. Each
+ * measurement is the best of several runs, after warming up.
+ */
+public class JSONTokenerBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        if (args.length == 0)
+            args = new String[] { "20000", "80000" };
+
+        for (String arg : args) {
+            String text = map(Integer.parseInt(arg));
+            byte[] bytes = text.getBytes(Charset.forName("UTF-8"));
+            double megabytes = text.length() / (1024.0 * 1024.0);
+            System.out.printf("%s islands, %.1f MB%n", arg, megabytes);
+
+            // Warm up, and make sure both read the same numbers
+            double sum = readTree(text);
+            if (sum != readStream(new JSONReader(new StringReader(text))))
+                throw new AssertionError("JSONObject and JSONReader disagree");
+            if (sum != readStream(new JSONReader(new UTF8Tokener(bytes))))
+                throw new AssertionError("JSONObject and UTF8Tokener disagree");
+
+            long tree = Long.MAX_VALUE;
+            long stream = Long.MAX_VALUE;
+            long skip = Long.MAX_VALUE;
+            long utf8 = Long.MAX_VALUE;
+            long utf8Skip = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                readTree(text);
+                tree = Math.min(tree, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                readStream(new JSONReader(new StringReader(text)));
+                stream = Math.min(stream, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                new JSONReader(new StringReader(text)).skipValue();
+                skip = Math.min(skip, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                readStream(new JSONReader(new UTF8Tokener(bytes)));
+                utf8 = Math.min(utf8, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                new JSONReader(new UTF8Tokener(bytes)).skipValue();
+                utf8Skip = Math.min(utf8Skip, System.nanoTime() - start);
+            }
+            report("JSONObject", tree, megabytes);
+            report("JSONReader", stream, megabytes);
+            report("JSONReader.skipValue", skip, megabytes);
+            report("UTF8Tokener", utf8, megabytes);
+            report("UTF8Tokener.skipValue", utf8Skip, megabytes);
+        }
+    }
+
+    private static void report(String name, long nanos, double megabytes) {
+        System.out.printf("  %-22s %8.1f ms %8.1f MB/s%n", name, nanos / 1e6,
+                megabytes / (nanos / 1e9));
+    }
+
+    /**
+     * Generate a map like res/sailing/map.json, with many islands.
+     */
+    private static String map(int islands) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n\t\"player\" : { \"x\": -10, \"y\": -10, \"angle\" : 0; },\n");
+        sb.append("\t\"islands\" : [\n");
+        for (int i = 0; i < islands; i++) {
+            sb.append("\t\t{ \"name\": \"Island ").append(i)
+                    .append(i % 10 == 0 ? " \\\"the big one\\\"" : "")
+                    .append("\", \"x\" : ").append(i % 1000).append(".25, \"y\" : ")
+                    .append(i / 1000).append(", \"polygon\" : [");
+            for (int p = 0; p < 8; p++) {
+                sb.append(p == 0 ? "" : ", ").append(p * 1.5).append(", ").append(-p);
+            }
+            sb.append("] },\n");
+        }
+        sb.append("\t],\n\t\"merchants\" : []\n}\n");
+        return sb.toString();
+    }
+
+    private static double readTree(String text) {
+        JSONObject map = new JSONObject(new JSONTokener(new StringReader(text)));
+        double sum = 0;
+        for (int i = 0; i < map.getJSONArray("islands").length(); i++) {
+            JSONObject island = map.getJSONArray("islands").getJSONObject(i);
+            sum += island.getDouble("x") + island.getDouble("y");
+            for (int p = 0; p < island.getJSONArray("polygon").length(); p++) {
+                sum += island.getJSONArray("polygon").getDouble(p);
+            }
+        }
+        return sum;
+    }
+
+    private static double readStream(JSONReader reader) {
+        double sum = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("islands")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("x") || name.equals("y")) {
+                        sum += reader.nextDouble();
+                    } else if (name.equals("polygon")) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            sum += reader.nextDouble();
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return sum;
+    }
+}
@@ -0,0 +1,181 @@
+package unsw.graphics.scene.tests;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for JSONTokener, particularly where its window is refilled.
+ *
+ */
+public class JSONTokenerTest extends TestCase {
+
+    /**
+     * A reader that gives out at most a few characters at a time.
+     */
+    private static class TrickleReader extends Reader {
+        private final String text;
+        private int pos;
+
+        TrickleReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (pos == text.length())
+                return -1;
+            int n = Math.min(Math.min(len, 1 + pos % 3), text.length() - pos);
+            text.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testStrings() {
+        String text = "{\"plain\": \"abcdefghij\", \"escaped\": \"a\\\"b\\\\c\\u0041\\n\", "
+                + "'single': 'x'}";
+        for (JSONTokener x : new JSONTokener[] { new JSONTokener(text),
+                new JSONTokener(new StringReader(text)),
+                new JSONTokener(new TrickleReader(text)) }) {
+            JSONObject json = new JSONObject(x);
+            assertEquals("abcdefghij", json.getString("plain"));
+            assertEquals("a\"b\\cA\n", json.getString("escaped"));
+            assertEquals("x", json.getString("single"));
+            assertTrue(x.end() || !x.more());
+        }
+    }
+
+    @Test
+    public void testLongStrings() {
+        // Longer than a block, so the string can't be sliced from one window
+        StringBuilder sb = new StringBuilder("[\"");
+        for (int i = 0; i < 50000; i++) {
+            sb.append((char) ('a' + i % 26));
+            if (i % 10000 == 0)
+                sb.append("\\t");
+        }
+        sb.append("\", 1]");
+        String text = sb.toString();
+
+        JSONArray expected = new JSONArray(new JSONTokener(text));
+        JSONArray array = new JSONArray(new JSONTokener(new StringReader(text)));
+        assertEquals(50005, array.getString(0).length());
+        assertEquals(expected.getString(0), array.getString(0));
+        assertEquals(1, array.getInt(1));
+    }
+
+    @Test
+    public void testBack() {
+        JSONTokener x = new JSONTokener(new TrickleReader("abcdef"));
+        for (char c = 'a'; c <= 'f'; c++) {
+            assertEquals(c, x.next());
+            x.back();
+            assertEquals(c, x.next());
+        }
+        assertEquals(0, x.next());
+        assertTrue(x.end());
+        x.back();
+        assertFalse(x.end());
+        assertEquals(0, x.next());
+        assertTrue(x.end());
+
+        try {
+            x.back();
+            x.back();
+            fail("Expected a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSkipTo() {
+        StringBuilder sb = new StringBuilder("start");
+        for (int i = 0; i < 40000; i++) {
+            sb.append('.');
+        }
+        sb.append("!end");
+        JSONTokener x = new JSONTokener(new StringReader(sb.toString()));
+        assertEquals('s', x.next());
+
+        // Not found, so nothing is skipped
+        assertEquals(0, x.skipTo('?'));
+        assertEquals('t', x.next());
+
+        assertEquals('!', x.skipTo('!'));
+        assertEquals('!', x.next());
+        assertEquals("end", x.next(3));
+    }
+
+    @Test
+    public void testNumberValues() {
+        // Values must be the same as stringToValue gives for the same text
+        String[] texts = { "0", "7", "-42", "2147483647", "2147483648", "-9223372036854775808",
+                "12345678901234567890", "1.5", "-0.25", "1e2", "2E-3", "-0", "007", "1.",
+                "-.5", "1e400", "0.1000000000000000000001", "5x", "- 1", "3 4" };
+        StringBuilder sb = new StringBuilder("[");
+        for (String text : texts) {
+            sb.append(text).append(",");
+        }
+        sb.append("]");
+        String text = sb.toString();
+
+        for (JSONTokener x : new JSONTokener[] { new JSONTokener(text),
+                new JSONTokener(new TrickleReader(text)) }) {
+            JSONArray array = new JSONArray(x);
+            for (int i = 0; i < texts.length; i++) {
+                Object expected = JSONObject.stringToValue(texts[i].trim());
+                assertEquals(texts[i], expected, array.get(i));
+                assertEquals(texts[i], expected.getClass(), array.get(i).getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testRounding() {
+        // Every double read must be the nearest, as Double.parseDouble gives
+        Random random = new Random(3421);
+        StringBuilder sb = new StringBuilder("[");
+        String[] texts = new String[20000];
+        for (int i = 0; i < texts.length; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            texts[i] = i % 2 == 0 ? Double.toString(value)
+                    : String.format("%." + random.nextInt(17) + "f", value);
+            sb.append(texts[i]).append(", ");
+        }
+        sb.append("]");
+
+        // Long enough that numbers are split across the window
+        JSONTokener x = new JSONTokener(new StringReader(sb.toString()));
+        assertEquals('[', x.nextClean());
+        for (String text : texts) {
+            x.nextClean();
+            x.back();
+            assertEquals(text, Double.doubleToLongBits(Double.parseDouble(text)),
+                    Double.doubleToLongBits(x.nextDouble()));
+            assertEquals(',', x.nextClean());
+        }
+    }
+
+    @Test
+    public void testPosition() {
+        JSONTokener x = new JSONTokener(new TrickleReader("ab\ncd\r\nef\rgh"));
+        x.next(10);
+        assertEquals(" at 10 [character 0 line 4]", x.toString());
+    }
+}
@@ -0,0 +1,108 @@
+package unsw.graphics.scene.tests;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.GL3;
+
+import junit.framework.TestCase;
+import unsw.graphics.Mesh;
+import unsw.graphics.MeshRegistry;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Tests for sharing equal polygons' meshes.
+ *
+ */
+public class MeshRegistryTest extends TestCase {
+
+    @Test
+    public void testShared() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        MeshRegistry registry = MeshRegistry.get(gl);
+        try {
+            // Polygons built separately from the same points share a mesh
+            Mesh a = registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+            Mesh b = registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+            Mesh c = registry.acquire(gl, new Polygon2D(0,0, 2,0, 0,2));
+            assertSame(a, b);
+            assertNotSame(a, c);
+            assertEquals(2, registry.getMeshCount());
+            assertEquals(2, a.getReferenceCount());
+            assertEquals(3, registry.getReferenceCount());
+            assertEquals(a.getSize(), registry.getBytesSaved());
+
+            // The mesh is kept until every reference has been released
+            a.release();
+            assertEquals(1, b.getReferenceCount());
+            registry.flush(gl);
+            assertEquals(2, registry.getMeshCount());
+        } finally {
+            registry.destroy(gl);
+            context.destroy();
+        }
+    }
+
+    @Test
+    public void testDeferredFree() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        MeshRegistry registry = MeshRegistry.get(gl);
+        try {
+            Mesh mesh = registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+            mesh.release();
+            assertEquals(0, mesh.getReferenceCount());
+
+            // It isn't freed until the registry is flushed
+            assertEquals(1, registry.getMeshCount());
+            registry.flush(gl);
+            assertEquals(0, registry.getMeshCount());
+
+            // A mesh that is acquired again before the flush survives it
+            mesh = registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+            mesh.release();
+            Mesh again = registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+            assertSame(mesh, again);
+            registry.flush(gl);
+            assertEquals(1, registry.getMeshCount());
+            assertEquals(1, again.getReferenceCount());
+        } finally {
+            registry.destroy(gl);
+            context.destroy();
+        }
+    }
+
+    @Test
+    public void testCount() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        MeshRegistry registry = MeshRegistry.get(gl);
+        try {
+            Mesh mesh = registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+            registry.acquire(gl, new Polygon2D(0,0, 1,0, 0,1));
+
+            Profiler.setEnabled(true);
+            Profiler.beginFrame();
+            registry.count();
+            Profiler.endFrame();
+            Profiler.setEnabled(false);
+
+            assertEquals(1, Profiler.get(Counter.MESHES, 0));
+            assertEquals(mesh.getSize(), Profiler.get(Counter.MESH_BYTES_SAVED, 0));
+        } finally {
+            registry.destroy(gl);
+            context.destroy();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.PolygonalSceneObject;
+import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Tests for finding objects with Scene.pick() and Scene.pickRect().
+ *
+ */
+public class PickTest extends TestCase {
+
+    private static final Polygon2D TRIANGLE = new Polygon2D(0,0, 1,0, 0,1);
+    private static final Polygon2D SQUARE = new Polygon2D(-0.5f,-0.5f, 0.5f,-0.5f, 0.5f,0.5f,
+            -0.5f,0.5f);
+
+    @Test
+    public void testExactShape() {
+        Scene scene = new Scene();
+        SceneObject triangle = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+
+        assertSame(triangle, scene.pick(0.25f, 0.25f));
+
+        // Inside the bounding box, but not the triangle
+        assertNull(scene.pick(0.75f, 0.75f));
+        assertNull(scene.pick(2, 2));
+    }
+
+    @Test
+    public void testTransformed() {
+        Scene scene = new Scene();
+        SceneObject parent = new SceneObject(scene.getRoot());
+        parent.translate(10, 0);
+        parent.scale(2);
+        SceneObject triangle = new PolygonalSceneObject(parent, TRIANGLE, Color.RED, null);
+        triangle.rotate(90);
+
+        // The triangle now covers (10,0), (10,2), (8,0)
+        assertSame(triangle, scene.pick(9.5f, 0.5f));
+        assertNull(scene.pick(10.5f, 0.5f));
+
+        // Moving the object is seen by the next pick
+        parent.translate(0, 5);
+        assertNull(scene.pick(9.5f, 0.5f));
+        assertSame(triangle, scene.pick(9.5f, 5.5f));
+
+        triangle.show(false);
+        assertNull(scene.pick(9.5f, 5.5f));
+    }
+
+    @Test
+    public void testTopmost() {
+        Scene scene = new Scene();
+        SceneObject first = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.RED, null);
+        SceneObject second = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.RED, null);
+
+        // Later objects in the tree are drawn over earlier ones
+        assertSame(second, scene.pick(0, 0));
+
+        // Unless the scene is sorted by layer
+        first.setLayer(1);
+        assertSame(second, scene.pick(0, 0));
+        scene.setSorted(true);
+        assertSame(first, scene.pick(0, 0));
+    }
+
+    @Test
+    public void testDrawOrder() {
+        Scene scene = new Scene();
+        SceneObject red = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.RED, null);
+        SceneObject blue = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.BLUE, null);
+        assertSame(blue, scene.pick(0, 0));
+
+        // Sorted, objects on the same layer are grouped by color, and blue is drawn before red
+        scene.setSorted(true);
+        assertSame(red, scene.pick(0, 0));
+
+        // With depth testing they overlap in tree order again
+        scene.setDepthTested(true);
+        assertSame(blue, scene.pick(0, 0));
+
+        // Changing the color changes the draw order
+        scene.setDepthTested(false);
+        ((PolygonalSceneObject) red).setFillColor(Color.BLACK);
+        assertSame(blue, scene.pick(0, 0));
+    }
+
+    @Test
+    public void testRect() {
+        Scene scene = new Scene();
+        SceneObject[] squares = new SceneObject[10];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.RED, null);
+            squares[i].translate(2 * i, 0);
+        }
+
+        List<SceneObject> found = scene.pickRect(5.75f, 1, 2.75f, -1);
+        assertEquals(2, found.size());
+        assertSame(squares[2], found.get(0));
+        assertSame(squares[3], found.get(1));
+        assertTrue(scene.pickRect(0, 5, 20, 10).isEmpty());
+    }
+
+    @Test
+    public void testMany() {
+        Scene scene = new Scene();
+        int side = 316;
+        for (int i = 0; i < side * side; i++) {
+            SceneObject square = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.RED,
+                    null);
+            square.translate(i % side, i / side);
+        }
+
+        // Build the index, and make sure every square is found where it is
+        scene.pick(0, 0);
+        for (int i = 0; i < side * side; i += 97) {
+            SceneObject found = scene.pick(i % side + 0.25f, i / side - 0.25f);
+            assertSame(scene.getRoot().getChildren().get(i + 1), found);
+        }
+
+        // Once the index is built, picking doesn't depend on the number of objects. The draw
+        // order isn't worked out again unless it may have changed, even when sorted.
+        scene.setSorted(true);
+        scene.pick(0, 0);
+        int picks = 10000;
+        long start = System.nanoTime();
+        for (int i = 0; i < picks; i++) {
+            scene.pick((i * 7919) % side, (i * 104729) % side);
+        }
+        long average = (System.nanoTime() - start) / picks;
+        assertTrue("Average pick took " + average + "ns", average < 1000000);
+    }
+
+    @Test
+    public void testMovedKeepsOrder() {
+        Scene scene = new Scene();
+        scene.setSorted(true);
+        SceneObject red = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.RED, null);
+        SceneObject blue = new PolygonalSceneObject(scene.getRoot(), SQUARE, Color.BLUE, null);
+        assertSame(red, scene.pick(0, 0));
+
+        // Moving an object changes where it is, but not the order it is drawn in
+        blue.translate(0.25f, 0);
+        assertSame(red, scene.pick(0, 0));
+        assertSame(blue, scene.pick(0.6f, 0));
+
+        // Hiding and showing an object, or changing its color, can change the order
+        ((PolygonalSceneObject) red).setFillColor(Color.BLACK);
+        assertSame(blue, scene.pick(0, 0));
+        blue.show(false);
+        assertSame(red, scene.pick(0, 0));
+        blue.show(true);
+        assertSame(blue, scene.pick(0, 0));
+    }
+}
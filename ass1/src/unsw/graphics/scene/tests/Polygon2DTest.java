@@ -0,0 +1,128 @@
+package unsw.graphics.scene.tests;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.geometry.Point2D;
+import unsw.graphics.geometry.Polygon2D;
+
+/**
+ * Tests for the triangulation of polygons into indexed triangle lists.
+ *
+ */
+public class Polygon2DTest extends TestCase {
+
+    private static final float EPSILON = 0.001f;
+
+    @Test
+    public void testConvex() {
+        Polygon2D square = new Polygon2D(0,0, 0,5, 5,5, 5,0);
+        int[] triangles = square.getTriangleIndices();
+
+        assertEquals(6, triangles.length);
+        assertEquals(25, triangleArea(square, triangles), EPSILON);
+    }
+
+    @Test
+    public void testConcave() {
+        // A square with a notch cut into the top
+        Polygon2D notched = new Polygon2D(0,0, 4,0, 4,4, 2,1, 0,4);
+        int[] triangles = notched.getTriangleIndices();
+
+        assertEquals(9, triangles.length);
+        assertEquals(10, triangleArea(notched, triangles), EPSILON);
+    }
+
+    @Test
+    public void testClockwise() {
+        Polygon2D notched = new Polygon2D(0,4, 2,1, 4,4, 4,0, 0,0);
+        int[] triangles = notched.getTriangleIndices();
+
+        assertEquals(9, triangles.length);
+        assertEquals(10, triangleArea(notched, triangles), EPSILON);
+    }
+
+    @Test
+    public void testCollinear() {
+        Polygon2D square = new Polygon2D(0,0, 1,0, 2,0, 2,2, 0,2);
+        int[] triangles = square.getTriangleIndices();
+
+        assertEquals(9, triangles.length);
+        assertEquals(4, triangleArea(square, triangles), EPSILON);
+    }
+
+    @Test
+    public void testOutline() {
+        Polygon2D triangle = new Polygon2D(0,0, 1,0, 0,1);
+        int[] lines = triangle.getOutlineIndices();
+
+        assertEquals(6, lines.length);
+        assertEquals(0, lines[0]);
+        assertEquals(1, lines[1]);
+        assertEquals(2, lines[4]);
+        assertEquals(0, lines[5]);
+    }
+
+    @Test
+    public void testLine() {
+        Polygon2D line = new Polygon2D(0,0, 1,0);
+
+        assertEquals(0, line.getTriangleIndices().length);
+        assertEquals(2, line.getOutlineIndices().length);
+    }
+
+    @Test
+    public void testUploadedOnce() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        Polygon2D square = new Polygon2D(0,0, 0,5, 5,5, 5,0);
+        Profiler.setEnabled(true);
+        try {
+            Profiler.beginFrame();
+            square.draw(context.getGL(), CoordFrame2D.identity());
+            square.drawOutline(context.getGL(), CoordFrame2D.identity());
+            Profiler.endFrame();
+            assertTrue(square.isUploaded());
+            assertEquals(4 * 2 * Float.BYTES + (6 + 8) * Integer.BYTES,
+                    Profiler.get(Counter.UPLOADED_BYTES, 0));
+
+            // Drawing it again reuses the buffers
+            Profiler.beginFrame();
+            square.draw(context.getGL(), CoordFrame2D.identity());
+            square.drawOutline(context.getGL(), CoordFrame2D.identity());
+            Profiler.endFrame();
+            assertEquals(0, Profiler.get(Counter.UPLOADED_BYTES, 0));
+            assertEquals(2, Profiler.get(Counter.DRAW_CALLS, 0));
+
+            square.destroy(context.getGL());
+            assertFalse(square.isUploaded());
+        } finally {
+            Profiler.setEnabled(false);
+            context.destroy();
+        }
+    }
+
+    /**
+     * The total area of the given triangles. If the triangles cover the polygon without
+     * overlapping, this is the area of the polygon.
+     */
+    private static float triangleArea(Polygon2D polygon, int[] triangles) {
+        List<Point2D> points = polygon.getPoints();
+        float area = 0;
+        for (int i = 0; i < triangles.length; i += 3) {
+            Point2D a = points.get(triangles[i]);
+            Point2D b = points.get(triangles[i + 1]);
+            Point2D c = points.get(triangles[i + 2]);
+            area += Math.abs((b.getX() - a.getX()) * (c.getY() - a.getY())
+                    - (b.getY() - a.getY()) * (c.getX() - a.getX())) / 2;
+        }
+        return area;
+    }
+}
@@ -0,0 +1,125 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+import junit.framework.TestCase;
+import unsw.graphics.GpuTimer;
+import unsw.graphics.Profiler;
+import unsw.graphics.Profiler.Counter;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.PolygonalSceneObject;
+import unsw.graphics.scene.Scene;
+
+/**
+ * Tests for the frames recorded by the Profiler.
+ *
+ */
+public class ProfilerTest extends TestCase {
+
+    @Test
+    public void testCounts() {
+        Profiler.setEnabled(true);
+        Profiler.beginFrame();
+        Profiler.countDraw(3);
+        Profiler.countDraw(6);
+        Profiler.count(Counter.UPLOADED_BYTES, 100);
+        Profiler.endFrame();
+
+        assertEquals(2, Profiler.get(Counter.DRAW_CALLS, 0));
+        assertEquals(9, Profiler.get(Counter.VERTICES, 0));
+        assertEquals(100, Profiler.get(Counter.UPLOADED_BYTES, 0));
+        assertTrue(Profiler.get(Counter.FRAME_TIME, 0) >= 0);
+        Profiler.setEnabled(false);
+    }
+
+    @Test
+    public void testUpdate() {
+        Scene scene = new Scene();
+        new PolygonalSceneObject(scene.getRoot(), new Polygon2D(0,0, 1,0, 0,1), Color.RED, null);
+
+        Profiler.setEnabled(true);
+        Profiler.beginFrame();
+        scene.update();
+        Profiler.endFrame();
+        Profiler.setEnabled(false);
+
+        assertTrue(Profiler.get(Counter.UPDATE_TIME, 0) >= 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        Profiler.setEnabled(false);
+        long frames = Profiler.getFrames();
+        Profiler.beginFrame();
+        Profiler.countDraw(3);
+        Profiler.endFrame();
+
+        // Nothing is recorded while disabled
+        assertEquals(frames, Profiler.getFrames());
+    }
+
+    @Test
+    public void testHistory() {
+        Profiler.setEnabled(true);
+        for (int i = 0; i < Profiler.HISTORY + 10; i++) {
+            Profiler.beginFrame();
+            Profiler.count(Counter.OBJECTS, i);
+            Profiler.endFrame();
+        }
+        Profiler.setEnabled(false);
+
+        assertEquals(Profiler.HISTORY + 9, Profiler.get(Counter.OBJECTS, 0));
+        assertEquals(10, Profiler.get(Counter.OBJECTS, Profiler.HISTORY - 1));
+        assertEquals(-1, Profiler.get(Counter.OBJECTS, Profiler.HISTORY));
+    }
+
+    @Test
+    public void testGpuTimer() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        GpuTimer timer = GpuTimer.get(gl);
+        Profiler.setEnabled(true);
+        Profiler.setGpuTimed(true);
+        try {
+            Profiler.beginFrame();
+            long frame = Profiler.getFrames();
+            timer.beginFrame(gl);
+            int handle = timer.begin(gl, "clear");
+            assertTrue(handle >= 0);
+            gl.glClear(GL.GL_COLOR_BUFFER_BIT);
+            timer.end(gl, handle);
+            timer.endFrame(gl);
+            Profiler.endFrame();
+            gl.glFinish();
+
+            // The results are collected at the start of a later frame
+            for (int i = 0; i < 100 && !Profiler.getGpuTimes().containsKey("clear"); i++) {
+                Profiler.beginFrame();
+                timer.beginFrame(gl);
+                timer.endFrame(gl);
+                Profiler.endFrame();
+                gl.glFinish();
+            }
+
+            Long time = Profiler.getGpuTimes().get("clear");
+            assertNotNull(time);
+            assertTrue(time >= 0);
+            int age = (int) (Profiler.getFrames() - 1 - frame);
+            assertTrue(Profiler.get(Counter.GPU_FRAME_TIME, age) >= 0);
+        } finally {
+            Profiler.setGpuTimed(false);
+            Profiler.setEnabled(false);
+            timer.destroy(gl);
+            context.destroy();
+        }
+    }
+
+}
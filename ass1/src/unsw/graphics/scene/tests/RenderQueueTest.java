@@ -0,0 +1,140 @@
+package unsw.graphics.scene.tests;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.CoordFrame2D;
+import unsw.graphics.geometry.Polygon2D;
+import unsw.graphics.scene.CachedSceneObject;
+import unsw.graphics.scene.PolygonalSceneObject;
+import unsw.graphics.scene.RenderQueue;
+import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.SceneObject;
+
+/**
+ * Tests for the order objects are drawn in by a RenderQueue.
+ *
+ */
+public class RenderQueueTest extends TestCase {
+
+    private static final Polygon2D TRIANGLE = new Polygon2D(0,0, 1,0, 0,1);
+
+    @Test
+    public void testLayers() {
+        Scene scene = new Scene();
+        SceneObject top = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject bottom = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject middle = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        top.setLayer(5);
+        bottom.setLayer(-5);
+
+        RenderQueue queue = new RenderQueue();
+        queue.add(top, CoordFrame2D.identity());
+        queue.add(bottom, CoordFrame2D.identity());
+        queue.add(middle, CoordFrame2D.identity());
+        queue.sort();
+
+        assertSame(bottom, queue.getObject(0));
+        assertSame(middle, queue.getObject(1));
+        assertSame(top, queue.getObject(2));
+    }
+
+    @Test
+    public void testStable() {
+        Scene scene = new Scene();
+        SceneObject[] objects = new SceneObject[300];
+        RenderQueue queue = new RenderQueue();
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.GREEN, null);
+            queue.add(objects[i], CoordFrame2D.identity());
+        }
+        queue.sort();
+
+        assertEquals(objects.length, queue.size());
+        for (int i = 0; i < objects.length; i++) {
+            assertSame(objects[i], queue.getObject(i));
+        }
+    }
+
+    @Test
+    public void testGroupedByColor() {
+        Scene scene = new Scene();
+        SceneObject red1 = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject blue1 = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.BLUE, null);
+        SceneObject red2 = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject blue2 = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.BLUE, null);
+
+        RenderQueue queue = new RenderQueue();
+        scene.getRoot().enqueue(queue, CoordFrame2D.identity());
+        queue.sort();
+
+        // The root and camera draw nothing, so they have the lowest key. Then objects of the same
+        // color end up next to each other, in tree order. The colors are packed as RGBA, so blue
+        // (0x0000FFFF) sorts before red (0xFF0000FF).
+        assertEquals(6, queue.size());
+        assertSame(scene.getRoot(), queue.getObject(0));
+        assertSame(scene.getCamera(), queue.getObject(1));
+        assertSame(blue1, queue.getObject(2));
+        assertSame(blue2, queue.getObject(3));
+        assertSame(red1, queue.getObject(4));
+        assertSame(red2, queue.getObject(5));
+    }
+
+    @Test
+    public void testDepthOrder() {
+        Scene scene = new Scene();
+        Color glass = new Color(1, 1, 1, 0.5f);
+        SceneObject back = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject front = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject pane1 = new CachedSceneObject(scene.getRoot());
+        SceneObject pane2 = new CachedSceneObject(scene.getRoot());
+        pane1.setLayer(1);
+
+        // The shaders ignore alpha, so a translucent color is still drawn opaque
+        SceneObject tinted = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, glass, null);
+        assertTrue(tinted.isOpaque());
+        assertFalse(pane1.isOpaque());
+
+        RenderQueue queue = new RenderQueue();
+        queue.add(back, CoordFrame2D.identity());
+        queue.add(pane1, CoordFrame2D.identity());
+        queue.add(pane2, CoordFrame2D.identity());
+        queue.add(front, CoordFrame2D.identity());
+        queue.sortForDepth();
+
+        // Opaque objects are drawn front to back, then the blended textures back to front
+        assertSame(front, queue.getObject(0));
+        assertSame(back, queue.getObject(1));
+        assertSame(pane2, queue.getObject(2));
+        assertSame(pane1, queue.getObject(3));
+    }
+
+    @Test
+    public void testCull() {
+        Scene scene = new Scene();
+        scene.reshape(100, 100);
+        SceneObject near = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject far = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        SceneObject edge = new PolygonalSceneObject(scene.getRoot(), TRIANGLE, Color.RED, null);
+        far.translate(10, 0);
+        edge.translate(-1.5f, 0.5f);
+
+        RenderQueue queue = new RenderQueue();
+        queue.add(near, near.localFrame(CoordFrame2D.identity()));
+        queue.add(far, far.localFrame(CoordFrame2D.identity()));
+        queue.add(edge, edge.localFrame(CoordFrame2D.identity()));
+        queue.resetOrder();
+
+        // Only the object entirely outside the view is culled
+        assertEquals(1, queue.cull(scene.getCamera()));
+        assertFalse(queue.isCulled(0));
+        assertTrue(queue.isCulled(1));
+        assertFalse(queue.isCulled(2));
+
+        queue.showAll();
+        assertFalse(queue.isCulled(1));
+    }
+
+}
@@ -0,0 +1,93 @@
+package unsw.graphics.scene.tests;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.util.GLBuffers;
+
+import junit.framework.TestCase;
+import unsw.graphics.StreamingBuffer;
+
+/**
+ * Tests for writing through the StreamingBuffer ring.
+ *
+ */
+public class StreamingBufferTest extends TestCase {
+
+    @Test
+    public void testReserve() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        StreamingBuffer stream = StreamingBuffer.get(gl);
+        try {
+            // Fill all but the last 100 bytes
+            int size = StreamingBuffer.REGION_SIZE;
+            ByteBuffer filler = GLBuffers.newDirectByteBuffer(size);
+            for (int start = 0; start < StreamingBuffer.CAPACITY - size; start += size) {
+                assertEquals(start, stream.write(gl, filler, size));
+            }
+            assertEquals(StreamingBuffer.CAPACITY - size, stream.write(gl, filler, size - 100));
+
+            // Vertices and indices that would only fit if they were split by a wrap
+            ByteBuffer vertices = GLBuffers.newDirectByteBuffer(64);
+            IntBuffer indices = GLBuffers.newDirectIntBuffer(12);
+            stream.reserve(gl, 64, 12 * Integer.BYTES);
+            int vertexOffset = stream.write(gl, vertices, 64);
+            int indexOffset = stream.writeIndices(gl, indices);
+            assertEquals(0, vertexOffset);
+            assertEquals(64, indexOffset);
+
+            // Once there is room, reserving doesn't move anything
+            stream.reserve(gl, 16);
+            assertEquals(112, stream.write(gl, vertices, 16));
+        } finally {
+            stream.destroy(gl);
+            context.destroy();
+        }
+    }
+
+    @Test
+    public void testRegionBoundary() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        StreamingBuffer stream = StreamingBuffer.get(gl);
+        int region = StreamingBuffer.REGION_SIZE;
+        try {
+            ByteBuffer data = GLBuffers.newDirectByteBuffer(region);
+
+            // A write that would cross into the next region starts at the beginning of it
+            assertEquals(0, stream.write(gl, data, region - 32));
+            assertEquals(region, stream.write(gl, data, 64));
+
+            // So does a reserved pair of writes, rather than only the second one
+            assertEquals(region + 64, stream.write(gl, data, region - 144));
+            stream.reserve(gl, 64, 12 * Integer.BYTES);
+            assertEquals(2 * region, stream.write(gl, data, 64));
+            assertEquals(2 * region + 64, stream.writeIndices(gl,
+                    GLBuffers.newDirectIntBuffer(12)));
+
+            // A write that exactly fills a region doesn't move
+            assertEquals(2 * region + 112, stream.write(gl, data, region - 112));
+            assertEquals(3 * region, stream.write(gl, data, 16));
+
+            try {
+                stream.write(gl, GLBuffers.newDirectByteBuffer(region + 1), region + 1);
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            stream.destroy(gl);
+            context.destroy();
+        }
+    }
+}
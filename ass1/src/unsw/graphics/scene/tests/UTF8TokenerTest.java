@@ -0,0 +1,152 @@
+package unsw.graphics.scene.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONReader;
+import org.json.JSONTokener;
+import org.json.UTF8Tokener;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import unsw.graphics.examples.sailing.Map;
+import unsw.graphics.scene.Scene;
+
+/**
+ * Tests for reading JSON straight from UTF-8 bytes with UTF8Tokener.
+ *
+ */
+public class UTF8TokenerTest extends TestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TEXT = "{\"ascii\": \"plain\", \"accent\": \"caf\u00E9\", "
+            + "\"wide\": \"\u4E2D\u6587\", \"emoji\": \"a\uD83D\uDE00b\", "
+            + "\"escaped\": \"\u00E9\\t\\u0041\\\"\", 'single': 'x', "
+            + "\"numbers\": [0, -1, 2.5, -0.125, 1e3, 1.5E-2, 123456789012345678, "
+            + "12345678901234567890, 1e300, 4.9e-324, 0.1, 1 ], \"last\": null}";
+
+    @Test
+    public void testSameAsChars() {
+        JSONObject expected = new JSONObject(new JSONTokener(TEXT));
+        byte[] bytes = TEXT.getBytes(UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        for (UTF8Tokener x : new UTF8Tokener[] { new UTF8Tokener(bytes),
+                new UTF8Tokener(direct) }) {
+            JSONObject json = new JSONObject(x);
+            assertEquals(expected.toString(), json.toString());
+            assertEquals("caf\u00E9", json.getString("accent"));
+            assertEquals("a\uD83D\uDE00b", json.getString("emoji"));
+            assertEquals("\u00E9\tA\"", json.getString("escaped"));
+            assertTrue(x.end() || !x.more());
+        }
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void testNumbers() {
+        String[] numbers = { "0", "-0", "7", "-42", "3.25", "-0.001", "1e3", "2.5E+2",
+                "6.02e23", "1.7976931348623157e308", "4.9e-324", "0.1", "0.3",
+                "123456789.123456789", "9007199254740993", "1e400", "00012" };
+        StringBuilder sb = new StringBuilder("[");
+        for (String number : numbers) {
+            sb.append(number).append(", ");
+        }
+        sb.append("]");
+
+        JSONReader reader = new JSONReader(new UTF8Tokener(sb.toString().getBytes(UTF_8)));
+        reader.beginArray();
+        for (String number : numbers) {
+            assertEquals(number, JSONReader.NUMBER, reader.peek());
+            double value = reader.nextDouble();
+            assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                    Double.doubleToLongBits(value));
+        }
+        reader.endArray();
+
+        reader = new JSONReader(new UTF8Tokener("[12, -34, 5.9, 1.5e3, 1x]"
+                .getBytes(UTF_8)));
+        reader.beginArray();
+        assertEquals(12, reader.nextLong());
+        assertEquals(-34, reader.nextInt());
+        assertEquals(5, reader.nextLong());
+        assertEquals(1500, reader.nextLong());
+
+        // Text that only starts like a number is still a string
+        assertEquals("1x", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void testMalformed() {
+        // A lone continuation byte, and a byte order mark to skip
+        byte[] bytes = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '[', '"', 'a', (byte) 0x80,
+                'b', '"', ']' };
+        JSONArray array = new JSONArray(new UTF8Tokener(bytes));
+        assertEquals("a\uFFFDb", array.getString(0));
+
+        try {
+            new JSONArray(new UTF8Tokener("[\"open]".getBytes(UTF_8)));
+            fail("Expected a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBack() {
+        UTF8Tokener x = new UTF8Tokener("a\u00E9\uD83D\uDE00".getBytes(UTF_8));
+        for (char c : "a\u00E9\uD83D\uDE00".toCharArray()) {
+            assertEquals(c, x.next());
+            x.back();
+            assertEquals(c, x.next());
+        }
+        assertEquals(0, x.next());
+        assertTrue(x.end());
+        x.back();
+        assertFalse(x.end());
+        assertEquals(0, x.next());
+
+        try {
+            x.back();
+            x.back();
+            fail("Expected a JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPosition() {
+        UTF8Tokener x = new UTF8Tokener("ab\ncd\r\nef\rgh".getBytes(UTF_8));
+        x.next(10);
+        assertEquals(" at 10 [character 0 line 4]", x.toString());
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        File file = File.createTempFile("map", ".json");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write(TEXT.getBytes(UTF_8));
+        out.close();
+
+        JSONObject json = new JSONObject(new UTF8Tokener(file));
+        assertEquals("\u4E2D\u6587", json.getString("wide"));
+        assertEquals(12, json.getJSONArray("numbers").length());
+
+        Scene scene = new Scene();
+        Map map = Map.read(scene, new File("res/sailing/map.json"));
+        assertEquals(1, map.islands().size());
+        assertEquals(1, map.merchants().size());
+    }
+}
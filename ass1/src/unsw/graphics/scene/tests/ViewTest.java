@@ -0,0 +1,63 @@
+package unsw.graphics.scene.tests;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.GL3;
+
+import junit.framework.TestCase;
+import unsw.graphics.scene.Camera;
+import unsw.graphics.scene.Scene;
+import unsw.graphics.scene.View;
+
+/**
+ * Tests for adding and removing the views a scene is drawn through.
+ *
+ */
+public class ViewTest extends TestCase {
+
+    @Test
+    public void testRemove() {
+        Scene scene = new Scene();
+        View view = new View(new Camera(scene.getRoot()), 0, 0, 0.5f, 0.5f);
+        scene.addView(view);
+        assertEquals(2, scene.getViews().size());
+
+        scene.removeView(view);
+        assertEquals(1, scene.getViews().size());
+        assertSame(scene.getMainView(), scene.getViews().get(0));
+
+        try {
+            scene.removeView(scene.getMainView());
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRemoveReleases() {
+        HeadlessGL context = HeadlessGL.create();
+        if (context == null)
+            return;
+
+        GL3 gl = context.getGL();
+        Scene scene = new Scene();
+        scene.reshape(16, 16);
+        View view = new View(new Camera(scene.getRoot()), 0, 0, 0.5f, 0.5f);
+        view.setInterval(2);
+        scene.addView(view);
+        try {
+            // A view with an interval is drawn through a texture
+            scene.draw(gl);
+            assertTrue(view.hasTexture());
+
+            // Removing it frees the texture on the next draw
+            scene.removeView(view);
+            assertTrue(view.hasTexture());
+            scene.draw(gl);
+            assertFalse(view.hasTexture());
+        } finally {
+            context.destroy();
+        }
+    }
+}